@@ -0,0 +1,195 @@
+package Benchmarks;
+
+import Distributions.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * benchmarks every sampler of the Distributions package across its relevant parameter ranges. Run all benchmarks with
+ * {@code java -jar target/benchmarks.jar DistributionBenchmarks}, or with the main method of this class.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DistributionBenchmarks {
+    private static final long SEED = 42;
+
+    private RandomStream rand;
+    private Distribution constant;
+    private Distribution discreteUniform;
+    private Distribution exponential;
+    private Distribution negBinomial;
+    private Distribution uniform;
+
+    @Setup
+    public void setUp() {
+        rand = new RandomStream(SEED);
+        constant = new ConstantValue(1);
+        discreteUniform = new DiscreteUniformDistribution(0, 100, rand);
+        exponential = new ExponentialDistribution(1.0 / 2500, rand);
+        negBinomial = new NegativeBinomialDistribution(10, 0.5, rand);
+        uniform = new UniformDistribution(0, 1, rand);
+    }
+
+    @State(Scope.Thread)
+    public static class BernoulliState {
+        @Param({"0.001", "0.5"})
+        public double p;
+        Distribution dist;
+
+        @Setup
+        public void setUp() {
+            dist = new BernoulliDistribution(p, new RandomStream(SEED));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BinomialState {
+        @Param({"10", "1000", "1000000", "10000000000"})
+        public long n;
+        @Param({"1e-8", "0.001", "0.3"})
+        public double p;
+    }
+
+    @State(Scope.Thread)
+    public static class ErlangState {
+        @Param({"2", "50"})
+        public int n;
+        Distribution dist;
+
+        @Setup
+        public void setUp() {
+            dist = new ErlangDistribution(n, 1.0, new RandomStream(SEED));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SumState {
+        @Param({"1", "10", "1000"})
+        public int k;
+    }
+
+    @State(Scope.Thread)
+    public static class GammaState {
+        @Param({"0.5", "2", "1000"})
+        public double alpha;
+        Distribution dist;
+
+        @Setup
+        public void setUp() {
+            dist = new GammaDistribution(alpha, 1.0, new RandomStream(SEED));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class GeometricState {
+        @Param({"0.001", "0.5"})
+        public double p;
+        Distribution dist;
+
+        @Setup
+        public void setUp() {
+            dist = new GeometricDistribution(p, new RandomStream(SEED));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PoissonState {
+        @Param({"0.01", "5", "50", "5000", "5000000"})
+        public double lambda;
+    }
+
+    @Benchmark
+    public double bernoulli(BernoulliState s) {
+        return s.dist.nextRandom();
+    }
+
+    @Benchmark
+    public long binomial(BinomialState s) {
+        return BinomialDistribution.get(s.n, s.p, rand);
+    }
+
+    @Benchmark
+    public double constantValue() {
+        return constant.nextRandom();
+    }
+
+    @Benchmark
+    public double discreteUniform() {
+        return discreteUniform.nextRandom();
+    }
+
+    @Benchmark
+    public double erlang(ErlangState s) {
+        return s.dist.nextRandom();
+    }
+
+    @Benchmark
+    public double exponential() {
+        return exponential.nextRandom();
+    }
+
+    /** the inversion that the ziggurat replaced */
+    @Benchmark
+    public double exponentialByInversion() {
+        return -Math.log(rand.nextDouble()) * 2500;
+    }
+
+    @Benchmark
+    public double exponentialSum(SumState s) {
+        return exponential.sumOf(s.k);
+    }
+
+    @Benchmark
+    public double gamma(GammaState s) {
+        return s.dist.nextRandom();
+    }
+
+    @Benchmark
+    public double geometric(GeometricState s) {
+        return s.dist.nextRandom();
+    }
+
+    @Benchmark
+    public double negativeBinomial() {
+        return negBinomial.nextRandom();
+    }
+
+    @Benchmark
+    public double normal() {
+        return NormalDistribution.get(0, 1, rand);
+    }
+
+    /** the polar method that the ziggurat replaced */
+    @Benchmark
+    public double normalByPolarMethod() {
+        double v1, v2, q;
+        do {
+            v1 = 2 * rand.nextDouble() - 1;
+            v2 = 2 * rand.nextDouble() - 1;
+            q = v1 * v1 + v2 * v2;
+        } while (q >= 1 || q == 0);
+        return v1 * Math.sqrt(-2 * Math.log(q) / q);
+    }
+
+    @Benchmark
+    public long poisson(PoissonState s) {
+        return PoissonDistribution.get(s.lambda, rand);
+    }
+
+    @Benchmark
+    public double uniform() {
+        return uniform.nextRandom();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DistributionBenchmarks.class.getName()).build()).run();
+    }
+}
@@ -0,0 +1,57 @@
+package Benchmarks;
+
+import Results.MomentCollector;
+import Results.SpaceResults;
+import Simulation.*;
+
+import java.util.Locale;
+
+/**
+ * profiles the binomial draws of complete runs per call site, for the heuristic and the auto-tuned {@link
+ * SamplerPolicy}, and compares the outcomes of both policies. The policy and the bound of the auto-tuned policy can be
+ * given as arguments, as with the --sampler option of {@link Main}.
+ */
+public class SamplerProfile {
+    private static final long SEED = 42;
+    private static final int RUNS = 20;
+    private static final int RUN_LENGTH = 300 * SpaceSimulation.YEARS + 1;
+
+    public static void main(String[] args) {
+        String[] policies = args.length > 0 ? args : new String[]{"heuristic", "auto"};
+
+        // the first runs include compilation, and the auto-tuned policy tunes its first regimes
+        for (String name : policies) {
+            profile(SamplerPolicy.parse(name), 2);
+        }
+
+        for (String name : policies) {
+            SamplerPolicy policy = SamplerPolicy.parse(name);
+            SimulationMetrics metrics = SimulationMetrics.enable();
+            long start = System.nanoTime();
+            MomentCollector lost = profile(policy, RUNS);
+            double seconds = (System.nanoTime() - start) * 1e-9;
+
+            System.out.printf(Locale.US, "%nsampler policy %s: %d runs in %.2f s, lost satellites %.1f +/- %.1f%n",
+                    policy, RUNS, seconds, lost.getMean(), (lost.getConfidence().upper - lost.getConfidence().lower) / 2
+            );
+            System.out.print(metrics.samplerReport());
+            SimulationMetrics.disable();
+        }
+    }
+
+    /** runs the given number of runs with the given policy, and returns the lost satellites of the runs */
+    private static MomentCollector profile(SamplerPolicy policy, int runs) {
+        SamplerPolicy previous = SpaceSimulation.getSamplerPolicy();
+        SpaceSimulation.setSamplerPolicy(policy);
+
+        MomentCollector lost = new MomentCollector();
+        for (int i = 0; i < runs; i++) {
+            SpaceResults results = new SpaceResults(RUN_LENGTH);
+            new SpaceSimulation(Scenario.DEFAULT, RUN_LENGTH, SEED + i, results).run();
+            lost.add(results.getNumberOfLostSatellites());
+        }
+
+        SpaceSimulation.setSamplerPolicy(previous);
+        return lost;
+    }
+}
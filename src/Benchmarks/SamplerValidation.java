@@ -0,0 +1,184 @@
+package Benchmarks;
+
+import Distributions.ExponentialDistribution;
+import Distributions.GammaDistribution;
+import Distributions.NormalDistribution;
+import Distributions.RandomStream;
+
+import java.util.Locale;
+
+/**
+ * statistical tests of the normal, exponential and gamma samplers: chi-square tests of the distribution functions, the
+ * frequency of the tails, the first four moments, and the antithetic symmetry of the normal sampler. Every statistic is
+ * transformed to an approximately standard normal score, and a test fails if the score exceeds {@link #MAX_SCORE}.
+ * Exits with status 1 if any test fails.
+ */
+public class SamplerValidation {
+    private static final int SAMPLES = 10_000_000;
+    private static final long SEED = 42;
+    private static final double MAX_SCORE = 4.5;
+    /** the bins of the chi-square tests */
+    private static final int BINS = 400;
+    private static final double NORMAL_RANGE = 6;
+    private static final double EXP_RANGE = 12;
+    /** the start of the tail of the ziggurat tables */
+    private static final double NORMAL_TAIL = 3.6541528853610088;
+    private static final double EXP_TAIL = 7.69711747013104972;
+
+    private static final double[] GAUSS_NODES = {
+            -0.9061798459386640, -0.5384693101056831, 0, 0.5384693101056831, 0.9061798459386640
+    };
+    private static final double[] GAUSS_WEIGHTS = {
+            0.2369268850561891, 0.4786286704993665, 0.5688888888888889, 0.4786286704993665, 0.2369268850561891
+    };
+
+    private static boolean failed = false;
+
+    public static void main(String[] args) {
+        RandomStream rand = new RandomStream(SEED);
+
+        double[] normal = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            normal[i] = NormalDistribution.nextGaussian(rand);
+        }
+        chiSquare("normal", normal, -NORMAL_RANGE, NORMAL_RANGE, SamplerValidation::normalDensity);
+        frequency("normal tail |x| > r", normal, x -> Math.abs(x) > NORMAL_TAIL,
+                2 * integrate(SamplerValidation::normalDensity, NORMAL_TAIL, 40)
+        );
+        moments("normal", normal, 0, 1, 0, 3);
+
+        double[] exponential = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            exponential[i] = ExponentialDistribution.get(1, rand);
+        }
+        chiSquare("exponential", exponential, 0, EXP_RANGE, x -> x < 0 ? 0 : Math.exp(-x));
+        frequency("exponential tail x > r", exponential, x -> x > EXP_TAIL, Math.exp(-EXP_TAIL));
+        moments("exponential", exponential, 1, 1, 2, 9);
+
+        for (double alpha : new double[]{0.5, 2, 30, 1_000}) {
+            double[] gamma = new double[SAMPLES / 10];
+            for (int i = 0; i < gamma.length; i++) {
+                gamma[i] = GammaDistribution.get(alpha, 1, rand);
+            }
+            moments("gamma alpha=" + alpha, gamma, alpha, alpha, 2 / Math.sqrt(alpha), 3 + 6 / alpha);
+        }
+
+        // the antithetic stream with the same seed returns the negated values
+        RandomStream plain = new RandomStream(SEED);
+        RandomStream antithetic = new RandomStream(SEED, true);
+        int asymmetric = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            if (NormalDistribution.nextGaussian(plain) != -NormalDistribution.nextGaussian(antithetic)) asymmetric++;
+        }
+        report("normal antithetic symmetry", asymmetric, asymmetric == 0);
+
+        System.out.println(failed ? "FAILED" : "all tests passed");
+        if (failed) System.exit(1);
+    }
+
+    private interface Density {
+        double at(double x);
+    }
+
+    private interface Condition {
+        boolean test(double x);
+    }
+
+    /** tests the samples against the given density with a chi-square test on equally wide bins in [lo, hi) */
+    private static void chiSquare(String name, double[] samples, double lo, double hi, Density density) {
+        double width = (hi - lo) / BINS;
+        long[] counts = new long[BINS];
+        for (double x : samples) {
+            if (x >= lo && x < hi) counts[(int) ((x - lo) / width)]++;
+        }
+
+        double total = integrate(density, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        double chi2 = 0;
+        int freedom = 0;
+        for (int b = 0; b < BINS; b++) {
+            double expected = samples.length * integrate(density, lo + b * width, lo + (b + 1) * width) / total;
+            // bins with few expected samples are not chi-square distributed
+            if (expected < 10) continue;
+            chi2 += (counts[b] - expected) * (counts[b] - expected) / expected;
+            freedom++;
+        }
+
+        // Wilson-Hilferty transformation to a standard normal score
+        double k = freedom - 1;
+        double score = (Math.cbrt(chi2 / k) - (1 - 2 / (9 * k))) / Math.sqrt(2 / (9 * k));
+        report(String.format(Locale.US, "%s chi-square (%d bins, chi2 = %.1f)", name, freedom, chi2), score);
+    }
+
+    /** tests the fraction of the samples that satisfies the condition against the given probability */
+    private static void frequency(String name, double[] samples, Condition condition, double probability) {
+        long count = 0;
+        for (double x : samples) {
+            if (condition.test(x)) count++;
+        }
+        double expected = samples.length * probability;
+        double score = (count - expected) / Math.sqrt(expected * (1 - probability));
+        report(String.format(Locale.US, "%s (%d of %.1f expected)", name, count, expected), score);
+    }
+
+    /**
+     * tests the mean, variance, skewness and kurtosis of the samples against the given values. The standard errors are
+     * estimated from the sample moments up to the eighth
+     */
+    private static void moments(String name, double[] samples, double mean, double variance, double skewness, double kurtosis) {
+        int n = samples.length;
+        double[] m = new double[9];
+        for (double x : samples) {
+            double d = x - mean;
+            double power = 1;
+            for (int j = 1; j <= 8; j++) {
+                power *= d;
+                m[j] += power;
+            }
+        }
+        for (int j = 1; j <= 8; j++) {
+            m[j] /= n;
+        }
+        double sd = Math.sqrt(variance);
+
+        report(name + " mean", (m[1]) / Math.sqrt(m[2] / n));
+        report(name + " variance", (m[2] - variance) / Math.sqrt((m[4] - m[2] * m[2]) / n));
+        double s3 = sd * sd * sd;
+        report(name + " skewness", (m[3] / s3 - skewness) / Math.sqrt((m[6] - m[3] * m[3]) / n / (s3 * s3)));
+        double s4 = variance * variance;
+        report(name + " kurtosis", (m[4] / s4 - kurtosis) / Math.sqrt((m[8] - m[4] * m[4]) / n / (s4 * s4)));
+    }
+
+    /** integrates the density over [a, b] with 5-point Gauss-Legendre on pieces of width 1/16 */
+    private static double integrate(Density density, double a, double b) {
+        a = Math.max(a, -40);
+        b = Math.min(b, 40);
+        int pieces = (int) Math.ceil((b - a) * 16);
+        double h = (b - a) / pieces / 2;
+        double sum = 0;
+        for (int p = 0; p < pieces; p++) {
+            double center = a + (2 * p + 1) * h;
+            for (int g = 0; g < GAUSS_NODES.length; g++) {
+                double x = center + h * GAUSS_NODES[g];
+                sum += h * GAUSS_WEIGHTS[g] * density.at(x);
+            }
+        }
+        return sum;
+    }
+
+    private static double normalDensity(double x) {
+        return Math.exp(-0.5 * x * x) / Math.sqrt(2 * Math.PI);
+    }
+
+    private static void report(String test, double score) {
+        report(String.format(Locale.US, "%s, score %.2f", test, score), Math.abs(score) <= MAX_SCORE);
+    }
+
+    private static void report(String test, boolean passed) {
+        System.out.printf("%-4s %s%n", passed ? "ok" : "FAIL", test);
+        if (!passed) failed = true;
+    }
+
+    private static void report(String test, int count, boolean passed) {
+        report(test + ", " + count + " differences", passed);
+    }
+}
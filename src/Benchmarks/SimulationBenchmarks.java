@@ -0,0 +1,322 @@
+package Benchmarks;
+
+import Distributions.Distribution;
+import Distributions.NormalDistribution;
+import Distributions.RandomStream;
+import Results.DailyResults;
+import Results.MultiResultCollector;
+import Results.MultiSpaceResultsImpl;
+import Results.SpaceResults;
+import Simulation.AutoTunedPolicy;
+import Simulation.BatchSimulation;
+import Simulation.EventSimulation;
+import Simulation.SamplerPolicy;
+import Simulation.Scenario;
+import Simulation.ShellModel;
+import Simulation.ShellSimulation;
+import Simulation.SizeSpectrum;
+import Simulation.SpectrumSimulation;
+import Simulation.SpaceSimulation;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * benchmarks the collision sampler of {@link SpaceSimulation} across its branches, the daily simulation step, complete
+ * runs with and without leaping and with the auto-tuned sampler policy, the cost per run of the daily and the {@link
+ * EventSimulation} engine, the cost per run of the {@link BatchSimulation}, the cost of the {@link ShellSimulation} with
+ * and without parallel shells, the cost of the {@link SpectrumSimulation}, and the aggregation of results.
+ * <p>
+ * Run all benchmarks with {@code java -jar target/benchmarks.jar SimulationBenchmarks}, and add {@code -prof gc} for
+ * the allocations per operation. The main method runs the daily step with the gc profiler, and reports whether it is
+ * allocation-free.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class SimulationBenchmarks {
+    private static final long SEED = 42;
+    private static final int RUN_LENGTH = 300 * SpaceSimulation.YEARS + 1;
+    private static final int ENGINE_YEARS = 50;
+    private static final int ENGINE_LENGTH = ENGINE_YEARS * SpaceSimulation.YEARS + 1;
+    private static final int BATCH_SIZE = 16;
+    private static final double SHELL_WIDTH = 25;
+    private static final int BINS_PER_DECADE = 12;
+
+    private final Scenario scenario = Scenario.DEFAULT;
+    private final double probDangerPerParticle = scenario.probDangerPerParticle;
+    private final double collisionByDangerRisk = scenario.collisionByDangerRisk;
+    private RandomStream rand;
+
+    @Setup
+    public void setUp() {
+        rand = new RandomStream(SEED);
+    }
+
+    /** a run of which every invocation simulates one day. A finished run is replaced by a new run */
+    @State(Scope.Thread)
+    public static class DailyState {
+        private final DailyResults discard = new DiscardedResults();
+        private long seed = SEED;
+        SpaceSimulation run;
+
+        @Setup
+        public void setUp() {
+            run = new SpaceSimulation(Scenario.DEFAULT, RUN_LENGTH, seed, discard);
+        }
+
+        /** @return the run of the next day */
+        SpaceSimulation next() {
+            // a new run allocates less than a kilobyte, once every 300 years
+            if (run.isFinished()) run = new SpaceSimulation(Scenario.DEFAULT, RUN_LENGTH, ++seed, discard);
+            return run;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class LeapState {
+        @Param({"1", "30", "365"})
+        public int maxLeap;
+        Scenario scenario;
+
+        @Setup
+        public void setUp() {
+            scenario = Scenario.DEFAULT.with(Scenario.Parameter.MAX_LEAP_DAYS, maxLeap);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class AutoTunedState {
+        @Setup
+        public void setUp() {
+            SpaceSimulation.setSamplerPolicy(new AutoTunedPolicy(AutoTunedPolicy.DEFAULT_MAX_DISTANCE));
+        }
+
+        @TearDown
+        public void tearDown() {
+            SpaceSimulation.setSamplerPolicy(SamplerPolicy.HEURISTIC);
+        }
+    }
+
+    /** the sampler policy of the engines that are compared per run */
+    @State(Scope.Thread)
+    public static class PolicyState {
+        @Param({"heuristic", "normal"})
+        public String policy;
+
+        @Setup
+        public void setUp() {
+            SpaceSimulation.setSamplerPolicy(SamplerPolicy.parse(policy));
+        }
+
+        @TearDown
+        public void tearDown() {
+            SpaceSimulation.setSamplerPolicy(SamplerPolicy.HEURISTIC);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ShellState {
+        /** the draws of the shells are forked over the common pool, hence the gain depends on the number of processors */
+        @Param({"false", "true"})
+        public boolean parallel;
+        ShellModel shells;
+
+        @Setup
+        public void setUp() {
+            shells = ShellModel.leo(SHELL_WIDTH);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class CollectorState {
+        SpaceResults results;
+        MultiResultCollector collector;
+
+        @Setup
+        public void setUp() {
+            results = new SpaceResults(RUN_LENGTH);
+            new SpaceSimulation(Scenario.DEFAULT, RUN_LENGTH, SEED, results).run();
+            collector = MultiSpaceResultsImpl.getCollector(1, RUN_LENGTH);
+        }
+    }
+
+    /** the branch of a satellite against the small particles, as in a regular day */
+    @Benchmark
+    public int sampleOptimizedPoissonSatelliteSmall() {
+        return SpaceSimulation.sampleOptimized(750_000L * 1200, probDangerPerParticle, rand);
+    }
+
+    /** the branch of the hugh particles against each other, as in a regular day */
+    @Benchmark
+    public int sampleOptimizedPoissonHughHugh() {
+        return SpaceSimulation.sampleOptimized(3600L * 3599, probDangerPerParticle * collisionByDangerRisk, rand);
+    }
+
+    @Benchmark
+    public int sampleOptimizedBinomialSmallN() {
+        return SpaceSimulation.sampleOptimized(200, 0.3, rand);
+    }
+
+    @Benchmark
+    public int sampleOptimizedBinomialLargeN() {
+        return SpaceSimulation.sampleOptimized(1_000_000_000L, 0.3, rand);
+    }
+
+    /** only chosen by the auto-tuned or the fixed normal sampler policy, hence measured directly */
+    @Benchmark
+    public long normalApproximation() {
+        double n = 1_000_000_000L;
+        double est = NormalDistribution.get(n * 0.3, Math.sqrt(n * 0.3 * 0.7), rand);
+        return Distribution.randomToInt(est, rand);
+    }
+
+    @Benchmark
+    public void progressOneDay(DailyState s) {
+        s.next().nextDay();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 10)
+    @Measurement(iterations = 10)
+    public int run300Years(LeapState s) {
+        SpaceResults r = new SpaceResults(RUN_LENGTH);
+        new SpaceSimulation(s.scenario, RUN_LENGTH, SEED, r).run();
+        return r.getNumberOfLostSatellites();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 10)
+    @Measurement(iterations = 10)
+    public int run300YearsAutoTuned(AutoTunedState s) {
+        SpaceResults r = new SpaceResults(RUN_LENGTH);
+        new SpaceSimulation(scenario, RUN_LENGTH, SEED, r).run();
+        return r.getNumberOfLostSatellites();
+    }
+
+    /** the event engine becomes more expensive as the populations grow, hence all engines run the same horizon */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 10)
+    @Measurement(iterations = 10)
+    public int dailyEngine(PolicyState s) {
+        SpaceResults r = new SpaceResults(ENGINE_LENGTH);
+        new SpaceSimulation(scenario, ENGINE_LENGTH, SEED, r).run();
+        return r.getNumberOfLostSatellites();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 10)
+    @Measurement(iterations = 10)
+    public int eventEngine() {
+        SpaceResults r = new SpaceResults(ENGINE_LENGTH);
+        new EventSimulation(scenario, ENGINE_LENGTH, SEED, r).run();
+        return r.getNumberOfLostSatellites();
+    }
+
+    /**
+     * a batch produces the same runs as the daily engine, hence the score per run is directly comparable. The normal
+     * sampler policy shows the gain of the vectorized draws
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 10)
+    @Measurement(iterations = 10)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int batchEngine(PolicyState s) {
+        RandomStream[] streams = new RandomStream[BATCH_SIZE];
+        SpaceResults[] batchResults = new SpaceResults[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            streams[i] = new RandomStream(SEED + i);
+            batchResults[i] = new SpaceResults(ENGINE_LENGTH);
+        }
+        new BatchSimulation(scenario, ENGINE_LENGTH, streams, batchResults).run();
+        return batchResults[0].getNumberOfLostSatellites();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 10)
+    @Measurement(iterations = 10)
+    public int shellEngine(ShellState s) {
+        SpaceResults r = new SpaceResults(ENGINE_LENGTH);
+        new ShellSimulation(scenario, s.shells, ENGINE_LENGTH, new RandomStream(SEED), s.parallel, r).run();
+        return r.getNumberOfLostSatellites();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 10)
+    @Measurement(iterations = 10)
+    public int spectrumEngine() {
+        SpaceResults r = new SpaceResults(ENGINE_LENGTH);
+        new SpectrumSimulation(scenario, SizeSpectrum.nasa(BINS_PER_DECADE), ENGINE_LENGTH, new RandomStream(SEED), r).run();
+        return r.getNumberOfLostSatellites();
+    }
+
+    /** the aggregation of a run of 300 years */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void multiSpaceResultsAdd(CollectorState s) {
+        s.collector.add(s.results);
+    }
+
+    /**
+     * runs the daily step with the gc profiler, and reports whether it allocates. The few bytes that the JIT and a new
+     * run allocate during the measurement amount to less than a byte per day, hence that counts as none.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(SimulationBenchmarks.class.getName() + ".progressOneDay")
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+
+        for (RunResult result : results) {
+            Result<?> bytesPerOp = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            System.out.printf(Locale.US, "daily step allocation-free: %s (%.3f B/op)%n",
+                    bytesPerOp.getScore() < 1 ? "yes" : "NO", bytesPerOp.getScore()
+            );
+        }
+    }
+
+    /** the results of a run of which only the cost of the simulation is measured */
+    private static final class DiscardedResults implements DailyResults {
+        @Override
+        public void addResults(long pSmall, long pLarge, int pHugh, int satsInOrbit, int flightsQueued) {
+        }
+
+        @Override
+        public void addLostSatellites(int n) {
+        }
+
+        @Override
+        public void addSaves(int n) {
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+}
@@ -1,16 +1,18 @@
 package Distributions;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 public class BernoulliDistribution extends Distribution {
 
-    private final ThreadLocalRandom rand = ThreadLocalRandom.current();
     protected double success;  // Success probability
 
     public BernoulliDistribution(double success) {
         this.success = success;
     }
 
+    public BernoulliDistribution(double success, RandomStream rand) {
+        super(rand);
+        this.success = success;
+    }
+
     @Override
     public double expectation() {
         return success;
@@ -1,19 +1,27 @@
 package Distributions;
 
-import java.util.concurrent.ThreadLocalRandom;
-
+/**
+ * binomial distribution with constant expected sampling time, using inversion for small expectations and the BTPE
+ * (triangle, parallelogram, exponential) rejection algorithm otherwise.
+ * BTPE: V. Kachitvichyanukul and B. W. Schmeiser, "Binomial Random Variate Generation", CACM 31(2), 1988
+ */
 public class BinomialDistribution extends Distribution {
 
+    /** below this expectation, inversion is cheaper than rejection */
+    private static final double INVERSION_BOUND = 30.0;
+
     protected long nOfExperiments;      // Number of experiments
     protected double success;   // Success probability
-    private BernoulliDistribution bernoulli;
-    private static final ThreadLocalRandom rand = ThreadLocalRandom.current();
 
-    // A binomial rv is the sum of n Bernoulli rv's with parameter p
     public BinomialDistribution(long nOfExperiments, double success) {
         this.nOfExperiments = nOfExperiments;
         this.success = success;
-        this.bernoulli = new BernoulliDistribution(success);
+    }
+
+    public BinomialDistribution(long nOfExperiments, double success, RandomStream rand) {
+        super(rand);
+        this.nOfExperiments = nOfExperiments;
+        this.success = success;
     }
 
     @Override
@@ -28,22 +36,151 @@ public class BinomialDistribution extends Distribution {
 
     @Override
     public double nextRandom() {
-        return nextInt();
+        return nextLong();
     }
 
     public int nextInt() {
-        int sum = 0;
-        for (int i = 0; i < nOfExperiments; i++) {
-            sum += bernoulli.nextInt();
+        return (int) nextLong();
+    }
+
+    public long nextLong() {
+        return get(nOfExperiments, success, rand);
+    }
+
+    public static long get(long nOfExperiments, double success, RandomStream rand) {
+        if (nOfExperiments <= 0 || success <= 0) return 0;
+        if (success >= 1) return nOfExperiments;
+
+        if (success <= 0.5) {
+            if (nOfExperiments * success <= INVERSION_BOUND) {
+                return inversion(nOfExperiments, success, rand);
+            }
+        } else {
+            double failure = 1 - success;
+            if (nOfExperiments * failure <= INVERSION_BOUND) {
+                return nOfExperiments - inversion(nOfExperiments, failure, rand);
+            }
         }
-        return sum;
+
+        return btpe(nOfExperiments, success, rand);
     }
 
-    public static int get(long nOfExperiments, double success) {
-        int sum = 0;
-        for (int i = 0; i < nOfExperiments; i++) {
-            if (rand.nextDouble() < success) sum++;
+    /** sequential inversion, expected time linear in n * p */
+    private static long inversion(long n, double p, RandomStream rand) {
+        double q = 1 - p;
+        double qn = Math.exp(n * Math.log1p(-p));
+        double np = n * p;
+        long bound = (long) Math.min(n, np + 10.0 * Math.sqrt(np * q + 1));
+
+        long x = 0;
+        double px = qn;
+        double u = rand.nextDouble();
+        while (u > px) {
+            x++;
+            if (x > bound) {
+                // numerical tail, restart
+                x = 0;
+                px = qn;
+                u = rand.nextDouble();
+            } else {
+                u -= px;
+                px = ((n - x + 1) * p * px) / (x * q);
+            }
         }
-        return sum;
+        return x;
+    }
+
+    /** BTPE, expected time constant in n and p. Requires n * min(p, 1 - p) >= 30 */
+    private static long btpe(long n, double p, RandomStream rand) {
+        // setup
+        final double r = Math.min(p, 1 - p);
+        final double q = 1 - r;
+        final double fm = n * r + r;
+        final long m = (long) Math.floor(fm);
+        final double nrq = n * r * q;
+        final double p1 = Math.floor(2.195 * Math.sqrt(nrq) - 4.6 * q) + 0.5;
+        final double xm = m + 0.5;
+        final double xl = xm - p1;
+        final double xr = xm + p1;
+        final double c = 0.134 + 20.5 / (15.3 + m);
+        double a = (fm - xl) / (fm - xl * r);
+        final double laml = a * (1 + a / 2);
+        a = (xr - fm) / (xr * q);
+        final double lamr = a * (1 + a / 2);
+        final double p2 = p1 * (1 + 2 * c);
+        final double p3 = p2 + c / laml;
+        final double p4 = p3 + c / lamr;
+
+        long y;
+        while (true) {
+            double u = rand.nextDouble() * p4;
+            double v = rand.nextDouble();
+
+            if (u <= p1) {
+                // triangular region, immediate acceptance
+                y = (long) Math.floor(xm - p1 * v + u);
+                break;
+
+            } else if (u <= p2) {
+                // parallelogram region
+                double x = xl + (u - p1) / c;
+                v = v * c + 1 - Math.abs(m - x + 0.5) / p1;
+                if (v > 1) continue;
+                y = (long) Math.floor(x);
+
+            } else if (u <= p3) {
+                // left exponential tail
+                y = (long) Math.floor(xl + Math.log(v) / laml);
+                if (y < 0 || v == 0) continue;
+                v = v * (u - p2) * laml;
+
+            } else {
+                // right exponential tail
+                y = (long) Math.floor(xr - Math.log(v) / lamr);
+                if (y > n || v == 0) continue;
+                v = v * (u - p3) * lamr;
+            }
+
+            long k = Math.abs(y - m);
+            if (k <= 20 || k >= nrq / 2 - 1) {
+                // explicit evaluation of f(y) / f(m)
+                double s = r / q;
+                double as = s * (n + 1);
+                double f = 1;
+                if (m < y) {
+                    for (long i = m + 1; i <= y; i++) f *= (as / i - s);
+                } else if (m > y) {
+                    for (long i = y + 1; i <= m; i++) f /= (as / i - s);
+                }
+                if (v <= f) break;
+
+            } else {
+                // squeezing using upper and lower bounds on log(f(y))
+                double rho = (k / nrq) * ((k * (k / 3.0 + 0.625) + 0.16666666666666666) / nrq + 0.5);
+                double t = -k * (double) k / (2 * nrq);
+                double logV = Math.log(v);
+                if (logV < t - rho) break;
+                if (logV > t + rho) continue;
+
+                // final acceptance using Stirling's formula
+                double x1 = y + 1;
+                double f1 = m + 1;
+                double z = n + 1 - m;
+                double w = n - y + 1;
+                double bound = xm * Math.log(f1 / x1)
+                        + (n - m + 0.5) * Math.log(z / w)
+                        + (y - m) * Math.log(w * r / (x1 * q))
+                        + stirlingCorrection(f1) + stirlingCorrection(z)
+                        + stirlingCorrection(x1) + stirlingCorrection(w);
+                if (logV <= bound) break;
+            }
+        }
+
+        return (p > 0.5) ? (n - y) : y;
+    }
+
+    private static double stirlingCorrection(double x) {
+        double x2 = x * x;
+        return (13680. - (462. - (132. - (99. - 140. / x2) / x2) / x2) / x2) / x / 166320.;
     }
-}
\ No newline at end of file
+}
@@ -25,4 +25,9 @@ public class ConstantValue extends Distribution {
     public double nextRandom() {
         return returnValue;
     }
+
+    @Override
+    public double sumOf(int k) {
+        return k * returnValue;
+    }
 }
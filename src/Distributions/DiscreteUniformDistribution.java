@@ -1,7 +1,5 @@
 package Distributions;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 public class DiscreteUniformDistribution extends Distribution {
 
     protected int m; // lower bound
@@ -12,6 +10,12 @@ public class DiscreteUniformDistribution extends Distribution {
         this.n = n;
     }
 
+    public DiscreteUniformDistribution(int m, int n, RandomStream rand) {
+        super(rand);
+        this.m = m;
+        this.n = n;
+    }
+
     @Override
     public double expectation() {
         return (m + n) / 2.0;
@@ -24,9 +28,8 @@ public class DiscreteUniformDistribution extends Distribution {
 
     @Override
     public double nextRandom() {
-        double U = ThreadLocalRandom.current().nextDouble();
+        double U = rand.nextDouble();
         return m + Math.floor((n - m + 1) * U);
     }
 
-
 }
\ No newline at end of file
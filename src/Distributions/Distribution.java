@@ -1,12 +1,23 @@
 package Distributions;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 /**
  * @author mboon
  */
 public abstract class Distribution {
 
+    /** the random stream this distribution draws from. Not threadsafe; use one stream per simulation run */
+    protected final RandomStream rand;
+
+    /** creates a distribution drawing from its own, independently seeded random stream */
+    protected Distribution() {
+        this(new RandomStream());
+    }
+
+    /** creates a distribution drawing from the given random stream */
+    protected Distribution(RandomStream rand) {
+        this.rand = rand;
+    }
+
     public abstract double expectation();
 
     public abstract double variance();
@@ -17,12 +28,27 @@ public abstract class Distribution {
 
     public abstract double nextRandom();
 
+    /** returns the sum of k independent samples of this distribution */
+    public double sumOf(int k) {
+        double sum = 0;
+        for (int i = 0; i < k; i++) {
+            sum += nextRandom();
+        }
+        return sum;
+    }
+
+    /** fills the given array with independent samples of this distribution */
+    public void fill(double[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = nextRandom();
+        }
+    }
+
     /** transforms a double to an int, by drawing a random variable for the remainder */
-    public static int randomToInt(double value) {
+    public static int randomToInt(double value, RandomStream rand) {
         int base = (int) value;
 
         value -= base;
-        ThreadLocalRandom rand = ThreadLocalRandom.current();
         if (rand.nextDouble() < value) base++;
 
         return base;
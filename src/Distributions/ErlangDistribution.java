@@ -10,6 +10,12 @@ public class ErlangDistribution extends Distribution {
         this.lambda = lambda;
     }
 
+    public ErlangDistribution(int n, double lambda, RandomStream rand) {
+        super(rand);
+        this.n = n;
+        this.lambda = lambda;
+    }
+
     @Override
     public double expectation() {
         return 1.0 * n / lambda;
@@ -23,13 +29,7 @@ public class ErlangDistribution extends Distribution {
     @Override
     public double nextRandom() {
         // A Erlang rv is the sum of n exponential rv's with parameter lambda
-        ExponentialDistribution ed = new ExponentialDistribution(lambda);
-        double sum = 0;
-        for (int i = 0; i < n; i++) {
-            sum += ed.nextRandom();
-        }
-        return sum;
+        return ExponentialDistribution.sum(n, lambda, rand);
     }
 
-
 }
\ No newline at end of file
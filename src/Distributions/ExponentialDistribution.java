@@ -6,22 +6,45 @@
 
 package Distributions;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 /**
  * @author mboon
  */
 public class ExponentialDistribution extends Distribution {
 
+    /** up to this number of terms, a sum is computed from the product of uniforms */
+    private static final int PRODUCT_SUM_BOUND = 16;
+
     protected double lambda;
 
     public ExponentialDistribution(double lambda) {
         this.lambda = lambda;
     }
 
-    public static double get(double lambda) {
-        double u = ThreadLocalRandom.current().nextDouble();
-        return -Math.log(u) / lambda;
+    public ExponentialDistribution(double lambda, RandomStream rand) {
+        super(rand);
+        this.lambda = lambda;
+    }
+
+    /** draws an exponential variable using the {@link Ziggurat} method */
+    public static double get(double lambda, RandomStream rand) {
+        return Ziggurat.exponential(rand) / lambda;
+    }
+
+    /**
+     * @return the sum of k independent exponential variables with the given lambda, which is gamma(k, lambda)
+     * distributed
+     */
+    public static double sum(int k, double lambda, RandomStream rand) {
+        if (k <= 0) return 0;
+        if (k > PRODUCT_SUM_BOUND) return GammaDistribution.get(k, lambda, rand);
+
+        // the sum of -log(u_i) is -log of the product of u_i. This inversion costs a single log for the whole sum, and
+        // unlike the ziggurat it keeps the sums of antithetic streams negatively correlated
+        double product = 1;
+        for (int i = 0; i < k; i++) {
+            product *= rand.nextDouble();
+        }
+        return -Math.log(product) / lambda;
     }
 
     @Override
@@ -41,7 +64,19 @@ public class ExponentialDistribution extends Distribution {
 
     @Override
     public double nextRandom() {
-        return get(lambda);
+        return get(lambda, rand);
+    }
+
+    @Override
+    public double sumOf(int k) {
+        return sum(k, lambda, rand);
+    }
+
+    @Override
+    public void fill(double[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = Ziggurat.exponential(rand) / lambda;
+        }
     }
 
 }
@@ -6,14 +6,11 @@
 
 package Distributions;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 /**
  * @author mboon
  */
 public class GammaDistribution extends Distribution {
 
-    private final ThreadLocalRandom rand = ThreadLocalRandom.current();
     protected double alpha, beta;
 
     public GammaDistribution(double alpha, double beta) {
@@ -21,6 +18,12 @@ public class GammaDistribution extends Distribution {
         this.beta = beta;
     }
 
+    public GammaDistribution(double alpha, double beta, RandomStream rand) {
+        super(rand);
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
     @Override
     public double expectation() {
         return alpha / beta;
@@ -32,6 +35,24 @@ public class GammaDistribution extends Distribution {
     }
 
     public double nextRandom() {
+        return get(alpha, beta, rand);
+    }
+
+    /** the sum of k independent gamma(alpha, beta) variables is gamma(k * alpha, beta) distributed */
+    @Override
+    public double sumOf(int k) {
+        if (k <= 0) return 0;
+        return get(k * alpha, beta, rand);
+    }
+
+    @Override
+    public void fill(double[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = get(alpha, beta, rand);
+        }
+    }
+
+    public static double get(double alpha, double beta, RandomStream rand) {
         double shape = alpha;
         double scale = 1.0 / beta;
         if (shape < 1) {
@@ -72,7 +93,7 @@ public class GammaDistribution extends Distribution {
         final double c = 1 / (3 * Math.sqrt(d));
 
         while (true) {
-            final double x = rand.nextGaussian();
+            final double x = NormalDistribution.nextGaussian(rand);
             final double v = (1 + c * x) * (1 + c * x) * (1 + c * x);
 
             if (v <= 0) {
@@ -93,7 +114,6 @@ public class GammaDistribution extends Distribution {
         }
     }
 
-
     public static void main(String[] arg) {
         double sumX = 0;
         double sumX2 = 0;
@@ -1,7 +1,5 @@
 package Distributions;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 public class GeometricDistribution extends Distribution {
 
     protected double p;   // Success probability
@@ -10,6 +8,11 @@ public class GeometricDistribution extends Distribution {
         this.p = p;
     }
 
+    public GeometricDistribution(double p, RandomStream rand) {
+        super(rand);
+        this.p = p;
+    }
+
     @Override
     public double expectation() {
         return 1 / p;
@@ -22,7 +25,7 @@ public class GeometricDistribution extends Distribution {
 
     @Override
     public double nextRandom() {
-        double U = ThreadLocalRandom.current().nextDouble();
+        double U = rand.nextDouble();
         return 1 + Math.floor(Math.log(U) / Math.log(1 - p));
     }
 
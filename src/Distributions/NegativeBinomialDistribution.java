@@ -10,6 +10,12 @@ public class NegativeBinomialDistribution extends Distribution {
         this.p = p;
     }
 
+    public NegativeBinomialDistribution(int n, double p, RandomStream rand) {
+        super(rand);
+        this.n = n;
+        this.p = p;
+    }
+
     @Override
     public double expectation() {
         return 1.0 * n / p;
@@ -24,7 +30,7 @@ public class NegativeBinomialDistribution extends Distribution {
     public double nextRandom() {
         // A negative binomial rv is the sum of n geometric rv's with parameter p
         double sum = 0;
-        GeometricDistribution gd = new GeometricDistribution(p);
+        GeometricDistribution gd = new GeometricDistribution(p, rand);
         for (int i = 0; i < n; i++) {
             sum += gd.nextRandom();
         }
@@ -32,6 +38,5 @@ public class NegativeBinomialDistribution extends Distribution {
     }
 }
 
-
     
     
\ No newline at end of file
@@ -1,7 +1,5 @@
 package Distributions;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 public class NormalDistribution extends Distribution {
 
     protected double mu;
@@ -12,6 +10,12 @@ public class NormalDistribution extends Distribution {
         this.sigma = sigma;
     }
 
+    public NormalDistribution(double mu, double sigma, RandomStream rand) {
+        super(rand);
+        this.mu = mu;
+        this.sigma = sigma;
+    }
+
     @Override
     public double expectation() {
         return mu;
@@ -24,12 +28,16 @@ public class NormalDistribution extends Distribution {
 
     @Override
     public double nextRandom() {
-        double U = ThreadLocalRandom.current().nextGaussian();
-        return mu + sigma * U;
+        return get(mu, sigma, rand);
     }
 
-    public static double get(double mu, double sigma) {
-        double U = ThreadLocalRandom.current().nextGaussian();
+    public static double get(double mu, double sigma, RandomStream rand) {
+        double U = nextGaussian(rand);
         return mu + sigma * U;
     }
+
+    /** draws a standard normal variable using the {@link Ziggurat} method */
+    public static double nextGaussian(RandomStream rand) {
+        return Ziggurat.normal(rand);
+    }
 }
\ No newline at end of file
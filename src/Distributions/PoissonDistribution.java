@@ -1,16 +1,26 @@
 package Distributions;
 
-import java.util.concurrent.ThreadLocalRandom;
-
+/**
+ * poisson distribution with constant expected sampling time, using inversion for small lambda and the PTRS
+ * transformed rejection method otherwise.
+ * PTRS: W. Hoermann, "The transformed rejection method for generating Poisson random variables", 1993
+ */
 public class PoissonDistribution extends Distribution {
 
-    private static final ThreadLocalRandom rand = ThreadLocalRandom.current();
+    /** from this lambda, transformed rejection is cheaper than inversion */
+    private static final double REJECTION_BOUND = 10.0;
+
     protected double lambda;
 
     public PoissonDistribution(double lambda) {
         this.lambda = lambda;
     }
 
+    public PoissonDistribution(double lambda, RandomStream rand) {
+        super(rand);
+        this.lambda = lambda;
+    }
+
     @Override
     public double expectation() {
         return lambda;
@@ -23,20 +33,84 @@ public class PoissonDistribution extends Distribution {
 
     @Override
     public double nextRandom() {
-        return get(lambda);
+        return get(lambda, rand);
     }
 
-    public static int get(double lambda) {
+    public static int get(double lambda, RandomStream rand) {
+        if (lambda >= REJECTION_BOUND) return ptrs(lambda, rand);
+
         // Discrete inverse transform method
+        double p0 = Math.exp(-lambda);
+        int bound = (int) (lambda + 10.0 * Math.sqrt(lambda + 1));
         double U = rand.nextDouble();
         int index = 0;
-        double current = Math.exp(-lambda);
+        double current = p0;
         double sum = current;
         while (sum < U) {
             index++;
-            current = current * lambda / (1.0 * index);
-            sum += current;
+            if (index > bound) {
+                // numerical tail, where the sum of the probabilities may stay below U, restart
+                index = 0;
+                current = p0;
+                sum = current;
+                U = rand.nextDouble();
+            } else {
+                current = current * lambda / (1.0 * index);
+                sum += current;
+            }
         }
         return index;
     }
+
+    /** PTRS, expected time constant in lambda. Requires lambda >= 10 */
+    private static int ptrs(double lambda, RandomStream rand) {
+        final double sLambda = Math.sqrt(lambda);
+        final double logLambda = Math.log(lambda);
+        final double b = 0.931 + 2.53 * sLambda;
+        final double a = -0.059 + 0.02483 * b;
+        final double logInvAlpha = Math.log(1.1239 + 1.1328 / (b - 3.4));
+        final double vr = 0.9277 - 3.6224 / (b - 2);
+
+        while (true) {
+            double u = rand.nextDouble() - 0.5;
+            double v = rand.nextDouble();
+            double us = 0.5 - Math.abs(u);
+            long k = (long) Math.floor((2 * a / us + b) * u + lambda + 0.43);
+
+            // immediate acceptance
+            if (us >= 0.07 && v <= vr) return (int) k;
+            if (k < 0 || (us < 0.013 && v > us)) continue;
+
+            if (Math.log(v) + logInvAlpha - Math.log(a / (us * us) + b) <= -lambda + k * logLambda - logGamma(k + 1)) {
+                return (int) k;
+            }
+        }
+    }
+
+    private static final double[] STIRLING_COEFFICIENTS = {
+            8.333333333333333e-02, -2.777777777777778e-03, 7.936507936507937e-04, -5.952380952380952e-04,
+            8.417508417508418e-04, -1.917526917526918e-03, 6.410256410256410e-03, -2.955065359477124e-02,
+            1.796443723688307e-01, -1.39243221690590e+00
+    };
+
+    /** log(gamma(x)) for x >= 1, using the stirling series */
+    static double logGamma(double x) {
+        if (x == 1 || x == 2) return 0;
+
+        int n = (x < 7) ? (int) (7 - x) : 0;
+        double x0 = x + n;
+        double x2 = 1 / (x0 * x0);
+
+        double gl0 = STIRLING_COEFFICIENTS[9];
+        for (int k = 8; k >= 0; k--) {
+            gl0 = gl0 * x2 + STIRLING_COEFFICIENTS[k];
+        }
+        double gl = gl0 / x0 + 0.5 * Math.log(2 * Math.PI) + (x0 - 0.5) * Math.log(x0) - x0;
+
+        for (int k = 0; k < n; k++) {
+            x0 -= 1;
+            gl -= Math.log(x0);
+        }
+        return gl;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+package Distributions;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * the source of uniform random values of all distributions. A stream is either normal, or the antithetic counterpart
+ * of the stream with the same seed: the antithetic stream inverts all bits, hence where the normal stream returns a
+ * uniform u, the antithetic stream returns 1 - 2^-53 - u, which stays in [0, 1). Samplers
+ * that invert a distribution function then return negatively correlated values for both streams, which reduces the
+ * variance of the mean of a pair of runs. Samplers that reject values remain exact, but their correlation is weaker.
+ * <p>
+ * The generator is SplitMix64 (Steele, Lea and Flood, 2014), and produces the same values as {@link
+ * java.util.SplittableRandom} with the same seed. Unlike that class, the state of a stream can be saved and restored,
+ * see {@link #write(DataOutput)}.
+ * <p>
+ * Not threadsafe; use one stream per simulation run.
+ */
+public final class RandomStream {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long seed;
+    /** the odd increment of the seed, unique for every stream split of the same parent */
+    private final long gamma;
+    private final boolean antithetic;
+
+    /** creates a normal stream with an arbitrary seed */
+    public RandomStream() {
+        this(ThreadLocalRandom.current().nextLong(), false);
+    }
+
+    /** creates a normal stream with the given seed */
+    public RandomStream(long seed) {
+        this(seed, false);
+    }
+
+    /**
+     * @param seed       the seed of the stream. Two streams with the same seed produce identical values
+     * @param antithetic if true, every uniform value u of the stream with this seed is replaced by 1 - 2^-53 - u
+     */
+    public RandomStream(long seed, boolean antithetic) {
+        this(seed, GOLDEN_GAMMA, antithetic);
+    }
+
+    private RandomStream(long seed, long gamma, boolean antithetic) {
+        this.seed = seed;
+        this.gamma = gamma;
+        this.antithetic = antithetic;
+    }
+
+    /** @return a uniform value in [0, 1), also if this stream is antithetic, as samplers may require u < 1 */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /** @return 64 uniform random bits, which are all inverted if this stream is antithetic */
+    public long nextLong() {
+        long bits = mix64(nextSeed());
+        return antithetic ? ~bits : bits;
+    }
+
+    /**
+     * creates a new stream that is independent of this one, and advances this stream. Substreams split in the same
+     * order from streams with the same seed are identical, except for being antithetic like their parent. Drawing
+     * values for different purposes from different substreams keeps runs with the same seed synchronized, even when
+     * they draw a different number of values for one of these purposes.
+     */
+    public RandomStream split() {
+        return new RandomStream(mix64(nextSeed()), mixGamma(nextSeed()), antithetic);
+    }
+
+    public boolean isAntithetic() {
+        return antithetic;
+    }
+
+    /** the seed of the last value drawn, such that {@link VectorNormal} can draw from many streams at once */
+    long getSeed() {
+        return seed;
+    }
+
+    /** continues this stream from the given seed, which {@link VectorNormal} advanced */
+    void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    long getGamma() {
+        return gamma;
+    }
+
+    /** writes the complete state of this stream, such that {@link #read(DataInput)} continues where this stream is */
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(seed);
+        out.writeLong(gamma);
+        out.writeBoolean(antithetic);
+    }
+
+    /** @return a stream in the state written by {@link #write(DataOutput)} */
+    public static RandomStream read(DataInput in) throws IOException {
+        long seed = in.readLong();
+        long gamma = in.readLong();
+        boolean antithetic = in.readBoolean();
+        return new RandomStream(seed, gamma, antithetic);
+    }
+
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+    /** Stafford variant 13 of the MurmurHash3 finalizer */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** an odd gamma with enough bit transitions, derived from z */
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xAAAAAAAAAAAAAAAAL : z;
+    }
+}
@@ -1,7 +1,5 @@
 package Distributions;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 public class UniformDistribution extends Distribution {
 
     protected double a; // lower bound
@@ -12,6 +10,12 @@ public class UniformDistribution extends Distribution {
         this.b = b;
     }
 
+    public UniformDistribution(int a, int b, RandomStream rand) {
+        super(rand);
+        this.a = a;
+        this.b = b;
+    }
+
     @Override
     public double expectation() {
         return (a + b) / 2;
@@ -24,7 +28,7 @@ public class UniformDistribution extends Distribution {
 
     @Override
     public double nextRandom() {
-        double U = ThreadLocalRandom.current().nextDouble();
+        double U = rand.nextDouble();
         return a + U * (b - a);
     }
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+package Distributions;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.*;
+
+/**
+ * draws the normal approximation of binomial samples from many random streams at once, with the Vector API. Every
+ * lane advances the state of one stream: the first step of the {@link Ziggurat}, and the uniform value that rounds the
+ * sample to an integer as {@link Distribution#randomToInt(double, RandomStream)}. The few lanes whose first step falls
+ * outside the rectangle of its layer repeat the draw with the scalar ziggurat. Hence every stream is advanced exactly
+ * as by a scalar draw of {@link NormalDistribution#get(double, double, RandomStream)} and randomToInt, and every
+ * sample is equal to the scalar sample.
+ * <p>
+ * Requires {@code --add-modules jdk.incubator.vector} at compile time and at run time.
+ */
+public final class VectorNormal {
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DOUBLES = LONGS.withLanes(double.class);
+    private static final VectorSpecies<Integer> INTS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(LONGS.vectorBitSize() / 2));
+
+    /** the streams of the current draw, and their state, per lane */
+    private final RandomStream[] streams;
+    private final long[] seed;
+    private final long[] gamma;
+    /** all bits set for an antithetic stream, as it inverts every long */
+    private final long[] flip;
+    private final long[] experiments;
+    /** the standard normal value of the ziggurat, and whether its first step was inside the rectangle of its layer */
+    private final double[] normal;
+    private final boolean[] inside;
+    private final int[] layer;
+    private final long[] samples;
+
+    /**
+     * @param capacity the largest number of streams of a single draw
+     */
+    public VectorNormal(int capacity) {
+        int lanes = LONGS.loopBound(capacity + LONGS.length() - 1);
+        streams = new RandomStream[lanes];
+        seed = new long[lanes];
+        gamma = new long[lanes];
+        flip = new long[lanes];
+        experiments = new long[lanes];
+        normal = new double[lanes];
+        inside = new boolean[lanes];
+        layer = new int[lanes];
+        samples = new long[lanes];
+    }
+
+    /**
+     * draws for the given runs the normal approximation of the number of successes of n experiments with probability
+     * p, limited to [0, n]
+     * @param n     the number of experiments of each run, at least 1 for every given run
+     * @param p     the probability of success
+     * @param rand  the random stream of each run
+     * @param runs  the indices of the runs to draw, of which the first count are used
+     * @param count the number of runs to draw, at most the capacity
+     * @param out   receives the sample of each given run at the index of the run
+     */
+    public void binomial(long[] n, double p, RandomStream[] rand, int[] runs, int count, long[] out) {
+        for (int j = 0; j < count; j++) {
+            RandomStream stream = rand[runs[j]];
+            streams[j] = stream;
+            seed[j] = stream.getSeed();
+            gamma[j] = stream.getGamma();
+            flip[j] = stream.isAntithetic() ? -1 : 0;
+            experiments[j] = n[runs[j]];
+        }
+        // the lanes after count hold the values of an earlier draw, of which the results are ignored
+        int end = LONGS.loopBound(count + LONGS.length() - 1);
+
+        for (int j = 0; j < end; j += LONGS.length()) {
+            LongVector s = LongVector.fromArray(LONGS, seed, j).add(LongVector.fromArray(LONGS, gamma, j));
+            s.intoArray(seed, j);
+            LongVector bits = mix64(s).lanewise(XOR, LongVector.fromArray(LONGS, flip, j));
+            // the remaining 63 bits, inverted if the sign is negative
+            LongVector rest = bits.lanewise(XOR, bits.lanewise(ASHR, 63));
+            ((IntVector) rest.and(Ziggurat.LAYERS - 1).convertShape(L2I, INTS, 0)).intoArray(layer, j);
+            DoubleVector u = ((DoubleVector) rest.lanewise(LSHR, 10).convert(L2D, 0)).mul(Ziggurat.DOUBLE_UNIT);
+
+            DoubleVector ratio = DoubleVector.fromArray(DOUBLES, Ziggurat.NORMAL_RATIO, 0, layer, j);
+            DoubleVector edge = DoubleVector.fromArray(DOUBLES, Ziggurat.NORMAL_X, 0, layer, j);
+            u.lt(ratio).intoArray(inside, j);
+            VectorMask<Double> negative = bits.lt(0).cast(DOUBLES);
+            u.mul(edge).lanewise(NEG, negative).intoArray(normal, j);
+        }
+
+        for (int j = 0; j < count; j++) {
+            if (inside[j]) continue;
+            // about one in a hundred; the scalar ziggurat repeats the first step from the same seed
+            RandomStream stream = streams[j];
+            stream.setSeed(seed[j] - gamma[j]);
+            normal[j] = Ziggurat.normal(stream);
+            seed[j] = stream.getSeed();
+        }
+
+        for (int j = 0; j < end; j += LONGS.length()) {
+            LongVector s = LongVector.fromArray(LONGS, seed, j).add(LongVector.fromArray(LONGS, gamma, j));
+            s.intoArray(seed, j);
+            LongVector uniformBits = mix64(s).lanewise(XOR, LongVector.fromArray(LONGS, flip, j));
+            DoubleVector u = ((DoubleVector) uniformBits.lanewise(LSHR, 11).convert(L2D, 0)).mul(Ziggurat.DOUBLE_UNIT);
+
+            // the operations of the scalar sampler in the same order, such that the rounding is the same
+            LongVector trials = LongVector.fromArray(LONGS, experiments, j);
+            DoubleVector mu = ((DoubleVector) trials.convert(L2D, 0)).mul(p);
+            DoubleVector sigma = mu.mul(1 - p).lanewise(SQRT);
+            DoubleVector estimate = mu.add(sigma.mul(DoubleVector.fromArray(DOUBLES, normal, j)));
+
+            LongVector base = (LongVector) estimate.convert(D2L, 0);
+            DoubleVector remainder = estimate.sub((DoubleVector) base.convert(L2D, 0));
+            base = base.add(1, u.lt(remainder).cast(LONGS));
+            base.max(0).min(trials).intoArray(samples, j);
+        }
+
+        for (int j = 0; j < count; j++) {
+            streams[j].setSeed(seed[j]);
+            streams[j] = null;
+            out[runs[j]] = samples[j];
+        }
+    }
+
+    /** the finalizer of the generator of {@link RandomStream}, for every lane */
+    private static LongVector mix64(LongVector z) {
+        z = z.lanewise(XOR, z.lanewise(LSHR, 30)).mul(0xBF58476D1CE4E5B9L);
+        z = z.lanewise(XOR, z.lanewise(LSHR, 27)).mul(0x94D049BB133111EBL);
+        return z.lanewise(XOR, z.lanewise(LSHR, 31));
+    }
+}
@@ -0,0 +1,130 @@
+package Distributions;
+
+/**
+ * standard normal and standard exponential variables by the Ziggurat method (Marsaglia and Tsang, "The Ziggurat Method
+ * for Generating Random Variables", 2000), with the floating point tables and separate index bits of Doornik ("An
+ * Improved Ziggurat Method to Generate Normal Random Samples", 2005). The density is covered by 256 layers of equal
+ * area. A draw takes one random long and one multiplication in about 99% of the cases; only the wedges at the edge of
+ * the layers and the tail need the density function.
+ * <p>
+ * The normal sampler takes its sign from the highest bit, and the rest of every draw from the other bits after
+ * inverting them if the sign is negative. The antithetic stream of {@link RandomStream#nextLong()} inverts all bits,
+ * hence it returns exactly the negated value. The exponential sampler is not antithetic in this sense.
+ */
+final class Ziggurat {
+    static final int LAYERS = 256;
+    static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    /** the start of the tail and the area of each layer of the normal density exp(-x^2 / 2) */
+    private static final double NORMAL_R = 3.6541528853610088;
+    private static final double NORMAL_V = 0.00492867323399;
+    /** the start of the tail and the area of each layer of the exponential density exp(-x) */
+    private static final double EXP_R = 7.69711747013104972;
+    private static final double EXP_V = 0.0039496598225815571993;
+
+    /** the right edge of each layer, where layer 0 is the base including the tail, and the ratio of successive edges */
+    static final double[] NORMAL_X = new double[LAYERS + 1];
+    static final double[] NORMAL_RATIO = new double[LAYERS];
+    private static final double[] EXP_X = new double[LAYERS + 1];
+    private static final double[] EXP_RATIO = new double[LAYERS];
+    /** the density at the edge of each layer of the exponential */
+    private static final double[] EXP_F = new double[LAYERS + 1];
+
+    static {
+        double f = Math.exp(-0.5 * NORMAL_R * NORMAL_R);
+        NORMAL_X[0] = NORMAL_V / f;
+        NORMAL_X[1] = NORMAL_R;
+        for (int i = 2; i < LAYERS; i++) {
+            NORMAL_X[i] = Math.sqrt(-2 * Math.log(NORMAL_V / NORMAL_X[i - 1] + f));
+            f = Math.exp(-0.5 * NORMAL_X[i] * NORMAL_X[i]);
+        }
+        NORMAL_X[LAYERS] = 0;
+
+        f = Math.exp(-EXP_R);
+        EXP_X[0] = EXP_V / f;
+        EXP_X[1] = EXP_R;
+        for (int i = 2; i < LAYERS; i++) {
+            EXP_X[i] = -Math.log(EXP_V / EXP_X[i - 1] + f);
+            f = Math.exp(-EXP_X[i]);
+        }
+        EXP_X[LAYERS] = 0;
+
+        for (int i = 0; i < LAYERS; i++) {
+            NORMAL_RATIO[i] = NORMAL_X[i + 1] / NORMAL_X[i];
+            EXP_RATIO[i] = EXP_X[i + 1] / EXP_X[i];
+        }
+        for (int i = 0; i <= LAYERS; i++) {
+            EXP_F[i] = Math.exp(-EXP_X[i]);
+        }
+    }
+
+    private Ziggurat() {
+    }
+
+    /** @return a standard normal variable */
+    static double normal(RandomStream rand) {
+        while (true) {
+            long bits = rand.nextLong();
+            boolean negative = bits < 0;
+            // the remaining 63 bits, inverted if the sign is negative
+            long rest = bits ^ (bits >> 63);
+            int i = (int) rest & (LAYERS - 1);
+            double u = (rest >>> 10) * DOUBLE_UNIT;
+
+            double x;
+            if (u < NORMAL_RATIO[i]) {
+                // inside the rectangle of the layer
+                x = u * NORMAL_X[i];
+
+            } else if (i == 0) {
+                x = normalTail(rand);
+
+            } else {
+                // inside the layer, but possibly outside the density
+                x = u * NORMAL_X[i];
+                double f0 = Math.exp(-0.5 * (NORMAL_X[i] * NORMAL_X[i] - x * x));
+                double f1 = Math.exp(-0.5 * (NORMAL_X[i + 1] * NORMAL_X[i + 1] - x * x));
+                if (f1 + symmetricUniform(rand) * (f0 - f1) >= 1) continue;
+            }
+            return negative ? -x : x;
+        }
+    }
+
+    /** samples the normal density beyond {@link #NORMAL_R} (Marsaglia, 1964) */
+    private static double normalTail(RandomStream rand) {
+        double x, y;
+        do {
+            x = -Math.log(1 - symmetricUniform(rand)) / NORMAL_R;
+            y = -Math.log(1 - symmetricUniform(rand));
+        } while (2 * y < x * x);
+        return NORMAL_R + x;
+    }
+
+    /** @return a uniform value in [0, 1), which is the same for a stream and its antithetic counterpart */
+    private static double symmetricUniform(RandomStream rand) {
+        long bits = rand.nextLong();
+        return ((bits ^ (bits >> 63)) >>> 10) * DOUBLE_UNIT;
+    }
+
+    /** @return a standard exponential variable */
+    static double exponential(RandomStream rand) {
+        // the tail beyond EXP_R is again exponential, hence it is sampled by starting over at EXP_R
+        double offset = 0;
+        while (true) {
+            long bits = rand.nextLong();
+            int i = (int) bits & (LAYERS - 1);
+            double u = (bits >>> 11) * DOUBLE_UNIT;
+
+            if (u < EXP_RATIO[i]) return offset + u * EXP_X[i];
+
+            if (i == 0) {
+                offset += EXP_R;
+                continue;
+            }
+
+            double x = u * EXP_X[i];
+            double y = (rand.nextLong() >>> 11) * DOUBLE_UNIT;
+            if (EXP_F[i + 1] + y * (EXP_F[i] - EXP_F[i + 1]) < Math.exp(-x)) return offset + x;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package Results;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * an object of which the state can be saved in a checkpoint, and restored into a new object created in the same way
+ */
+public interface Checkpointable {
+    /** writes the complete state of this object */
+    void writeState(DataOutput out) throws IOException;
+
+    /**
+     * replaces the state of this object by the state written with {@link #writeState(DataOutput)}
+     * @throws IllegalStateException if the state was written by an object that was created differently
+     */
+    void readState(DataInput in) throws IOException;
+}
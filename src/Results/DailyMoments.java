@@ -0,0 +1,76 @@
+package Results;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * online mean and variance of one series for every stored day, using Welford's update and Chan's merge. All days
+ * share the same number of values, which is kept by the owner.
+ */
+class DailyMoments implements Checkpointable {
+    final double[] mean;
+    /** sum of squared deviations from the mean */
+    final double[] m2;
+
+    DailyMoments(int nOfDays) {
+        mean = new double[nOfDays];
+        m2 = new double[nOfDays];
+    }
+
+    /**
+     * @param i     index of the day
+     * @param value the new value
+     * @param count the number of values of this day, including the new value
+     */
+    void add(int i, double value, long count) {
+        double delta = value - mean[i];
+        mean[i] += delta / count;
+        m2[i] += delta * (value - mean[i]);
+    }
+
+    /**
+     * adds all values of other to this
+     * @param count      the number of values per day in this
+     * @param otherCount the number of values per day in other
+     */
+    void merge(DailyMoments other, long count, long otherCount) {
+        long total = count + otherCount;
+        if (otherCount == 0) return;
+
+        for (int i = 0; i < mean.length; i++) {
+            double delta = other.mean[i] - mean[i];
+            mean[i] += delta * otherCount / total;
+            m2[i] += other.m2[i] + delta * delta * ((double) count * otherCount / total);
+        }
+    }
+
+    /** @return the 95% confidence interval of the mean of every day */
+    Interval[] getConfidence(long count) {
+        Interval[] result = new Interval[mean.length];
+        for (int i = 0; i < mean.length; i++) {
+            double variance = (count > 1) ? m2[i] / (count - 1) : 0;
+            result[i] = new Interval(mean[i], variance, (int) count);
+        }
+        return result;
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeInt(mean.length);
+        for (int i = 0; i < mean.length; i++) {
+            out.writeDouble(mean[i]);
+            out.writeDouble(m2[i]);
+        }
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        int nOfDays = in.readInt();
+        if (nOfDays != mean.length) throw new IllegalStateException("expected " + mean.length + " days, found " + nOfDays);
+        for (int i = 0; i < nOfDays; i++) {
+            mean[i] = in.readDouble();
+            m2[i] = in.readDouble();
+        }
+    }
+}
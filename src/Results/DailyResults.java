@@ -0,0 +1,19 @@
+package Results;
+
+/**
+ * receives the state of a single simulation run after every simulated day
+ */
+public interface DailyResults {
+
+    /** stores the state at the end of the next day */
+    void addResults(long pSmall, long pLarge, int pHugh, int satsInOrbit, int flightsQueued);
+
+    /** adds lost satellites to the day that is currently simulated */
+    void addLostSatellites(int n);
+
+    /** adds saves by the observatories to the day that is currently simulated */
+    void addSaves(int n);
+
+    /** called once after the last day of the run has been added */
+    void finish();
+}
@@ -0,0 +1,177 @@
+package Results;
+
+/**
+ * the deterministic trajectory of the expected values of a scenario, as computed by a mean-field model. These results
+ * behave as the results of a single run: every confidence interval has zero width, and every quantile of a day is its
+ * value. Paired differences can only be taken with other mean-field results.
+ */
+public class MeanFieldResults implements MultiSpaceResults {
+    private final int[] days;
+    private final double[][] values;
+    private final double lostSatellites;
+    private final double saves;
+
+    /**
+     * @param days           the day number of each value
+     * @param values         per series, indexed by {@link Series#ordinal()}, the value of each day. Lost satellites are
+     *                       the expected number lost on that day
+     * @param lostSatellites the expected total number of lost satellites
+     * @param saves          the expected total number of saves
+     */
+    public MeanFieldResults(int[] days, double[][] values, double lostSatellites, double saves) {
+        if (values.length != Series.values().length)
+            throw new IllegalArgumentException("expected " + Series.values().length + " series, got " + values.length);
+        this.days = days;
+        this.values = values;
+        this.lostSatellites = lostSatellites;
+        this.saves = saves;
+    }
+
+    private double last(Series series) {
+        double[] v = values[series.ordinal()];
+        return v[v.length - 1];
+    }
+
+    @Override
+    public Interval lostSatellitesConf() {
+        return new Interval(lostSatellites, lostSatellites);
+    }
+
+    @Override
+    public double lostSatellitesMean() {
+        return lostSatellites;
+    }
+
+    @Override
+    public double savesMean() {
+        return saves;
+    }
+
+    @Override
+    public Interval savesConf() {
+        return new Interval(saves, saves);
+    }
+
+    @Override
+    public double smallParticleMean() {
+        return last(Series.SMALL_PARTICLES);
+    }
+
+    @Override
+    public Interval smallParticleConf() {
+        return new Interval(smallParticleMean(), smallParticleMean());
+    }
+
+    @Override
+    public double largeParticleMean() {
+        return last(Series.LARGE_PARTICLES);
+    }
+
+    @Override
+    public Interval largeParticleConf() {
+        return new Interval(largeParticleMean(), largeParticleMean());
+    }
+
+    @Override
+    public double hughParticleMean() {
+        return last(Series.HUGH_PARTICLES);
+    }
+
+    @Override
+    public Interval hughParticleConf() {
+        return new Interval(hughParticleMean(), hughParticleMean());
+    }
+
+    @Override
+    public double[] getMean(Series series) {
+        return values[series.ordinal()];
+    }
+
+    @Override
+    public Interval[] getConfidence(Series series) {
+        double[] v = values[series.ordinal()];
+        Interval[] conf = new Interval[v.length];
+        for (int i = 0; i < v.length; i++) {
+            conf[i] = new Interval(v[i], v[i]);
+        }
+        return conf;
+    }
+
+    @Override
+    public boolean hasQuantiles() {
+        return true;
+    }
+
+    /** the trajectory is deterministic, hence every quantile is equal to the mean */
+    @Override
+    public double[] getQuantile(Series series, double q) {
+        return values[series.ordinal()];
+    }
+
+    @Override
+    public int[] getDays() {
+        return days;
+    }
+
+    /** @return the outcome of the trajectory as the only run, with run index 0 */
+    @Override
+    public double[] getOutcomes(Outcome outcome) {
+        switch (outcome) {
+            case LOST_SATELLITES:
+                return new double[]{lostSatellites};
+            case SAVES:
+                return new double[]{saves};
+            case HUGH_PARTICLES:
+                return new double[]{hughParticleMean()};
+            case LARGE_PARTICLES:
+                return new double[]{largeParticleMean()};
+            case SMALL_PARTICLES:
+                return new double[]{smallParticleMean()};
+            default:
+                throw new IllegalArgumentException("unknown outcome " + outcome);
+        }
+    }
+
+    @Override
+    public double pairedDifferenceMean(MultiSpaceResults baseline, Outcome outcome) {
+        if (!(baseline instanceof MeanFieldResults))
+            throw new IllegalArgumentException("mean-field results can only be paired with mean-field results");
+        return getOutcomes(outcome)[0] - baseline.getOutcomes(outcome)[0];
+    }
+
+    @Override
+    public Interval pairedDifferenceConf(MultiSpaceResults baseline, Outcome outcome) {
+        double difference = pairedDifferenceMean(baseline, outcome);
+        return new Interval(difference, difference);
+    }
+
+    @Override
+    public double[] getActiveSatellites() {
+        return getMean(Series.ACTIVE_SATELLITES);
+    }
+
+    @Override
+    public double[] getSpaceFlightsQueued() {
+        return getMean(Series.SPACE_FLIGHTS_QUEUED);
+    }
+
+    @Override
+    public double[] getHughParticles() {
+        return getMean(Series.HUGH_PARTICLES);
+    }
+
+    @Override
+    public double[] getLargeParticles() {
+        return getMean(Series.LARGE_PARTICLES);
+    }
+
+    @Override
+    public double[] getSmallParticles() {
+        return getMean(Series.SMALL_PARTICLES);
+    }
+
+    @Override
+    public double[] getLostSatellites() {
+        return getMean(Series.LOST_SATELLITES);
+    }
+}
@@ -0,0 +1,66 @@
+package Results;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * collects the mean and variance of a series of values, using Welford's online update. Collectors of separate threads
+ * can be combined with {@link #merge(MomentCollector)}, following Chan et al. Both are numerically stable for large
+ * values and large numbers of samples. Not threadsafe.
+ */
+public class MomentCollector implements Checkpointable {
+    private long nOf = 0;
+    private double mean = 0;
+    /** sum of squared deviations from the mean */
+    private double m2 = 0;
+
+    public void add(double newValue) {
+        nOf++;
+        double delta = newValue - mean;
+        mean += delta / nOf;
+        m2 += delta * (newValue - mean);
+    }
+
+    /** adds all values of other to this collector */
+    public void merge(MomentCollector other) {
+        if (other.nOf == 0) return;
+
+        long total = nOf + other.nOf;
+        double delta = other.mean - mean;
+        mean += delta * other.nOf / total;
+        m2 += other.m2 + delta * delta * ((double) nOf * other.nOf / total);
+        nOf = total;
+    }
+
+    public long count() {
+        return nOf;
+    }
+
+    public double getMean() {
+        return (nOf == 0) ? Double.NaN : mean;
+    }
+
+    /** @return the unbiased sample variance */
+    public double getVariance() {
+        return (nOf > 1) ? m2 / (nOf - 1) : 0;
+    }
+
+    public Interval getConfidence() {
+        return new Interval(getMean(), getVariance(), (int) nOf);
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(nOf);
+        out.writeDouble(mean);
+        out.writeDouble(m2);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        nOf = in.readLong();
+        mean = in.readDouble();
+        m2 = in.readDouble();
+    }
+}
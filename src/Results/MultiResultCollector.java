@@ -6,5 +6,13 @@ package Results;
 public interface MultiResultCollector {
     void add(SpaceResults results);
 
+    /**
+     * creates the results of a single new run, which are collected by this collector once the run calls {@link
+     * DailyResults#finish()}. The result object must be used on the thread that created it.
+     * @param runIndex  the index of the run, which pairs it with the runs of other collectors with the same index
+     * @param runLength the number of results of the run, including the initial state
+     */
+    DailyResults newRun(int runIndex, int runLength);
+
     MultiSpaceResults wrapUp();
 }
@@ -25,6 +25,41 @@ public interface MultiSpaceResults {
 
     Interval hughParticleConf();
 
+    /** @return the mean of the given series for every day of {@link #getDays()} */
+    double[] getMean(Series series);
+
+    /** @return the 95% confidence interval of the mean of the given series for every day of {@link #getDays()} */
+    Interval[] getConfidence(Series series);
+
+    /** @return whether these results keep the quantiles of {@link #getQuantile(Series, double)} */
+    boolean hasQuantiles();
+
+    /**
+     * @param q a fraction in [0, 1], e.g. 0.05 for the 5th percentile
+     * @return the q-quantile over all runs of the given series for every day of {@link #getDays()}
+     * @throws UnsupportedOperationException if {@link #hasQuantiles()} is false
+     */
+    double[] getQuantile(Series series, double q);
+
+    /** @return the day number of each value in the per-day arrays of these results */
+    int[] getDays();
+
+    /** @return the given outcome of each run, indexed by run index. Indices that were not run are NaN */
+    double[] getOutcomes(Outcome outcome);
+
+    /**
+     * @param baseline results of the same run indices with common random numbers, e.g. of another scenario
+     * @return the mean difference of the given outcome between the runs of these results and the baseline runs with
+     * equal run index
+     */
+    double pairedDifferenceMean(MultiSpaceResults baseline, Outcome outcome);
+
+    /**
+     * @param baseline results of the same run indices with common random numbers, e.g. of another scenario
+     * @return the 95% confidence interval of {@link #pairedDifferenceMean(MultiSpaceResults, Outcome)}
+     */
+    Interval pairedDifferenceConf(MultiSpaceResults baseline, Outcome outcome);
+
     double[] getActiveSatellites();
 
     double[] getSpaceFlightsQueued();
@@ -1,6 +1,11 @@
 package Results;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
+ * keeps the mean and variance of every day of the runs. Every thread adds its runs to an accumulator of its own, such
+ * that threads finishing runs do not wait for each other, and the accumulators are merged upon {@link #wrapUp()}.
  * @author Geert van Ieperen created on 4-6-2018.
  */
 public class MultiSpaceResultsImpl implements MultiSpaceResults, MultiResultCollector {
@@ -8,18 +13,13 @@ public class MultiSpaceResultsImpl implements MultiSpaceResults, MultiResultColl
     private final int runLength;
     private boolean isWrappedUp = false;
 
-    private MeanDoubleCollector lostSatellitesTotal;
-    private MeanDoubleCollector esaSaves;
-    private MeanDoubleCollector smallTotal;
-    private MeanDoubleCollector largeTotal;
-    private MeanDoubleCollector hughTotal;
+    /** accumulator of each thread, all registered in {@link #accumulators} */
+    private final ThreadLocal<Accumulator> localAccumulator;
+    private final List<Accumulator> accumulators = new ArrayList<>();
+    private final RunOutcomes outcomes = new RunOutcomes();
 
-    private double[] activeSatellites;
-    private double[] spaceFlightsQueued;
-    private double[] smallParticles;
-    private double[] largeParticles;
-    private double[] hughParticles;
-    private double[] lostSatellites;
+    /** the merged moments, only available after wrapUp */
+    private Accumulator total;
 
     private MultiSpaceResultsImpl(int runs, int runLength) {
         if (runs == 0 || runLength == 0)
@@ -27,18 +27,13 @@ public class MultiSpaceResultsImpl implements MultiSpaceResults, MultiResultColl
         this.nOfRuns = runs;
         this.runLength = runLength;
 
-        lostSatellitesTotal = new MeanDoubleCollector();
-        esaSaves = new MeanDoubleCollector();
-        smallTotal = new MeanDoubleCollector();
-        largeTotal = new MeanDoubleCollector();
-        hughTotal = new MeanDoubleCollector();
-
-        activeSatellites = new double[runLength];
-        spaceFlightsQueued = new double[runLength];
-        hughParticles = new double[runLength];
-        smallParticles = new double[runLength];
-        largeParticles = new double[runLength];
-        lostSatellites = new double[runLength];
+        localAccumulator = ThreadLocal.withInitial(() -> {
+            Accumulator acc = new Accumulator(runLength);
+            synchronized (accumulators) {
+                accumulators.add(acc);
+            }
+            return acc;
+        });
     }
 
     public static MultiResultCollector getCollector(int runs, int runLength) {
@@ -46,129 +41,221 @@ public class MultiSpaceResultsImpl implements MultiSpaceResults, MultiResultColl
     }
 
     @Override
-    public synchronized void add(SpaceResults results) {
-        lostSatellitesTotal.add(results.getNumberOfLostSatellites());
-        esaSaves.add(results.getSaves());
-        smallTotal.add(results.getSmallParticles()[runLength - 1]);
-        largeTotal.add(results.getLargeParticles()[runLength - 1]);
-        hughTotal.add(results.getHughParticles()[runLength - 1]);
+    public void add(SpaceResults results) {
+        localAccumulator.get().add(results);
+        outcomes.add(results.getRunIndex(), results.getNumberOfLostSatellites(), results.getSaves(),
+                results.getSmallParticles()[runLength - 1], results.getLargeParticles()[runLength - 1],
+                results.getHughParticles()[runLength - 1]
+        );
+    }
 
-        addAll(results.getLostSatellites(), lostSatellites);
-        addAll(results.getActiveSatellites(), activeSatellites);
-        addAll(results.getSpaceFlightsQueued(), spaceFlightsQueued);
-        addAll(results.getSmallParticles(), smallParticles);
-        addAll(results.getLargeParticles(), largeParticles);
-        addAll(results.getHughParticles(), hughParticles);
+    @Override
+    public DailyResults newRun(int runIndex, int runLength) {
+        return new SpaceResults(runIndex, runLength, this);
     }
 
     @Override
     public MultiSpaceResults wrapUp() {
         if (isWrappedUp) throw new IllegalStateException("wrapUp is called twice"); // not threadsafe
 
-        for (int i = 0; i < runLength; i++) {
-            activeSatellites[i] /= nOfRuns;
-            spaceFlightsQueued[i] /= nOfRuns;
-            hughParticles[i] /= nOfRuns;
-            largeParticles[i] /= nOfRuns;
-            smallParticles[i] /= nOfRuns;
-            lostSatellites[i] /= nOfRuns;
+        Accumulator merged = new Accumulator(runLength);
+        synchronized (accumulators) {
+            for (Accumulator acc : accumulators) {
+                merged.merge(acc);
+            }
         }
+        if (merged.nOfAdded != nOfRuns)
+            throw new IllegalStateException("expected " + nOfRuns + " runs, but received " + merged.nOfAdded);
 
+        total = merged;
         isWrappedUp = true;
         return this;
     }
 
     @Override
     public double lostSatellitesMean() {
-        return lostSatellitesTotal.getMean();
+        return total.lostSatellitesTotal.getMean();
     }
 
     @Override
     public Interval lostSatellitesConf() {
-        return lostSatellitesTotal.getConfidence();
+        return total.lostSatellitesTotal.getConfidence();
     }
 
     @Override
     public double savesMean() {
-        return esaSaves.getMean();
+        return total.esaSaves.getMean();
     }
 
     @Override
     public Interval savesConf() {
-        return esaSaves.getConfidence();
+        return total.esaSaves.getConfidence();
     }
 
     @Override
     public double smallParticleMean() {
-        return smallTotal.getMean();
+        return total.smallTotal.getMean();
     }
 
     @Override
     public Interval smallParticleConf() {
-        return smallTotal.getConfidence();
+        return total.smallTotal.getConfidence();
     }
 
     @Override
     public double largeParticleMean() {
-        return largeTotal.getMean();
+        return total.largeTotal.getMean();
     }
 
     @Override
     public Interval largeParticleConf() {
-        return largeTotal.getConfidence();
+        return total.largeTotal.getConfidence();
     }
 
     @Override
     public double hughParticleMean() {
-        return hughTotal.getMean();
+        return total.hughTotal.getMean();
     }
 
     @Override
     public Interval hughParticleConf() {
-        return hughTotal.getConfidence();
+        return total.hughTotal.getConfidence();
+    }
+
+    @Override
+    public double[] getMean(Series series) {
+        return total.moments[series.ordinal()].mean;
+    }
+
+    @Override
+    public Interval[] getConfidence(Series series) {
+        return total.moments[series.ordinal()].getConfidence(total.nOfAdded);
+    }
+
+    /** full-resolution results keep no quantile sketches, use a {@link StreamingResultCollector} instead */
+    @Override
+    public boolean hasQuantiles() {
+        return false;
+    }
+
+    @Override
+    public double[] getQuantile(Series series, double q) {
+        throw new UnsupportedOperationException("quantiles are only kept by " + StreamingResultCollector.class.getSimpleName());
+    }
+
+    @Override
+    public int[] getDays() {
+        int[] days = new int[runLength];
+        for (int i = 0; i < runLength; i++) {
+            days[i] = i;
+        }
+        return days;
+    }
+
+    @Override
+    public double[] getOutcomes(Outcome outcome) {
+        return outcomes.get(outcome);
+    }
+
+    @Override
+    public double pairedDifferenceMean(MultiSpaceResults baseline, Outcome outcome) {
+        return RunOutcomes.difference(getOutcomes(outcome), baseline.getOutcomes(outcome), false).getMean();
+    }
+
+    @Override
+    public Interval pairedDifferenceConf(MultiSpaceResults baseline, Outcome outcome) {
+        return RunOutcomes.difference(getOutcomes(outcome), baseline.getOutcomes(outcome), false).getConfidence();
     }
 
     @Override
     public double[] getActiveSatellites() {
-        return activeSatellites;
+        return getMean(Series.ACTIVE_SATELLITES);
     }
 
     @Override
     public double[] getSpaceFlightsQueued() {
-        return spaceFlightsQueued;
+        return getMean(Series.SPACE_FLIGHTS_QUEUED);
     }
 
     @Override
     public double[] getHughParticles() {
-        return hughParticles;
+        return getMean(Series.HUGH_PARTICLES);
     }
 
     @Override
     public double[] getLargeParticles() {
-        return largeParticles;
+        return getMean(Series.LARGE_PARTICLES);
     }
 
     @Override
     public double[] getSmallParticles() {
-        return smallParticles;
+        return getMean(Series.SMALL_PARTICLES);
     }
 
     @Override
     public double[] getLostSatellites() {
-        return lostSatellites;
+        return getMean(Series.LOST_SATELLITES);
+    }
+
+    /** moments of every day and of the totals of the runs of one thread */
+    private static class Accumulator {
+        /** per-day mean and variance of each series, indexed by {@link Series#ordinal()} */
+        final DailyMoments[] moments;
+        final MomentCollector lostSatellitesTotal = new MomentCollector();
+        final MomentCollector esaSaves = new MomentCollector();
+        final MomentCollector smallTotal = new MomentCollector();
+        final MomentCollector largeTotal = new MomentCollector();
+        final MomentCollector hughTotal = new MomentCollector();
+        long nOfAdded = 0;
+
+        Accumulator(int runLength) {
+            moments = new DailyMoments[Series.values().length];
+            for (int s = 0; s < moments.length; s++) {
+                moments[s] = new DailyMoments(runLength);
+            }
+        }
+
+        void add(SpaceResults results) {
+            int end = moments[0].mean.length - 1;
+            lostSatellitesTotal.add(results.getNumberOfLostSatellites());
+            esaSaves.add(results.getSaves());
+            smallTotal.add(results.getSmallParticles()[end]);
+            largeTotal.add(results.getLargeParticles()[end]);
+            hughTotal.add(results.getHughParticles()[end]);
+
+            long count = ++nOfAdded;
+            addAll(results.getLostSatellites(), moments[Series.LOST_SATELLITES.ordinal()], count);
+            addAll(results.getActiveSatellites(), moments[Series.ACTIVE_SATELLITES.ordinal()], count);
+            addAll(results.getSpaceFlightsQueued(), moments[Series.SPACE_FLIGHTS_QUEUED.ordinal()], count);
+            addAll(results.getSmallParticles(), moments[Series.SMALL_PARTICLES.ordinal()], count);
+            addAll(results.getLargeParticles(), moments[Series.LARGE_PARTICLES.ordinal()], count);
+            addAll(results.getHughParticles(), moments[Series.HUGH_PARTICLES.ordinal()], count);
+        }
+
+        void merge(Accumulator other) {
+            for (int s = 0; s < moments.length; s++) {
+                moments[s].merge(other.moments[s], nOfAdded, other.nOfAdded);
+            }
+            lostSatellitesTotal.merge(other.lostSatellitesTotal);
+            esaSaves.merge(other.esaSaves);
+            smallTotal.merge(other.smallTotal);
+            largeTotal.merge(other.largeTotal);
+            hughTotal.merge(other.hughTotal);
+            nOfAdded += other.nOfAdded;
+        }
     }
 
-    private static void addAll(long[] source, double[] total) {
-        int runLength = total.length;
+    private static void addAll(long[] source, DailyMoments total, long count) {
+        int runLength = total.mean.length;
         for (int k = 0; k < runLength; k++) {
-            total[k] += source[k];
+            total.add(k, source[k], count);
         }
     }
 
-    private static void addAll(int[] source, double[] total) {
-        int runLength = total.length;
+    private static void addAll(int[] source, DailyMoments total, long count) {
+        int runLength = total.mean.length;
         for (int k = 0; k < runLength; k++) {
-            total[k] += source[k];
+            total.add(k, source[k], count);
         }
     }
 
@@ -0,0 +1,8 @@
+package Results;
+
+/**
+ * the values that are stored of every run at the end of the run
+ */
+public enum Outcome {
+    LOST_SATELLITES, SAVES, HUGH_PARTICLES, LARGE_PARTICLES, SMALL_PARTICLES
+}
@@ -1,29 +1,62 @@
 package Results;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
+ * prints the progress of a number of updates on a single line of stdout. Updates do not block each other: the line is
+ * printed at most once per {@link #PRINT_INTERVAL} milliseconds, by the thread of the first update in that interval,
+ * and after the last update. On batch nodes without a terminal the output can be disabled, and the progress watched through the metrics
+ * of the simulation instead.
  * @author Geert van Ieperen created on 21-4-2018.
  */
 public class ProgressBar {
+    public static final long PRINT_INTERVAL = 250;
 
     private final long t0;
     private final int total;
-    private int i = 0;
+    private final boolean printing;
+    private final AtomicInteger i = new AtomicInteger();
+    private final AtomicLong lastPrint;
 
     public ProgressBar(int total) {
+        this(total, true);
+    }
+
+    /**
+     * @param total    the expected number of updates
+     * @param printing if false, updates are only counted
+     */
+    public ProgressBar(int total, boolean printing) {
         this.total = total;
+        this.printing = printing;
         t0 = System.currentTimeMillis();
+        // the first update prints; Long.MIN_VALUE would overflow the difference in printUpdate
+        lastPrint = new AtomicLong(t0 - PRINT_INTERVAL);
     }
 
     /** call once after every update */
-    public synchronized void printUpdate() {
+    public void printUpdate() {
+        int n = i.incrementAndGet();
+        if (!printing) return;
+
         long ti = System.currentTimeMillis();
+        long last = lastPrint.get();
+        if (n < total && ti - last < PRINT_INTERVAL) return;
+        if (!lastPrint.compareAndSet(last, ti)) return;
+
         double dt = ti - t0;
-        double tps = dt / (++i);
-        int msLeft = (int) (tps * (total - i));
+        double tps = dt / n;
+        int msLeft = (int) (tps * (total - n));
 
         System.out.printf("\rRunning time: %3d sec | Avg time per update: %6.02f ms | Progress: %4.1f%% | Time remaining: %3d sec",
-                (int) dt / 1000, tps, (i * 100.0) / total, msLeft / 1000
+                (int) dt / 1000, tps, (n * 100.0) / total, msLeft / 1000
         );
         System.out.flush();
     }
+
+    /** @return the number of updates so far */
+    public int getUpdates() {
+        return i.get();
+    }
 }
@@ -0,0 +1,187 @@
+package Results;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * a mergeable quantile sketch in the style of KLL (Karnin, Lang and Liberty, 2016). Values are kept in a hierarchy of
+ * compactors, where an item on level h represents 2^h original values. When a level exceeds its capacity, it is
+ * sorted and every other item is promoted to the next level. Memory use is O(k log(n / k)) for n values, and the rank
+ * error is in the order of 1 / k.
+ * <p>
+ * Compaction alternates between keeping the odd and the even items, such that the sketch is deterministic. Not
+ * threadsafe.
+ */
+public class QuantileSketch implements Checkpointable {
+    /** ratio of the capacities of consecutive levels */
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 2;
+
+    private final int k;
+    private double[][] levels;
+    private int[] sizes;
+    /** per level, whether the next compaction keeps the odd items */
+    private boolean[] keepOdd;
+    private int nOfLevels;
+    private long count = 0;
+
+    /**
+     * @param k accuracy parameter, the capacity of the highest level
+     */
+    public QuantileSketch(int k) {
+        if (k < MIN_CAPACITY) throw new IllegalArgumentException("k = " + k);
+        this.k = k;
+        levels = new double[1][];
+        sizes = new int[1];
+        keepOdd = new boolean[1];
+        levels[0] = new double[Math.min(k, 8)];
+        nOfLevels = 1;
+    }
+
+    public void add(double value) {
+        append(0, value);
+        count++;
+        if (sizes[0] >= capacity(0)) compress();
+    }
+
+    /** adds all values represented by other to this sketch. other must have been created with the same k */
+    public void merge(QuantileSketch other) {
+        if (other.k != k) throw new IllegalArgumentException("k differs: " + other.k + " and " + k);
+
+        while (nOfLevels < other.nOfLevels) addLevel();
+        for (int h = 0; h < other.nOfLevels; h++) {
+            for (int j = 0; j < other.sizes[h]; j++) {
+                append(h, other.levels[h][j]);
+            }
+        }
+        count += other.count;
+        compress();
+    }
+
+    /** @return the number of values added to this sketch */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @param q a fraction in [0, 1]
+     * @return an approximation of the q-quantile of all added values, or NaN if nothing was added
+     */
+    public double quantile(double q) {
+        if (count == 0) return Double.NaN;
+
+        int total = 0;
+        for (int h = 0; h < nOfLevels; h++) total += sizes[h];
+
+        double[] values = new double[total];
+        long[] weights = new long[total];
+        long totalWeight = 0;
+        int n = 0;
+        for (int h = 0; h < nOfLevels; h++) {
+            for (int j = 0; j < sizes[h]; j++) {
+                values[n] = levels[h][j];
+                weights[n] = 1L << h;
+                totalWeight += weights[n];
+                n++;
+            }
+        }
+
+        // walk the items in order of value, until the accumulated weight reaches the target rank
+        Integer[] order = new Integer[total];
+        for (int i = 0; i < total; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        double target = q * totalWeight;
+        long cumulative = 0;
+        for (int i : order) {
+            cumulative += weights[i];
+            if (cumulative >= target) return values[i];
+        }
+        return values[order[total - 1]];
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeInt(k);
+        out.writeLong(count);
+        out.writeInt(nOfLevels);
+        for (int h = 0; h < nOfLevels; h++) {
+            out.writeBoolean(keepOdd[h]);
+            out.writeInt(sizes[h]);
+            for (int j = 0; j < sizes[h]; j++) {
+                out.writeDouble(levels[h][j]);
+            }
+        }
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        int otherK = in.readInt();
+        if (otherK != k) throw new IllegalStateException("k differs: " + otherK + " and " + k);
+
+        count = in.readLong();
+        nOfLevels = in.readInt();
+        levels = new double[nOfLevels][];
+        sizes = new int[nOfLevels];
+        keepOdd = new boolean[nOfLevels];
+        for (int h = 0; h < nOfLevels; h++) {
+            keepOdd[h] = in.readBoolean();
+            sizes[h] = in.readInt();
+            levels[h] = new double[Math.max(sizes[h], 2)];
+            for (int j = 0; j < sizes[h]; j++) {
+                levels[h][j] = in.readDouble();
+            }
+        }
+    }
+
+    private int capacity(int level) {
+        int depth = nOfLevels - level - 1;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private void append(int level, double value) {
+        double[] items = levels[level];
+        if (sizes[level] == items.length) {
+            items = Arrays.copyOf(items, Math.max(2 * items.length, 2));
+            levels[level] = items;
+        }
+        items[sizes[level]++] = value;
+    }
+
+    private void addLevel() {
+        levels = Arrays.copyOf(levels, nOfLevels + 1);
+        sizes = Arrays.copyOf(sizes, nOfLevels + 1);
+        keepOdd = Arrays.copyOf(keepOdd, nOfLevels + 1);
+        levels[nOfLevels] = new double[2];
+        nOfLevels++;
+    }
+
+    /** compacts every level that exceeds its capacity, from the bottom up */
+    private void compress() {
+        for (int h = 0; h < nOfLevels; h++) {
+            if (sizes[h] < capacity(h)) continue;
+            if (h + 1 == nOfLevels) addLevel();
+
+            double[] items = levels[h];
+            int size = sizes[h];
+            Arrays.sort(items, 0, size);
+
+            // an odd item out stays on this level
+            int compactSize = size - (size % 2);
+            int offset = keepOdd[h] ? 1 : 0;
+            keepOdd[h] = !keepOdd[h];
+
+            for (int j = offset; j < compactSize; j += 2) {
+                append(h + 1, items[j]);
+            }
+            if (compactSize < size) {
+                items[0] = items[size - 1];
+                sizes[h] = 1;
+            } else {
+                sizes[h] = 0;
+            }
+        }
+    }
+}
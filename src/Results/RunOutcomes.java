@@ -0,0 +1,103 @@
+package Results;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * the outcomes of every run, indexed by the run index. Runs of two sets of results with the same run index are paired,
+ * such that the difference of the sets can be estimated from the differences per pair. When the pairs share their
+ * random numbers, this estimate has a much smaller variance than the difference of the separate means. Threadsafe.
+ */
+class RunOutcomes implements Checkpointable {
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** values of each outcome, indexed by {@link Outcome#ordinal()} and run index. NaN if the run is absent */
+    private double[][] values;
+    private int nOfIndices = 0;
+
+    RunOutcomes() {
+        values = new double[Outcome.values().length][INITIAL_CAPACITY];
+        for (double[] v : values) {
+            Arrays.fill(v, Double.NaN);
+        }
+    }
+
+    synchronized void add(int runIndex, double lostSatellites, double saves, double small, double large, double hugh) {
+        if (runIndex < 0) throw new IllegalArgumentException("run index = " + runIndex);
+
+        if (runIndex >= values[0].length) {
+            int capacity = Math.max(2 * values[0].length, runIndex + 1);
+            for (int o = 0; o < values.length; o++) {
+                int oldLength = values[o].length;
+                values[o] = Arrays.copyOf(values[o], capacity);
+                Arrays.fill(values[o], oldLength, capacity, Double.NaN);
+            }
+        }
+
+        values[Outcome.LOST_SATELLITES.ordinal()][runIndex] = lostSatellites;
+        values[Outcome.SAVES.ordinal()][runIndex] = saves;
+        values[Outcome.SMALL_PARTICLES.ordinal()][runIndex] = small;
+        values[Outcome.LARGE_PARTICLES.ordinal()][runIndex] = large;
+        values[Outcome.HUGH_PARTICLES.ordinal()][runIndex] = hugh;
+        nOfIndices = Math.max(nOfIndices, runIndex + 1);
+    }
+
+    /** @return the given outcome of every run index, NaN for indices that were not run */
+    synchronized double[] get(Outcome outcome) {
+        return Arrays.copyOf(values[outcome.ordinal()], nOfIndices);
+    }
+
+    @Override
+    public synchronized void writeState(DataOutput out) throws IOException {
+        out.writeInt(nOfIndices);
+        for (double[] v : values) {
+            for (int i = 0; i < nOfIndices; i++) {
+                out.writeDouble(v[i]);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void readState(DataInput in) throws IOException {
+        nOfIndices = in.readInt();
+        int capacity = Math.max(nOfIndices, INITIAL_CAPACITY);
+        for (int o = 0; o < values.length; o++) {
+            values[o] = new double[capacity];
+            Arrays.fill(values[o], Double.NaN);
+            for (int i = 0; i < nOfIndices; i++) {
+                values[o][i] = in.readDouble();
+            }
+        }
+    }
+
+    /**
+     * @param values     outcomes per run index
+     * @param baseline   outcomes per run index of the set to compare with
+     * @param antithetic if true, runs 2i and 2i + 1 are antithetic pairs, of which the mean difference is one value
+     * @return the moments of values[i] - baseline[i], over all run indices or antithetic pairs that are present in both
+     */
+    static MomentCollector difference(double[] values, double[] baseline, boolean antithetic) {
+        MomentCollector result = new MomentCollector();
+        int n = Math.min(values.length, baseline.length);
+
+        if (antithetic) {
+            for (int i = 0; i + 1 < n; i += 2) {
+                double first = values[i] - baseline[i];
+                double second = values[i + 1] - baseline[i + 1];
+                if (Double.isNaN(first) || Double.isNaN(second)) continue;
+                result.add((first + second) / 2);
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                if (Double.isNaN(values[i]) || Double.isNaN(baseline[i])) continue;
+                result.add(values[i] - baseline[i]);
+            }
+        }
+
+        if (result.count() < 2)
+            throw new IllegalStateException("fewer than two paired runs: " + result.count());
+        return result;
+    }
+}
@@ -0,0 +1,36 @@
+package Results;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * matches the two runs of each antithetic pair, which may finish in any order and on any thread. Runs 2i and 2i + 1
+ * form pair i, see {@link Simulation.RunScheduler#runStream(long, int)}. Threadsafe.
+ */
+class RunPairs<T> {
+    /** the finished run of every pair of which the other run has not finished yet, by pair index */
+    private final Map<Integer, T> waiting = new HashMap<>();
+
+    /**
+     * @param runIndex the index of a finished run
+     * @param run      the results of that run
+     * @return the results of the other run of the pair, or null if it has not finished yet, in which case the given run
+     * waits for it
+     */
+    synchronized T match(int runIndex, T run) {
+        T partner = waiting.remove(runIndex / 2);
+        if (partner == null) waiting.put(runIndex / 2, run);
+        return partner;
+    }
+
+    /** @return the runs that wait for the other run of their pair */
+    synchronized List<T> waiting() {
+        return new ArrayList<>(waiting.values());
+    }
+
+    synchronized void clear() {
+        waiting.clear();
+    }
+}
@@ -0,0 +1,8 @@
+package Results;
+
+/**
+ * the per-day series that are stored of every run
+ */
+public enum Series {
+    ACTIVE_SATELLITES, SPACE_FLIGHTS_QUEUED, HUGH_PARTICLES, LARGE_PARTICLES, SMALL_PARTICLES, LOST_SATELLITES
+}
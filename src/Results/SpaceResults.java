@@ -1,11 +1,9 @@
 package Results;
 
-import Simulation.SpaceSimulation;
-
 /**
  * @author Geert van Ieperen created on 24-5-2018.
  */
-public class SpaceResults {
+public class SpaceResults implements DailyResults {
     /** particles over time */
     private final long[] smallParticles;
     private final long[] largeParticles;
@@ -17,8 +15,22 @@ public class SpaceResults {
     private int nOfLostSatellites = 0;
     private int index = 0;
     private int saves = 0;
+    private final int runIndex;
+    /** receives these results upon finishing, may be null */
+    private final MultiResultCollector collector;
 
     public SpaceResults(int nOfResults) {
+        this(0, nOfResults, null);
+    }
+
+    /**
+     * @param runIndex   the index of the run of these results
+     * @param nOfResults number of days to store, including the initial state
+     * @param collector  is given these results once the run has finished, or null if nothing is to be notified
+     */
+    public SpaceResults(int runIndex, int nOfResults, MultiResultCollector collector) {
+        this.runIndex = runIndex;
+        this.collector = collector;
         smallParticles = new long[nOfResults];
         largeParticles = new long[nOfResults];
         spaceFlightsQueued = new int[nOfResults];
@@ -27,24 +39,32 @@ public class SpaceResults {
         lostSatellites = new int[nOfResults];
     }
 
-    public void addResults(long pSmall, long pLarge, int pHugh, int satsInOrbit) {
+    @Override
+    public void addResults(long pSmall, long pLarge, int pHugh, int satsInOrbit, int flightsQueued) {
         smallParticles[index] = pSmall;
         largeParticles[index] = pLarge;
         hughParticles[index] = pHugh;
         activeSatellites[index] = satsInOrbit;
-        spaceFlightsQueued[index] = SpaceSimulation.satellitesRequiredInOrbit - satsInOrbit;
+        spaceFlightsQueued[index] = flightsQueued;
         index++;
     }
 
+    @Override
     public void addLostSatellites(int n) {
         nOfLostSatellites += n;
         lostSatellites[index] += n;
     }
 
+    @Override
     public void addSaves(int n) {
         saves += n;
     }
 
+    @Override
+    public void finish() {
+        if (collector != null) collector.add(this);
+    }
+
     public long[] getLargeParticles() {
         return largeParticles;
     }
@@ -76,4 +96,8 @@ public class SpaceResults {
     public int getSaves() {
         return saves;
     }
+
+    public int getRunIndex() {
+        return runIndex;
+    }
 }
@@ -0,0 +1,319 @@
+package Results;
+
+/**
+ * the weighted results of runs that are split into several paths, such as by the {@link Simulation.SplittingSimulation}.
+ * Every independent root run contributes the weighted sum of the values of all its final paths, which has the same
+ * expectation as the value of a single run if the weights of the paths are chosen right. The means and confidence
+ * intervals are taken over these sums of the root runs, hence they are unbiased and account for the dependence of the
+ * paths of one root.
+ * <p>
+ * Besides the usual results, the probability that a run reaches each level of the splitting is estimated by the
+ * weighted number of paths that reached it. Only every {@code stride}th day is stored, as by the {@link
+ * StreamingResultCollector}, but no quantiles are kept.
+ * <p>
+ * In antithetic mode, root runs 2i and 2i + 1 are an antithetic pair, and the means and confidence intervals are taken
+ * over the mean of each pair.
+ */
+public class SplittingResults implements MultiSpaceResults {
+    private final int runLength;
+    private final int stride;
+    private final int nOfSamples;
+    private final int nOfLevels;
+    private final boolean antithetic;
+    /** the number of values of the moments, which is the number of pairs in antithetic mode */
+    private long nOfRoots = 0;
+
+    private final MomentCollector lostSatellitesTotal = new MomentCollector();
+    private final MomentCollector esaSaves = new MomentCollector();
+    private final MomentCollector smallTotal = new MomentCollector();
+    private final MomentCollector largeTotal = new MomentCollector();
+    private final MomentCollector hughTotal = new MomentCollector();
+    /** the probability of reaching each level */
+    private final MomentCollector[] reached;
+    /** the number of final paths per root, which shows the cost of the splitting */
+    private final MomentCollector leaves = new MomentCollector();
+    private final RunOutcomes outcomes = new RunOutcomes();
+    private final RunPairs<WeightedRun> pairs = new RunPairs<>();
+
+    /** per-day mean and variance of each series, indexed by {@link Series#ordinal()} */
+    private final DailyMoments[] moments;
+
+    /**
+     * @param runLength  the number of results of each run, including the initial state
+     * @param maxSamples the maximum number of days stored, evenly spread over the run
+     * @param nOfLevels  the number of levels of which the probability of reaching it is estimated
+     * @param antithetic if true, root runs 2i and 2i + 1 are collected as an antithetic pair
+     */
+    public SplittingResults(int runLength, int maxSamples, int nOfLevels, boolean antithetic) {
+        if (runLength <= 0 || maxSamples <= 0 || nOfLevels < 0)
+            throw new IllegalArgumentException("length = " + runLength + ", samples = " + maxSamples + ", levels = " + nOfLevels);
+        this.runLength = runLength;
+        this.stride = (runLength - 1) / maxSamples + 1;
+        this.nOfSamples = (runLength - 1) / stride + 1;
+        this.nOfLevels = nOfLevels;
+        this.antithetic = antithetic;
+
+        reached = new MomentCollector[nOfLevels];
+        for (int k = 0; k < nOfLevels; k++) {
+            reached[k] = new MomentCollector();
+        }
+        moments = new DailyMoments[Series.values().length];
+        for (int s = 0; s < moments.length; s++) {
+            moments[s] = new DailyMoments(nOfSamples);
+        }
+    }
+
+    /**
+     * creates the results of the paths of a single new root run, which are collected once {@link
+     * WeightedRun#finish()} is called. The result object must be used by a single thread.
+     * @param rootIndex the index of the root run, which pairs it with the runs of other results with the same index
+     */
+    public WeightedRun newRoot(int rootIndex) {
+        return new WeightedRun(rootIndex);
+    }
+
+    private synchronized void add(WeightedRun run) {
+        outcomes.add(run.rootIndex, run.lostSatellites, run.saves, run.small, run.large, run.hugh);
+        if (!antithetic) {
+            accumulate(run, run);
+            return;
+        }
+
+        WeightedRun partner = pairs.match(run.rootIndex, run);
+        if (partner != null) accumulate(run, partner);
+    }
+
+    /** adds the mean of the given root runs, which are either the same run or the two runs of an antithetic pair */
+    private void accumulate(WeightedRun a, WeightedRun b) {
+        long count = ++nOfRoots;
+        for (int s = 0; s < moments.length; s++) {
+            for (int i = 0; i < nOfSamples; i++) {
+                moments[s].add(i, (a.daily[s][i] + b.daily[s][i]) / 2, count);
+            }
+        }
+
+        lostSatellitesTotal.add((a.lostSatellites + b.lostSatellites) / 2);
+        esaSaves.add((a.saves + b.saves) / 2);
+        smallTotal.add((a.small + b.small) / 2);
+        largeTotal.add((a.large + b.large) / 2);
+        hughTotal.add((a.hugh + b.hugh) / 2);
+        for (int k = 0; k < nOfLevels; k++) {
+            reached[k].add((a.reached[k] + b.reached[k]) / 2);
+        }
+        leaves.add((a.nOfLeaves + b.nOfLeaves) / 2.0);
+    }
+
+    /** @return the number of root runs collected so far, in which a pair counts once in antithetic mode */
+    public synchronized long nOfRoots() {
+        return nOfRoots;
+    }
+
+    /** @return the number of levels of the splitting */
+    public int nOfLevels() {
+        return nOfLevels;
+    }
+
+    /** @return the estimated probability that a run reaches the given level */
+    public synchronized double levelProbability(int level) {
+        return reached[level].getMean();
+    }
+
+    /** @return the 95% confidence interval of {@link #levelProbability(int)} */
+    public synchronized Interval levelProbabilityConf(int level) {
+        return reached[level].getConfidence();
+    }
+
+    /** @return the mean number of final paths of a root run */
+    public synchronized double leavesMean() {
+        return leaves.getMean();
+    }
+
+    @Override
+    public synchronized Interval lostSatellitesConf() {
+        return lostSatellitesTotal.getConfidence();
+    }
+
+    @Override
+    public synchronized double lostSatellitesMean() {
+        return lostSatellitesTotal.getMean();
+    }
+
+    @Override
+    public synchronized double savesMean() {
+        return esaSaves.getMean();
+    }
+
+    @Override
+    public synchronized Interval savesConf() {
+        return esaSaves.getConfidence();
+    }
+
+    @Override
+    public synchronized double smallParticleMean() {
+        return smallTotal.getMean();
+    }
+
+    @Override
+    public synchronized Interval smallParticleConf() {
+        return smallTotal.getConfidence();
+    }
+
+    @Override
+    public synchronized double largeParticleMean() {
+        return largeTotal.getMean();
+    }
+
+    @Override
+    public synchronized Interval largeParticleConf() {
+        return largeTotal.getConfidence();
+    }
+
+    @Override
+    public synchronized double hughParticleMean() {
+        return hughTotal.getMean();
+    }
+
+    @Override
+    public synchronized Interval hughParticleConf() {
+        return hughTotal.getConfidence();
+    }
+
+    @Override
+    public synchronized double[] getMean(Series series) {
+        return moments[series.ordinal()].mean.clone();
+    }
+
+    @Override
+    public synchronized Interval[] getConfidence(Series series) {
+        return moments[series.ordinal()].getConfidence(nOfRoots);
+    }
+
+    /** weighted paths keep no quantile sketches */
+    @Override
+    public boolean hasQuantiles() {
+        return false;
+    }
+
+    @Override
+    public double[] getQuantile(Series series, double q) {
+        throw new UnsupportedOperationException("quantiles are not kept of weighted runs");
+    }
+
+    @Override
+    public int[] getDays() {
+        int[] days = new int[nOfSamples];
+        for (int i = 0; i < nOfSamples; i++) {
+            days[i] = i * stride;
+        }
+        return days;
+    }
+
+    @Override
+    public double[] getOutcomes(Outcome outcome) {
+        return outcomes.get(outcome);
+    }
+
+    @Override
+    public double pairedDifferenceMean(MultiSpaceResults baseline, Outcome outcome) {
+        return RunOutcomes.difference(getOutcomes(outcome), baseline.getOutcomes(outcome), antithetic).getMean();
+    }
+
+    @Override
+    public Interval pairedDifferenceConf(MultiSpaceResults baseline, Outcome outcome) {
+        return RunOutcomes.difference(getOutcomes(outcome), baseline.getOutcomes(outcome), antithetic).getConfidence();
+    }
+
+    @Override
+    public double[] getActiveSatellites() {
+        return getMean(Series.ACTIVE_SATELLITES);
+    }
+
+    @Override
+    public double[] getSpaceFlightsQueued() {
+        return getMean(Series.SPACE_FLIGHTS_QUEUED);
+    }
+
+    @Override
+    public double[] getHughParticles() {
+        return getMean(Series.HUGH_PARTICLES);
+    }
+
+    @Override
+    public double[] getLargeParticles() {
+        return getMean(Series.LARGE_PARTICLES);
+    }
+
+    @Override
+    public double[] getSmallParticles() {
+        return getMean(Series.SMALL_PARTICLES);
+    }
+
+    @Override
+    public double[] getLostSatellites() {
+        return getMean(Series.LOST_SATELLITES);
+    }
+
+    /**
+     * the weighted sum of the values of all paths of one root run. A part of a path that is shared by several final
+     * paths is added once, with the sum of the weights of these final paths.
+     */
+    public final class WeightedRun {
+        private final int rootIndex;
+        /** per series, indexed by {@link Series#ordinal()}, the weighted sum of each stored day */
+        private final double[][] daily = new double[Series.values().length][nOfSamples];
+        private double lostSatellites = 0;
+        private double saves = 0;
+        private double small = 0;
+        private double large = 0;
+        private double hugh = 0;
+        private final double[] reached = new double[nOfLevels];
+        private int nOfLeaves = 0;
+
+        private WeightedRun(int rootIndex) {
+            this.rootIndex = rootIndex;
+        }
+
+        /**
+         * adds the state at the end of the given day, which is ignored if the day is not stored
+         * @param lost the satellites lost on the given day
+         */
+        public void addDay(int day, double weight, long pSmall, long pLarge, int pHugh, int satsInOrbit, int flightsQueued, int lost) {
+            if (day == runLength - 1) {
+                small += weight * pSmall;
+                large += weight * pLarge;
+                hugh += weight * pHugh;
+            }
+            if (day % stride != 0) return;
+
+            int i = day / stride;
+            daily[Series.ACTIVE_SATELLITES.ordinal()][i] += weight * satsInOrbit;
+            daily[Series.SPACE_FLIGHTS_QUEUED.ordinal()][i] += weight * flightsQueued;
+            daily[Series.HUGH_PARTICLES.ordinal()][i] += weight * pHugh;
+            daily[Series.LARGE_PARTICLES.ordinal()][i] += weight * pLarge;
+            daily[Series.SMALL_PARTICLES.ordinal()][i] += weight * pSmall;
+            daily[Series.LOST_SATELLITES.ordinal()][i] += weight * lost;
+        }
+
+        /** adds the satellites that were lost and saved on a part of a path */
+        public void addTotals(double weight, int nOfLostSatellites, int nOfSaves) {
+            lostSatellites += weight * nOfLostSatellites;
+            saves += weight * nOfSaves;
+        }
+
+        /**
+         * registers a final path of this root
+         * @param levelsReached the number of levels that the path reached, counted from the lowest
+         */
+        public void addLeaf(double weight, int levelsReached) {
+            for (int k = 0; k < levelsReached; k++) {
+                reached[k] += weight;
+            }
+            nOfLeaves++;
+        }
+
+        /** passes the weighted sums of this root to the results. Must be called once, after all paths have finished */
+        public void finish() {
+            add(this);
+        }
+    }
+}
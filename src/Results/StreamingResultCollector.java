@@ -0,0 +1,566 @@
+package Results;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * collects the results of many runs in constant memory. Runs push their daily values into a buffer of their own, which
+ * only stores every {@code stride}th day, and commit the buffer to the accumulator of the executing thread when the run
+ * finishes. The accumulators of all threads are merged upon {@link #wrapUp()}, hence memory use is independent
+ * of the number of runs. As only finished runs are accumulated, the state of the collector and of the unfinished runs
+ * can be saved separately, see {@link Checkpointable}.
+ * <p>
+ * For every stored day, the mean and variance of each series are kept per thread, and a quantile sketch per day is
+ * shared by all threads, each day guarded by its own lock. The totals at the end of each run are kept per thread as
+ * well, and per run index for paired comparisons.
+ * <p>
+ * The two runs of an antithetic pair are not independent, hence in antithetic mode the means and confidence intervals
+ * are taken over the mean of each pair: the first run of a pair to finish waits for the other one, and the pair is
+ * accumulated as a single value. The quantiles remain those of the single runs, which all have the same distribution.
+ */
+public class StreamingResultCollector implements MultiSpaceResults, MultiResultCollector, Checkpointable {
+    /** rank error of the quantiles is in the order of 1%, while a sketch holds about 200 values */
+    public static final int DEFAULT_SKETCH_ACCURACY = 64;
+
+    private final int runLength;
+    private final int stride;
+    private final int nOfSamples;
+    private boolean isWrappedUp = false;
+
+    /** quantile sketches of every stored day */
+    private final DaySketches[] sketches;
+
+    /** accumulator of each thread, all registered in {@link #accumulators} */
+    private final ThreadLocal<Accumulator> localAccumulator;
+    private final List<Accumulator> accumulators = new ArrayList<>();
+    private final RunOutcomes outcomes = new RunOutcomes();
+    /** whether runs 2i and 2i + 1 are antithetic pairs, which is restored by {@link #readState(DataInput)} */
+    private boolean antithetic;
+    private final RunPairs<StreamedRun> pairs = new RunPairs<>();
+
+    /** the merged means, only available after wrapUp */
+    private Accumulator total;
+
+    private StreamingResultCollector(int runLength, int stride, int sketchAccuracy, boolean antithetic) {
+        if (runLength <= 0 || stride <= 0)
+            throw new IllegalArgumentException("length = " + runLength + ", stride = " + stride);
+        this.runLength = runLength;
+        this.stride = stride;
+        this.antithetic = antithetic;
+        this.nOfSamples = (runLength - 1) / stride + 1;
+
+        sketches = new DaySketches[nOfSamples];
+        for (int i = 0; i < nOfSamples; i++) {
+            sketches[i] = new DaySketches(sketchAccuracy);
+        }
+
+        localAccumulator = ThreadLocal.withInitial(() -> {
+            Accumulator acc = new Accumulator(nOfSamples);
+            synchronized (accumulators) {
+                accumulators.add(acc);
+            }
+            return acc;
+        });
+    }
+
+    /**
+     * @param runLength  the number of results of each run, including the initial state
+     * @param maxSamples the maximum number of days stored, evenly spread over the run
+     */
+    public static MultiResultCollector getCollector(int runLength, int maxSamples) {
+        return getCollector(runLength, maxSamples, false);
+    }
+
+    /**
+     * @param runLength  the number of results of each run, including the initial state
+     * @param maxSamples the maximum number of days stored, evenly spread over the run
+     * @param antithetic if true, runs 2i and 2i + 1 are collected as an antithetic pair
+     */
+    public static MultiResultCollector getCollector(int runLength, int maxSamples, boolean antithetic) {
+        return getCollector(runLength, maxSamples, DEFAULT_SKETCH_ACCURACY, antithetic);
+    }
+
+    /**
+     * @param runLength      the number of results of each run, including the initial state
+     * @param maxSamples     the maximum number of days stored, evenly spread over the run
+     * @param sketchAccuracy the k parameter of the quantile sketches, see {@link QuantileSketch}
+     * @param antithetic     if true, runs 2i and 2i + 1 are collected as an antithetic pair
+     */
+    public static MultiResultCollector getCollector(int runLength, int maxSamples, int sketchAccuracy, boolean antithetic) {
+        int stride = (runLength - 1) / maxSamples + 1;
+        return new StreamingResultCollector(runLength, stride, sketchAccuracy, antithetic);
+    }
+
+    @Override
+    public DailyResults newRun(int runIndex, int runLength) {
+        if (runLength != this.runLength)
+            throw new IllegalArgumentException("run length " + runLength + " differs from collector length " + this.runLength);
+
+        return new StreamedRun(runIndex);
+    }
+
+    @Override
+    public void add(SpaceResults results) {
+        StreamedRun run = new StreamedRun(results.getRunIndex());
+        long[] small = results.getSmallParticles();
+        long[] large = results.getLargeParticles();
+        int[] hugh = results.getHughParticles();
+        int[] active = results.getActiveSatellites();
+        int[] queued = results.getSpaceFlightsQueued();
+        int[] lost = results.getLostSatellites();
+
+        for (int i = 0; i < nOfSamples; i++) {
+            int day = i * stride;
+            store(run.pending[i], small[day], large[day], hugh[day], active[day], queued[day], lost[day]);
+        }
+        int end = runLength - 1;
+        run.day = runLength;
+        run.nOfLostSatellites = results.getNumberOfLostSatellites();
+        run.saves = results.getSaves();
+        run.small = small[end];
+        run.large = large[end];
+        run.hugh = hugh[end];
+        run.finish();
+    }
+
+    /** stores the values of a single day, indexed by series */
+    private static void store(double[] values, long small, long large, int hugh, int active, int queued, int lost) {
+        values[Series.ACTIVE_SATELLITES.ordinal()] = active;
+        values[Series.SPACE_FLIGHTS_QUEUED.ordinal()] = queued;
+        values[Series.HUGH_PARTICLES.ordinal()] = hugh;
+        values[Series.LARGE_PARTICLES.ordinal()] = large;
+        values[Series.SMALL_PARTICLES.ordinal()] = small;
+        values[Series.LOST_SATELLITES.ordinal()] = lost;
+    }
+
+    /**
+     * writes the results of all finished runs, including the runs that wait for the other run of their antithetic
+     * pair. Must not be called while a run is finishing, and the state of unfinished runs is not included
+     */
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeInt(runLength);
+        out.writeInt(stride);
+        out.writeBoolean(antithetic);
+
+        Accumulator merged = new Accumulator(nOfSamples);
+        synchronized (accumulators) {
+            for (Accumulator acc : accumulators) {
+                merged.merge(acc);
+            }
+        }
+        merged.writeState(out);
+
+        for (DaySketches day : sketches) {
+            synchronized (day) {
+                for (QuantileSketch sketch : day.series) {
+                    sketch.writeState(out);
+                }
+            }
+        }
+        outcomes.writeState(out);
+
+        List<StreamedRun> waiting = pairs.waiting();
+        out.writeInt(waiting.size());
+        for (StreamedRun run : waiting) {
+            out.writeInt(run.runIndex);
+            run.writeState(out);
+        }
+    }
+
+    /**
+     * replaces all results by the results written by {@link #writeState(DataOutput)}. Must be called before any run
+     * is started on this collector
+     */
+    @Override
+    public void readState(DataInput in) throws IOException {
+        int otherLength = in.readInt();
+        int otherStride = in.readInt();
+        if (otherLength != runLength || otherStride != stride) {
+            throw new IllegalStateException(String.format(
+                    "state of length %d and stride %d can not be read by a collector of length %d and stride %d",
+                    otherLength, otherStride, runLength, stride
+            ));
+        }
+        antithetic = in.readBoolean();
+
+        Accumulator restored = new Accumulator(nOfSamples);
+        restored.readState(in);
+        synchronized (accumulators) {
+            accumulators.clear();
+            accumulators.add(restored);
+        }
+
+        for (DaySketches day : sketches) {
+            for (QuantileSketch sketch : day.series) {
+                sketch.readState(in);
+            }
+        }
+        outcomes.readState(in);
+
+        pairs.clear();
+        int nOfWaiting = in.readInt();
+        for (int i = 0; i < nOfWaiting; i++) {
+            StreamedRun run = new StreamedRun(in.readInt());
+            run.readState(in);
+            pairs.match(run.runIndex, run);
+        }
+    }
+
+    @Override
+    public MultiSpaceResults wrapUp() {
+        if (isWrappedUp) throw new IllegalStateException("wrapUp is called twice"); // not threadsafe
+        List<StreamedRun> unpaired = pairs.waiting();
+        if (!unpaired.isEmpty())
+            throw new IllegalStateException("the antithetic partner of run " + unpaired.get(0).runIndex + " did not finish");
+
+        total = new Accumulator(nOfSamples);
+        synchronized (accumulators) {
+            for (Accumulator acc : accumulators) {
+                total.merge(acc);
+            }
+        }
+
+        isWrappedUp = true;
+        return this;
+    }
+
+    @Override
+    public double lostSatellitesMean() {
+        return total.lostSatellitesTotal.getMean();
+    }
+
+    @Override
+    public Interval lostSatellitesConf() {
+        return total.lostSatellitesTotal.getConfidence();
+    }
+
+    @Override
+    public double savesMean() {
+        return total.esaSaves.getMean();
+    }
+
+    @Override
+    public Interval savesConf() {
+        return total.esaSaves.getConfidence();
+    }
+
+    @Override
+    public double smallParticleMean() {
+        return total.smallTotal.getMean();
+    }
+
+    @Override
+    public Interval smallParticleConf() {
+        return total.smallTotal.getConfidence();
+    }
+
+    @Override
+    public double largeParticleMean() {
+        return total.largeTotal.getMean();
+    }
+
+    @Override
+    public Interval largeParticleConf() {
+        return total.largeTotal.getConfidence();
+    }
+
+    @Override
+    public double hughParticleMean() {
+        return total.hughTotal.getMean();
+    }
+
+    @Override
+    public Interval hughParticleConf() {
+        return total.hughTotal.getConfidence();
+    }
+
+    @Override
+    public double[] getMean(Series series) {
+        return total.moments[series.ordinal()].mean;
+    }
+
+    @Override
+    public Interval[] getConfidence(Series series) {
+        return total.moments[series.ordinal()].getConfidence(total.nOfRuns);
+    }
+
+    @Override
+    public boolean hasQuantiles() {
+        return true;
+    }
+
+    @Override
+    public double[] getQuantile(Series series, double q) {
+        double[] result = new double[nOfSamples];
+        for (int i = 0; i < nOfSamples; i++) {
+            result[i] = sketches[i].series[series.ordinal()].quantile(q);
+        }
+        return result;
+    }
+
+    @Override
+    public int[] getDays() {
+        int[] days = new int[nOfSamples];
+        for (int i = 0; i < nOfSamples; i++) {
+            days[i] = i * stride;
+        }
+        return days;
+    }
+
+    @Override
+    public double[] getOutcomes(Outcome outcome) {
+        return outcomes.get(outcome);
+    }
+
+    @Override
+    public double pairedDifferenceMean(MultiSpaceResults baseline, Outcome outcome) {
+        return RunOutcomes.difference(getOutcomes(outcome), baseline.getOutcomes(outcome), antithetic).getMean();
+    }
+
+    @Override
+    public Interval pairedDifferenceConf(MultiSpaceResults baseline, Outcome outcome) {
+        return RunOutcomes.difference(getOutcomes(outcome), baseline.getOutcomes(outcome), antithetic).getConfidence();
+    }
+
+    @Override
+    public double[] getActiveSatellites() {
+        return getMean(Series.ACTIVE_SATELLITES);
+    }
+
+    @Override
+    public double[] getSpaceFlightsQueued() {
+        return getMean(Series.SPACE_FLIGHTS_QUEUED);
+    }
+
+    @Override
+    public double[] getHughParticles() {
+        return getMean(Series.HUGH_PARTICLES);
+    }
+
+    @Override
+    public double[] getLargeParticles() {
+        return getMean(Series.LARGE_PARTICLES);
+    }
+
+    @Override
+    public double[] getSmallParticles() {
+        return getMean(Series.SMALL_PARTICLES);
+    }
+
+    @Override
+    public double[] getLostSatellites() {
+        return getMean(Series.LOST_SATELLITES);
+    }
+
+    /**
+     * moments of the sampled days and of the totals of the runs of one thread. In antithetic mode, every value is the
+     * mean of a pair
+     */
+    private static class Accumulator implements Checkpointable {
+        final DailyMoments[] moments;
+        final MomentCollector lostSatellitesTotal = new MomentCollector();
+        final MomentCollector esaSaves = new MomentCollector();
+        final MomentCollector smallTotal = new MomentCollector();
+        final MomentCollector largeTotal = new MomentCollector();
+        final MomentCollector hughTotal = new MomentCollector();
+        /** the number of values, which is the number of pairs in antithetic mode */
+        long nOfRuns = 0;
+
+        Accumulator(int nOfSamples) {
+            Series[] series = Series.values();
+            moments = new DailyMoments[series.length];
+            for (int s = 0; s < series.length; s++) {
+                moments[s] = new DailyMoments(nOfSamples);
+            }
+        }
+
+        /**
+         * adds the values of a run
+         * @param days the values of the stored days, indexed by day and series
+         */
+        void add(double[][] days, double lostSatellites, double saves, double small, double large, double hugh) {
+            for (int i = 0; i < days.length; i++) {
+                for (int s = 0; s < moments.length; s++) {
+                    moments[s].add(i, days[i][s], nOfRuns + 1);
+                }
+            }
+            lostSatellitesTotal.add(lostSatellites);
+            esaSaves.add(saves);
+            smallTotal.add(small);
+            largeTotal.add(large);
+            hughTotal.add(hugh);
+            nOfRuns++;
+        }
+
+        void merge(Accumulator other) {
+            for (int s = 0; s < moments.length; s++) {
+                moments[s].merge(other.moments[s], nOfRuns, other.nOfRuns);
+            }
+            lostSatellitesTotal.merge(other.lostSatellitesTotal);
+            esaSaves.merge(other.esaSaves);
+            smallTotal.merge(other.smallTotal);
+            largeTotal.merge(other.largeTotal);
+            hughTotal.merge(other.hughTotal);
+            nOfRuns += other.nOfRuns;
+        }
+
+        @Override
+        public void writeState(DataOutput out) throws IOException {
+            out.writeLong(nOfRuns);
+            for (DailyMoments m : moments) {
+                m.writeState(out);
+            }
+            lostSatellitesTotal.writeState(out);
+            esaSaves.writeState(out);
+            smallTotal.writeState(out);
+            largeTotal.writeState(out);
+            hughTotal.writeState(out);
+        }
+
+        @Override
+        public void readState(DataInput in) throws IOException {
+            nOfRuns = in.readLong();
+            for (DailyMoments m : moments) {
+                m.readState(in);
+            }
+            lostSatellitesTotal.readState(in);
+            esaSaves.readState(in);
+            smallTotal.readState(in);
+            largeTotal.readState(in);
+            hughTotal.readState(in);
+        }
+    }
+
+    /** the quantile sketches of all series of one day */
+    private static class DaySketches {
+        final QuantileSketch[] series;
+
+        DaySketches(int k) {
+            series = new QuantileSketch[Series.values().length];
+            for (int s = 0; s < series.length; s++) {
+                series[s] = new QuantileSketch(k);
+            }
+        }
+
+        synchronized void add(double[] values) {
+            for (int s = 0; s < series.length; s++) {
+                series[s].add(values[s]);
+            }
+        }
+    }
+
+    /**
+     * the results of a single run, pushed into the accumulator of the thread that finishes it, or of the thread that
+     * finishes the other run of its antithetic pair. The runs of a batch are executed by the same thread, hence every
+     * run has its own buffer
+     */
+    private class StreamedRun implements DailyResults, Checkpointable {
+        /** the values of the stored days, indexed by day and series */
+        private final double[][] pending = new double[nOfSamples][Series.values().length];
+        private final int runIndex;
+        private int day = 0;
+        private int lostToday = 0;
+        private int nOfLostSatellites = 0;
+        private int saves = 0;
+        private long small;
+        private long large;
+        private int hugh;
+
+        StreamedRun(int runIndex) {
+            this.runIndex = runIndex;
+        }
+
+        @Override
+        public void addResults(long pSmall, long pLarge, int pHugh, int satsInOrbit, int flightsQueued) {
+            if (day % stride == 0) {
+                store(pending[day / stride], pSmall, pLarge, pHugh, satsInOrbit, flightsQueued, lostToday);
+            }
+            small = pSmall;
+            large = pLarge;
+            hugh = pHugh;
+            lostToday = 0;
+            day++;
+        }
+
+        @Override
+        public void addLostSatellites(int n) {
+            nOfLostSatellites += n;
+            lostToday += n;
+        }
+
+        @Override
+        public void addSaves(int n) {
+            saves += n;
+        }
+
+        @Override
+        public void finish() {
+            for (int i = 0; i < nOfSamples; i++) {
+                sketches[i].add(pending[i]);
+            }
+            outcomes.add(runIndex, nOfLostSatellites, saves, small, large, hugh);
+
+            if (!antithetic) {
+                localAccumulator.get().add(pending, nOfLostSatellites, saves, small, large, hugh);
+                return;
+            }
+            StreamedRun partner = pairs.match(runIndex, this);
+            if (partner == null) return; // added once the other run of the pair finishes
+
+            for (int i = 0; i < nOfSamples; i++) {
+                for (int s = 0; s < pending[i].length; s++) {
+                    pending[i][s] = (pending[i][s] + partner.pending[i][s]) / 2;
+                }
+            }
+            localAccumulator.get().add(pending,
+                    (nOfLostSatellites + partner.nOfLostSatellites) / 2.0, (saves + partner.saves) / 2.0,
+                    (small + partner.small) / 2.0, (large + partner.large) / 2.0, (hugh + partner.hugh) / 2.0
+            );
+        }
+
+        @Override
+        public void writeState(DataOutput out) throws IOException {
+            out.writeInt(runIndex);
+            out.writeInt(day);
+            out.writeInt(lostToday);
+            out.writeInt(nOfLostSatellites);
+            out.writeInt(saves);
+            out.writeLong(small);
+            out.writeLong(large);
+            out.writeInt(hugh);
+
+            int nOfStored = (day + stride - 1) / stride;
+            for (int i = 0; i < nOfStored; i++) {
+                for (double v : pending[i]) {
+                    out.writeDouble(v);
+                }
+            }
+        }
+
+        @Override
+        public void readState(DataInput in) throws IOException {
+            int otherIndex = in.readInt();
+            if (otherIndex != runIndex) throw new IllegalStateException("state of run " + otherIndex + " read by run " + runIndex);
+
+            day = in.readInt();
+            lostToday = in.readInt();
+            nOfLostSatellites = in.readInt();
+            saves = in.readInt();
+            small = in.readLong();
+            large = in.readLong();
+            hugh = in.readInt();
+
+            int nOfStored = (day + stride - 1) / stride;
+            for (int i = 0; i < nOfStored; i++) {
+                double[] values = pending[i];
+                for (int s = 0; s < values.length; s++) {
+                    values[s] = in.readDouble();
+                }
+            }
+        }
+    }
+}
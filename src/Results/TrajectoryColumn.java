@@ -0,0 +1,108 @@
+package Results;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * the values of one series of one run, in the encoding of a {@link TrajectoryStore}. Values are either stored as raw 8
+ * byte integers, or delta-encoded: every value is stored as the difference with the previous value, as a zigzag
+ * varint. Daily changes are small, hence most values take one or two bytes. Not threadsafe.
+ */
+class TrajectoryColumn {
+    private final boolean deltaEncoded;
+    private byte[] bytes;
+    private int size = 0;
+    private long previous = 0;
+
+    TrajectoryColumn(boolean deltaEncoded, int initialCapacity) {
+        this.deltaEncoded = deltaEncoded;
+        this.bytes = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    void append(long value) {
+        ensureCapacity(10);
+
+        if (deltaEncoded) {
+            long delta = value - previous;
+            long zigzag = (delta << 1) ^ (delta >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            bytes[size++] = (byte) zigzag;
+            previous = value;
+
+        } else {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+    }
+
+    /** clears this column for the next run */
+    void reset() {
+        size = 0;
+        previous = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** writes the encoded values into the given buffer */
+    void copyTo(ByteBuffer target) {
+        target.put(bytes, 0, size);
+    }
+
+    /** @return the encoded values, and the state needed to continue encoding */
+    byte[] getBytes() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    long getPrevious() {
+        return previous;
+    }
+
+    /** replaces the contents of this column by the given encoded values */
+    void set(byte[] encoded, long previous) {
+        bytes = Arrays.copyOf(encoded, Math.max(encoded.length, bytes.length));
+        size = encoded.length;
+        this.previous = previous;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, size + extra));
+        }
+    }
+
+    /**
+     * decodes the values of a column
+     * @param source       the encoded column, positioned at its start. Is advanced to the end of the column.
+     * @param deltaEncoded whether the column is delta-encoded
+     * @param out          receives the values, its length is the number of values in the column
+     */
+    static void decode(ByteBuffer source, boolean deltaEncoded, long[] out) {
+        if (!deltaEncoded) {
+            for (int i = 0; i < out.length; i++) {
+                out[i] = source.getLong();
+            }
+            return;
+        }
+
+        long value = 0;
+        for (int i = 0; i < out.length; i++) {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = source.get();
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+
+            value += (zigzag >>> 1) ^ -(zigzag & 1);
+            out[i] = value;
+        }
+    }
+}
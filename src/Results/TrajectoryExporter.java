@@ -0,0 +1,121 @@
+package Results;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * exports a trajectory file of a {@link TrajectoryStore} to a semicolon-separated csv file, with one row per run and
+ * day. All values are integers, which are written digit by digit into a byte buffer instead of being formatted.
+ */
+public class TrajectoryExporter {
+    private static final String HEADER = "run;dayNr;activeSats;launchQueue;hughDebris;largeDebris;smallDebris;lostSatellites\n";
+    /** the order of the columns after the run and the day */
+    private static final Series[] COLUMNS = {
+            Series.ACTIVE_SATELLITES, Series.SPACE_FLIGHTS_QUEUED, Series.HUGH_PARTICLES,
+            Series.LARGE_PARTICLES, Series.SMALL_PARTICLES, Series.LOST_SATELLITES
+    };
+    /** long enough for a row of 8 longs with separators */
+    private static final int ROW_CAPACITY = 8 * 21;
+
+    private final byte[] row = new byte[ROW_CAPACITY];
+    private int rowSize;
+
+    /**
+     * writes the given runs to the output
+     * @param reader   the trajectories
+     * @param output   receives the csv rows, including a header
+     * @param stride   every stride-th day is written, starting at day 0
+     * @param runIndex the run index of the run to write, or -1 for all runs
+     */
+    public void export(TrajectoryReader reader, OutputStream output, int stride, int runIndex) throws IOException {
+        if (stride < 1) throw new IllegalArgumentException("stride = " + stride);
+
+        int runLength = reader.getRunLength();
+        long[][] values = new long[COLUMNS.length][runLength];
+        output.write(HEADER.getBytes());
+
+        for (int r = 0; r < reader.nOfRuns(); r++) {
+            int index = reader.getRunIndex(r);
+            if (runIndex >= 0 && index != runIndex) continue;
+
+            for (int c = 0; c < COLUMNS.length; c++) {
+                reader.read(r, COLUMNS[c], values[c]);
+            }
+
+            for (int day = 0; day < runLength; day += stride) {
+                rowSize = 0;
+                append(index);
+                append(day);
+                for (long[] column : values) {
+                    append(column[day]);
+                }
+                row[rowSize - 1] = '\n';
+                output.write(row, 0, rowSize);
+            }
+        }
+    }
+
+    /** appends the decimal digits of the value and a separator to the current row */
+    private void append(long value) {
+        if (value < 0) {
+            row[rowSize++] = '-';
+            value = -value;
+        }
+
+        int start = rowSize;
+        do {
+            row[rowSize++] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+
+        // the digits were written in reverse
+        for (int i = start, j = rowSize - 1; i < j; i++, j--) {
+            byte t = row[i];
+            row[i] = row[j];
+            row[j] = t;
+        }
+        row[rowSize++] = ';';
+    }
+
+    /**
+     * exports a trajectory file. Options:
+     * --input [file]    the trajectory file, default trajectories.bin
+     * --output [file]   the csv file, default trajectories.csv
+     * --stride [int]    write every stride-th day, default 1
+     * --run [int]       write only the run with this run index
+     */
+    public static void main(String[] args) throws IOException {
+        Path input = Paths.get("trajectories.bin");
+        Path output = Paths.get("trajectories.csv");
+        int stride = 1;
+        int runIndex = -1;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--input":
+                    input = Paths.get(args[++i]);
+                    break;
+                case "--output":
+                    output = Paths.get(args[++i]);
+                    break;
+                case "--stride":
+                    stride = Integer.parseInt(args[++i]);
+                    break;
+                case "--run":
+                    runIndex = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+
+        try (TrajectoryReader reader = new TrajectoryReader(input);
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), 1 << 16)) {
+            new TrajectoryExporter().export(reader, out, stride, runIndex);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package Results;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * reads the trajectories written by a {@link TrajectoryStore}. The block of a run is memory-mapped when it is read, such
+ * that single runs and series can be read from files larger than the available memory.
+ */
+public class TrajectoryReader implements Closeable {
+    private final FileChannel channel;
+    private final boolean deltaEncoded;
+    private final int runLength;
+    private final int nOfSeries;
+
+    /** per run in the file: run index, offset and the size of each column */
+    private final int[] runIndices;
+    private final long[] offsets;
+    private final int[][] columnSizes;
+
+    public TrajectoryReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, TrajectoryStore.HEADER_SIZE);
+        if (header.getInt() != TrajectoryStore.MAGIC) throw new IOException(file + " is not a trajectory file");
+        int version = header.getInt();
+        if (version != TrajectoryStore.VERSION) throw new IOException("unsupported trajectory version " + version);
+
+        deltaEncoded = header.getInt() != 0;
+        nOfSeries = header.getInt();
+        runLength = header.getInt();
+        int nOfRuns = header.getInt();
+        long indexOffset = header.getLong();
+        if (nOfSeries != Series.values().length)
+            throw new IOException("expected " + Series.values().length + " series, found " + nOfSeries);
+
+        runIndices = new int[nOfRuns];
+        offsets = new long[nOfRuns];
+        columnSizes = new int[nOfRuns][nOfSeries];
+
+        ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, channel.size() - indexOffset);
+        for (int r = 0; r < nOfRuns; r++) {
+            runIndices[r] = index.getInt();
+            offsets[r] = index.getLong();
+            for (int s = 0; s < nOfSeries; s++) {
+                columnSizes[r][s] = index.getInt();
+            }
+        }
+    }
+
+    /** @return the number of runs in the file */
+    public int nOfRuns() {
+        return runIndices.length;
+    }
+
+    /** @return the number of values of each series of each run, including the initial state */
+    public int getRunLength() {
+        return runLength;
+    }
+
+    /**
+     * @param r the position of the run in the file, in [0, {@link #nOfRuns()})
+     * @return the run index of the given run, as given by the scheduler
+     */
+    public int getRunIndex(int r) {
+        return runIndices[r];
+    }
+
+    /**
+     * reads one series of one run
+     * @param r      the position of the run in the file, in [0, {@link #nOfRuns()})
+     * @param series the series to read
+     * @param out    receives the value of every day, must have a length of {@link #getRunLength()}
+     */
+    public void read(int r, Series series, long[] out) throws IOException {
+        if (out.length != runLength) throw new IllegalArgumentException("length " + out.length + " != " + runLength);
+
+        long offset = offsets[r];
+        int s = series.ordinal();
+        for (int i = 0; i < s; i++) {
+            offset += columnSizes[r][i];
+        }
+
+        ByteBuffer column = channel.map(FileChannel.MapMode.READ_ONLY, offset, columnSizes[r][s]);
+        TrajectoryColumn.decode(column, deltaEncoded, out);
+    }
+
+    /** @return one series of one run, see {@link #read(int, Series, long[])} */
+    public long[] read(int r, Series series) throws IOException {
+        long[] values = new long[runLength];
+        read(r, series, values);
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
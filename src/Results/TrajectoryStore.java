@@ -0,0 +1,319 @@
+package Results;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * keeps the full trajectory of every run in a columnar binary file, while passing all results on to another collector.
+ * The values of each day are encoded per series while the run executes, and the block of all columns of a run is
+ * written with a single positional write when the run finishes. The file can be read with a {@link
+ * TrajectoryReader}, and exported to csv with the {@link TrajectoryExporter}.
+ * <p>
+ * Layout of the file: a header of {@link #HEADER_SIZE} bytes, the blocks of all runs in order of finishing, and an
+ * index with the run index, offset and column sizes of every block. The header is completed by {@link #wrapUp()}.
+ */
+public class TrajectoryStore implements MultiResultCollector, Checkpointable {
+    static final int MAGIC = 0x53445452;
+    static final int VERSION = 1;
+    /** magic, version, delta-encoded, number of series, run length, number of runs, index offset */
+    static final int HEADER_SIZE = 4 * 6 + 8;
+    private static final int NOF_SERIES = Series.values().length;
+
+    private final MultiResultCollector target;
+    private final FileChannel channel;
+    private final boolean deltaEncoded;
+    private final int runLength;
+    /** the initial capacity of a column in bytes */
+    private final int capacity;
+
+    /** columns of the results passed to {@link #add(SpaceResults)} by each thread */
+    private final ThreadLocal<TrajectoryColumn[]> localColumns;
+    /** buffer of the block that is written by each thread, which grows to the largest block */
+    private final ThreadLocal<ByteBuffer> localBlock = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(0));
+
+    /** guards the fields below */
+    private final Object indexLock = new Object();
+    private final List<long[]> index = new ArrayList<>();
+    private long nextOffset = HEADER_SIZE;
+
+    /**
+     * @param file         the file to write. An existing file is overwritten
+     * @param target       receives all results as well
+     * @param runLength    the number of results of each run, including the initial state
+     * @param deltaEncoded if true, values are stored as variable-length differences, otherwise as 8 byte integers
+     */
+    public TrajectoryStore(Path file, MultiResultCollector target, int runLength, boolean deltaEncoded) throws IOException {
+        this(file, target, runLength, deltaEncoded, false);
+    }
+
+    /**
+     * @param file         the file to write
+     * @param target       receives all results as well
+     * @param runLength    the number of results of each run, including the initial state
+     * @param deltaEncoded if true, values are stored as variable-length differences, otherwise as 8 byte integers
+     * @param resume       if true, the blocks in the file are kept for {@link #readState(DataInput)}, otherwise an
+     *                     existing file is overwritten
+     */
+    public TrajectoryStore(
+            Path file, MultiResultCollector target, int runLength, boolean deltaEncoded, boolean resume
+    ) throws IOException {
+        this.target = target;
+        this.runLength = runLength;
+        this.deltaEncoded = deltaEncoded;
+        // a stale header and index would make the reader return the runs of an earlier store
+        this.channel = resume
+                ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+
+        this.capacity = deltaEncoded ? 2 * runLength : 8 * runLength;
+        localColumns = ThreadLocal.withInitial(this::newColumns);
+    }
+
+    private TrajectoryColumn[] newColumns() {
+        TrajectoryColumn[] columns = new TrajectoryColumn[NOF_SERIES];
+        for (int s = 0; s < NOF_SERIES; s++) {
+            columns[s] = new TrajectoryColumn(deltaEncoded, capacity);
+        }
+        return columns;
+    }
+
+    @Override
+    public void add(SpaceResults results) {
+        TrajectoryColumn[] columns = localColumns.get();
+        for (TrajectoryColumn c : columns) c.reset();
+
+        for (int i = 0; i < runLength; i++) {
+            columns[Series.ACTIVE_SATELLITES.ordinal()].append(results.getActiveSatellites()[i]);
+            columns[Series.SPACE_FLIGHTS_QUEUED.ordinal()].append(results.getSpaceFlightsQueued()[i]);
+            columns[Series.HUGH_PARTICLES.ordinal()].append(results.getHughParticles()[i]);
+            columns[Series.LARGE_PARTICLES.ordinal()].append(results.getLargeParticles()[i]);
+            columns[Series.SMALL_PARTICLES.ordinal()].append(results.getSmallParticles()[i]);
+            columns[Series.LOST_SATELLITES.ordinal()].append(results.getLostSatellites()[i]);
+        }
+        writeBlock(results.getRunIndex(), columns);
+        target.add(results);
+    }
+
+    @Override
+    public DailyResults newRun(int runIndex, int runLength) {
+        if (runLength != this.runLength)
+            throw new IllegalArgumentException("run length " + runLength + " differs from store length " + this.runLength);
+
+        return new RecordedRun(runIndex, target.newRun(runIndex, runLength));
+    }
+
+    /** reserves space for the block of a run, and writes it at that position */
+    private void writeBlock(int runIndex, TrajectoryColumn[] columns) {
+        long[] entry = new long[2 + NOF_SERIES];
+        int blockSize = 0;
+        for (int s = 0; s < NOF_SERIES; s++) {
+            entry[2 + s] = columns[s].size();
+            blockSize += columns[s].size();
+        }
+
+        synchronized (indexLock) {
+            entry[0] = runIndex;
+            entry[1] = nextOffset;
+            nextOffset += blockSize;
+            index.add(entry);
+        }
+
+        ByteBuffer block = localBlock.get();
+        if (block.capacity() < blockSize) {
+            block = ByteBuffer.allocateDirect(Math.max(blockSize, 2 * block.capacity()));
+            localBlock.set(block);
+        }
+        block.clear();
+        for (TrajectoryColumn c : columns) {
+            c.copyTo(block);
+        }
+        block.flip();
+
+        try {
+            long position = entry[1];
+            while (block.hasRemaining()) {
+                position += channel.write(block, position);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /** writes the index and the header, closes the file, and returns the results of the target collector */
+    @Override
+    public MultiSpaceResults wrapUp() {
+        try {
+            synchronized (indexLock) {
+                int entrySize = 4 + 8 + 4 * NOF_SERIES;
+                ByteBuffer indexBuffer = ByteBuffer.allocate(index.size() * entrySize);
+                for (long[] entry : index) {
+                    indexBuffer.putInt((int) entry[0]);
+                    indexBuffer.putLong(entry[1]);
+                    for (int s = 0; s < NOF_SERIES; s++) {
+                        indexBuffer.putInt((int) entry[2 + s]);
+                    }
+                }
+                indexBuffer.flip();
+                channel.write(indexBuffer, nextOffset);
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putInt(deltaEncoded ? 1 : 0).putInt(NOF_SERIES)
+                        .putInt(runLength).putInt(index.size()).putLong(nextOffset);
+                header.flip();
+                channel.write(header, 0);
+
+                channel.truncate(nextOffset + indexBuffer.limit());
+                channel.force(true);
+            }
+            channel.close();
+
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        return target.wrapUp();
+    }
+
+    /**
+     * writes the state of the target collector and the index of the blocks written so far. The blocks are forced to
+     * the disk first, such that they survive a crash of the machine. Must not be called while a run is finishing
+     */
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        channel.force(false);
+        checkpointable(target).writeState(out);
+
+        synchronized (indexLock) {
+            out.writeBoolean(deltaEncoded);
+            out.writeInt(runLength);
+            out.writeLong(nextOffset);
+            out.writeInt(index.size());
+            for (long[] entry : index) {
+                for (long v : entry) {
+                    out.writeLong(v);
+                }
+            }
+        }
+    }
+
+    /**
+     * restores the state written by {@link #writeState(DataOutput)}. The file must still contain the blocks written
+     * before that state was saved; blocks written after it are overwritten
+     */
+    @Override
+    public void readState(DataInput in) throws IOException {
+        checkpointable(target).readState(in);
+
+        boolean otherDelta = in.readBoolean();
+        int otherLength = in.readInt();
+        if (otherDelta != deltaEncoded || otherLength != runLength) {
+            throw new IllegalStateException(String.format(
+                    "state of length %d (delta = %s) can not be read by a store of length %d (delta = %s)",
+                    otherLength, otherDelta, runLength, deltaEncoded
+            ));
+        }
+
+        synchronized (indexLock) {
+            nextOffset = in.readLong();
+            if (channel.size() < nextOffset)
+                throw new IllegalStateException("the trajectory file is shorter than its saved state");
+
+            index.clear();
+            int nOfEntries = in.readInt();
+            for (int i = 0; i < nOfEntries; i++) {
+                long[] entry = new long[2 + NOF_SERIES];
+                for (int j = 0; j < entry.length; j++) {
+                    entry[j] = in.readLong();
+                }
+                index.add(entry);
+            }
+        }
+    }
+
+    private static Checkpointable checkpointable(Object target) {
+        if (!(target instanceof Checkpointable))
+            throw new IllegalStateException(target.getClass().getSimpleName() + " can not be checkpointed");
+        return (Checkpointable) target;
+    }
+
+    /**
+     * records the values of a run into its own columns, and passes them on. The runs of a batch are executed by the
+     * same thread, hence the columns can not be shared per thread
+     */
+    private class RecordedRun implements DailyResults, Checkpointable {
+        private final int runIndex;
+        private final DailyResults target;
+        private final TrajectoryColumn[] columns = newColumns();
+        private int lostToday = 0;
+
+        RecordedRun(int runIndex, DailyResults target) {
+            this.runIndex = runIndex;
+            this.target = target;
+        }
+
+        @Override
+        public void addResults(long pSmall, long pLarge, int pHugh, int satsInOrbit, int flightsQueued) {
+            columns[Series.ACTIVE_SATELLITES.ordinal()].append(satsInOrbit);
+            columns[Series.SPACE_FLIGHTS_QUEUED.ordinal()].append(flightsQueued);
+            columns[Series.HUGH_PARTICLES.ordinal()].append(pHugh);
+            columns[Series.LARGE_PARTICLES.ordinal()].append(pLarge);
+            columns[Series.SMALL_PARTICLES.ordinal()].append(pSmall);
+            columns[Series.LOST_SATELLITES.ordinal()].append(lostToday);
+            lostToday = 0;
+
+            target.addResults(pSmall, pLarge, pHugh, satsInOrbit, flightsQueued);
+        }
+
+        @Override
+        public void addLostSatellites(int n) {
+            lostToday += n;
+            target.addLostSatellites(n);
+        }
+
+        @Override
+        public void addSaves(int n) {
+            target.addSaves(n);
+        }
+
+        @Override
+        public void finish() {
+            writeBlock(runIndex, columns);
+            target.finish();
+        }
+
+        @Override
+        public void writeState(DataOutput out) throws IOException {
+            checkpointable(target).writeState(out);
+
+            out.writeInt(lostToday);
+            for (TrajectoryColumn c : columns) {
+                byte[] bytes = c.getBytes();
+                out.writeLong(c.getPrevious());
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        @Override
+        public void readState(DataInput in) throws IOException {
+            checkpointable(target).readState(in);
+
+            lostToday = in.readInt();
+            for (TrajectoryColumn c : columns) {
+                long previous = in.readLong();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                c.set(bytes, previous);
+            }
+        }
+    }
+}
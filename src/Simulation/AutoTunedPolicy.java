@@ -0,0 +1,89 @@
+package Simulation;
+
+import static java.lang.Math.max;
+
+/**
+ * chooses the cheapest {@link CountSampler} of which the total variation distance to the exact binomial distribution is
+ * at most a given bound. The choice is made once per regime of (n, p), where a regime is an octave of n and a quarter
+ * octave of p, and holds for the whole regime: the distance is computed at the four corners of the regime, and the
+ * largest is compared to the bound. The cost is estimated at the center of the regime.
+ * <p>
+ * The choices are stored in a table, of which each entry is computed at its first use, which takes a few milliseconds.
+ * Entries may be computed by several threads at once, which all write the same choice.
+ */
+public class AutoTunedPolicy implements SamplerPolicy {
+    /** the bound of the distance of the poisson approximation of the {@link SamplerPolicy#HEURISTIC} policy */
+    public static final double DEFAULT_MAX_DISTANCE = SpaceSimulation.POISSON_ERROR_MARGIN;
+
+    /** regimes of p below 2^-MIN_EXPONENT are merged into a single regime */
+    private static final int MIN_EXPONENT = 64;
+    private static final int P_REGIMES = 4 * MIN_EXPONENT;
+    private static final int N_REGIMES = 63;
+
+    private final double maxDistance;
+    private final CountSampler[] choices = new CountSampler[N_REGIMES * P_REGIMES];
+
+    /**
+     * @param maxDistance the largest total variation distance to the exact binomial distribution that is accepted
+     */
+    public AutoTunedPolicy(double maxDistance) {
+        if (maxDistance < 0) throw new IllegalArgumentException("maxDistance = " + maxDistance);
+        this.maxDistance = maxDistance;
+    }
+
+    @Override
+    public CountSampler select(long n, double p) {
+        if (p <= 0 || p >= 1) return CountSampler.BINOMIAL;
+
+        // the exponent of n, and the exponent and the two highest fraction bits of p
+        int nRegime = 63 - Long.numberOfLeadingZeros(n);
+        int pRegime = (int) (Double.doubleToRawLongBits(p) >>> 50) - 4 * (Double.MAX_EXPONENT - MIN_EXPONENT);
+        pRegime = max(pRegime, 0);
+
+        int index = nRegime * P_REGIMES + pRegime;
+        CountSampler choice = choices[index];
+        if (choice == null) {
+            choice = tune(nRegime, pRegime);
+            choices[index] = choice;
+        }
+        return choice;
+    }
+
+    /** chooses the sampler of a regime */
+    private CountSampler tune(int nRegime, int pRegime) {
+        long nLow = 1L << nRegime;
+        long nHigh = nRegime == 62 ? Long.MAX_VALUE : (1L << (nRegime + 1)) - 1;
+        double pLow = pRegime == 0 ? Double.MIN_NORMAL : regimeStart(pRegime);
+        double pHigh = Math.nextDown(regimeStart(pRegime + 1));
+        long nCenter = (long) Math.sqrt((double) nLow * nHigh);
+        double pCenter = Math.sqrt(pLow * pHigh);
+
+        CountSampler best = CountSampler.BINOMIAL;
+        double bestCost = best.cost(nCenter, pCenter);
+        for (CountSampler sampler : CountSampler.values()) {
+            double cost = sampler.cost(nCenter, pCenter);
+            if (cost >= bestCost) continue;
+
+            double distance = max(
+                    max(sampler.distance(nLow, pLow), sampler.distance(nLow, pHigh)),
+                    max(sampler.distance(nHigh, pLow), sampler.distance(nHigh, pHigh))
+            );
+            if (distance <= maxDistance) {
+                best = sampler;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /** @return the smallest p of the given regime */
+    private static double regimeStart(int pRegime) {
+        long bits = (long) (pRegime + 4 * (Double.MAX_EXPONENT - MIN_EXPONENT)) << 50;
+        return Math.min(Double.longBitsToDouble(bits), 1);
+    }
+
+    @Override
+    public String toString() {
+        return "auto:" + maxDistance;
+    }
+}
@@ -0,0 +1,371 @@
+package Simulation;
+
+import Distributions.ExponentialDistribution;
+import Distributions.RandomStream;
+import Distributions.VectorNormal;
+import Results.DailyResults;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import static java.lang.Math.max;
+
+/**
+ * simulates a batch of independent runs of the same scenario in lockstep, with the state of all runs stored as
+ * primitive arrays (structure of arrays). Each pass over a day performs one step of {@link SpaceSimulation} for all
+ * runs before the next step. The arithmetic of the populations uses the Vector API over the runs, of which the arrays
+ * are padded to a multiple of the vector length, and the draws of the runs for which the sampler policy chooses the
+ * {@link CountSampler#NORMAL} approximation are drawn at once by a {@link VectorNormal}. The other samplers reject
+ * values a varying number of times, and are drawn run by run.
+ * <p>
+ * Every run splits its random stream exactly as a {@link SpaceSimulation}, and draws from its streams in the same order,
+ * hence each run of a batch produces the same results as a {@link SpaceSimulation} with the same stream. The batch
+ * simulates day by day; scenarios with {@link Scenario#maxLeapDays} above one are not supported, as runs with leaps of
+ * different sizes can not proceed in lockstep. The vectorized normal draws are not recorded by the {@link
+ * SimulationMetrics}.
+ * <p>
+ * Requires {@code --add-modules jdk.incubator.vector} at compile time and at run time.
+ */
+public class BatchSimulation implements Runnable {
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+    private final Scenario scenario;
+    private final SamplerPolicy samplerPolicy = SpaceSimulation.getSamplerPolicy();
+    private final int size;
+    /** the length of the arrays, a multiple of the vector length. The state of the padding runs remains zero */
+    private final int lanes;
+    private final int maxTime;
+    private int day = 0;
+
+    /** the populations of each run, see {@link SpaceSimulation} */
+    private final long[] particlesSmall;
+    private final long[] particlesLarge;
+    private final long[] particlesHugh;
+    private final long[] satellitesInOrbit;
+    private final double[] daysUntilNextLaunch;
+    /** the state of the observatories of each run */
+    private final int[] savesLeft;
+    private final double[] daysUntilRefresh;
+
+    /** the number of experiments and the events of the current day of each run */
+    private final long[] experiments;
+    private final long[] collSatWithHugh;
+    private final long[] collSatWithLarge;
+    private final long[] collSatWithSmall;
+    private final long[] collHughWithLarge;
+    private final long[] collHughWithHugh;
+    /** the breakdowns or the falling particles of a single population */
+    private final long[] events;
+
+    /** the runs of a single draw for which the normal approximation is chosen */
+    private final int[] normalRuns;
+    private final VectorNormal normal;
+
+    /** the random streams of each run, one for each kind of event */
+    private final RandomStream[] dangerRand;
+    private final RandomStream[] collisionRand;
+    private final RandomStream[] breakdownRand;
+    private final RandomStream[] fallRand;
+    private final RandomStream[] shreddingRandLarge;
+    private final RandomStream[] shreddingRandSmall;
+    private final RandomStream[] launchRand;
+
+    private final DailyResults[] results;
+
+    /**
+     * @param scenario the model parameters of all runs
+     * @param runTime  number of results of each run, equal to the number of simulated days plus one
+     * @param rand     the random stream of each run, of which substreams are split as by a {@link SpaceSimulation}
+     * @param results  for each run, receives the state of every simulated day
+     */
+    public BatchSimulation(Scenario scenario, int runTime, RandomStream[] rand, DailyResults[] results) {
+        if (rand.length != results.length)
+            throw new IllegalArgumentException(rand.length + " streams for " + results.length + " runs");
+        if (scenario.maxLeapDays > 1)
+            throw new IllegalArgumentException("a batch can not leap, maxLeapDays = " + scenario.maxLeapDays);
+
+        this.scenario = scenario;
+        this.results = results;
+        size = results.length;
+        lanes = LONGS.loopBound(size + LONGS.length() - 1);
+        maxTime = runTime - 1;
+
+        particlesSmall = new long[lanes];
+        particlesLarge = new long[lanes];
+        particlesHugh = new long[lanes];
+        satellitesInOrbit = new long[lanes];
+        daysUntilNextLaunch = new double[size];
+        savesLeft = new int[size];
+        daysUntilRefresh = new double[size];
+
+        experiments = new long[lanes];
+        collSatWithHugh = new long[lanes];
+        collSatWithLarge = new long[lanes];
+        collSatWithSmall = new long[lanes];
+        collHughWithLarge = new long[lanes];
+        collHughWithHugh = new long[lanes];
+        events = new long[lanes];
+
+        normalRuns = new int[size];
+        normal = new VectorNormal(size);
+
+        dangerRand = new RandomStream[size];
+        collisionRand = new RandomStream[size];
+        breakdownRand = new RandomStream[size];
+        fallRand = new RandomStream[size];
+        shreddingRandLarge = new RandomStream[size];
+        shreddingRandSmall = new RandomStream[size];
+        launchRand = new RandomStream[size];
+
+        for (int r = 0; r < size; r++) {
+            // in the order of SpaceSimulation
+            dangerRand[r] = rand[r].split();
+            collisionRand[r] = rand[r].split();
+            breakdownRand[r] = rand[r].split();
+            fallRand[r] = rand[r].split();
+            shreddingRandLarge[r] = rand[r].split();
+            shreddingRandSmall[r] = rand[r].split();
+            launchRand[r] = rand[r].split();
+
+            particlesSmall[r] = scenario.initialSmallParticles;
+            particlesLarge[r] = scenario.initialLargeParticles;
+            particlesHugh[r] = scenario.initialHughParticles;
+            satellitesInOrbit[r] = scenario.initialSatellites;
+            savesLeft[r] = scenario.nOfObservatories;
+        }
+        storeResults();
+    }
+
+    /** simulates all days of all runs */
+    public void run() {
+        while (!isFinished()) {
+            nextDay();
+        }
+        for (DailyResults r : results) {
+            r.finish();
+        }
+    }
+
+    /** @return whether all days of the runs have been simulated */
+    public boolean isFinished() {
+        return day >= maxTime;
+    }
+
+    /** @return the number of runs of this batch */
+    public int size() {
+        return size;
+    }
+
+    /** simulates a single day of every run, and stores the results */
+    public void nextDay() {
+        progressOneDay();
+        refreshObservatories();
+        checkPopulations();
+        storeResults();
+        day++;
+    }
+
+    /** one {@link SpaceSimulation} day of every run, of which each step is executed for all runs at once */
+    private void progressOneDay() {
+        final double probDangerPerParticle = scenario.probDangerPerParticle;
+        final double collisionByDangerRisk = scenario.collisionByDangerRisk;
+        final double probDangerCollision = probDangerPerParticle * collisionByDangerRisk;
+        final long[] hugh = particlesHugh;
+        final long[] sats = satellitesInOrbit;
+        final long[] large = particlesLarge;
+        final long[] small = particlesSmall;
+
+        // different types of collisions
+        multiply(hugh, sats, experiments);
+        draw(SamplerSite.SAT_HUGH_DANGER, probDangerPerParticle, dangerRand, collSatWithHugh);
+        multiply(large, sats, experiments);
+        draw(SamplerSite.SAT_LARGE_DANGER, probDangerPerParticle, dangerRand, collSatWithLarge);
+        multiply(small, sats, experiments);
+        draw(SamplerSite.SAT_SMALL_DANGER, probDangerPerParticle, dangerRand, collSatWithSmall);
+        multiply(large, hugh, experiments);
+        draw(SamplerSite.HUGH_LARGE_COLLISION, probDangerCollision, dangerRand, collHughWithLarge);
+        for (int r = 0; r < lanes; r += LONGS.length()) {
+            LongVector h = LongVector.fromArray(LONGS, hugh, r);
+            h.mul(h.sub(1)).intoArray(experiments, r);
+        }
+        draw(SamplerSite.HUGH_HUGH_COLLISION, probDangerCollision, dangerRand, collHughWithHugh);
+
+        for (int r = 0; r < lanes; r += LONGS.length()) {
+            LongVector.fromArray(LONGS, collHughWithHugh, r).mul(2)
+                    .min(LongVector.fromArray(LONGS, hugh, r))
+                    .intoArray(collHughWithHugh, r);
+        }
+
+        // the observatories try to resolve plausible collisions
+        for (int r = 0; r < size; r++) experiments[r] = save(r, collSatWithHugh[r]);
+        draw(SamplerSite.SAT_HUGH_COLLISION, collisionByDangerRisk, collisionRand, collSatWithHugh);
+        for (int r = 0; r < size; r++) experiments[r] = save(r, collSatWithLarge[r]);
+        draw(SamplerSite.SAT_LARGE_COLLISION, collisionByDangerRisk, collisionRand, collSatWithLarge);
+        System.arraycopy(collSatWithSmall, 0, experiments, 0, lanes);
+        draw(SamplerSite.SAT_SMALL_COLLISION, collisionByDangerRisk, collisionRand, collSatWithSmall);
+
+        // process effects of collisions. The shredding of each run draws in the order of SpaceSimulation
+        for (int r = 0; r < size; r++) {
+            shredIntoParticles(r, collSatWithHugh[r] * 2);
+            results[r].addLostSatellites((int) collSatWithHugh[r]);
+            shredIntoParticles(r, collHughWithHugh[r] * 2);
+            shredIntoParticles(r, collHughWithLarge[r]);
+            shredIntoParticles(r, collSatWithLarge[r]);
+            results[r].addLostSatellites((int) collSatWithLarge[r]);
+            results[r].addLostSatellites((int) collSatWithSmall[r]);
+        }
+        for (int r = 0; r < lanes; r += LONGS.length()) {
+            LongVector withHugh = LongVector.fromArray(LONGS, collSatWithHugh, r);
+            LongVector withLarge = LongVector.fromArray(LONGS, collSatWithLarge, r);
+            LongVector withSmall = LongVector.fromArray(LONGS, collSatWithSmall, r);
+            LongVector hughWithHugh = LongVector.fromArray(LONGS, collHughWithHugh, r).mul(2).max(0);
+            LongVector hughWithLarge = LongVector.fromArray(LONGS, collHughWithLarge, r);
+
+            LongVector.fromArray(LONGS, sats, r).sub(withHugh).sub(withLarge).sub(withSmall).intoArray(sats, r);
+            LongVector.fromArray(LONGS, hugh, r).sub(withHugh).sub(hughWithHugh).sub(hughWithLarge).add(withSmall)
+                    .intoArray(hugh, r);
+        }
+
+        System.arraycopy(sats, 0, experiments, 0, lanes);
+        draw(SamplerSite.SAT_BREAKDOWN, scenario.satBreakdownProb, breakdownRand, events);
+        for (int r = 0; r < lanes; r += LONGS.length()) {
+            LongVector broken = LongVector.fromArray(LONGS, events, r);
+            LongVector.fromArray(LONGS, sats, r).sub(broken).intoArray(sats, r);
+            LongVector.fromArray(LONGS, hugh, r).add(broken).intoArray(hugh, r);
+        }
+
+        // particles falling back into the atmosphere
+        System.arraycopy(hugh, 0, experiments, 0, lanes);
+        draw(SamplerSite.HUGH_FALL, scenario.fallProbLarge, fallRand, events);
+        subtract(hugh, events);
+        System.arraycopy(large, 0, experiments, 0, lanes);
+        draw(SamplerSite.LARGE_FALL, scenario.fallProbSmall, fallRand, events);
+        subtract(large, events);
+        System.arraycopy(small, 0, experiments, 0, lanes);
+        draw(SamplerSite.SMALL_FALL, scenario.fallProbSmall, fallRand, events);
+        subtract(small, events);
+
+        // launching new satellites
+        for (int r = 0; r < size; r++) {
+            daysUntilNextLaunch[r] = max(0, daysUntilNextLaunch[r] - 1);
+            int launches = 0;
+            while (daysUntilNextLaunch[r] < 1 && sats[r] < scenario.satellitesRequiredInOrbit) {
+                sats[r]++;
+                launches++;
+                daysUntilNextLaunch[r] += (1.0 / scenario.launchesPerDay);
+            }
+            hugh[r] += launches * scenario.launchStages;
+            large[r] += ExponentialDistribution.sum(launches, 1.0 / scenario.launchPartMeanLarge, launchRand[r]);
+        }
+    }
+
+    /** out = a * b for every run */
+    private void multiply(long[] a, long[] b, long[] out) {
+        for (int r = 0; r < lanes; r += LONGS.length()) {
+            LongVector.fromArray(LONGS, a, r).mul(LongVector.fromArray(LONGS, b, r)).intoArray(out, r);
+        }
+    }
+
+    /** population -= removed for every run */
+    private void subtract(long[] population, long[] removed) {
+        for (int r = 0; r < lanes; r += LONGS.length()) {
+            LongVector.fromArray(LONGS, population, r).sub(LongVector.fromArray(LONGS, removed, r)).intoArray(population, r);
+        }
+    }
+
+    /**
+     * draws the events of every run, of {@link #experiments} experiments with the given probability. The runs for
+     * which the normal approximation is chosen are drawn together afterwards, which leaves the order of the draws of
+     * each stream unchanged
+     */
+    private void draw(SamplerSite site, double p, RandomStream[] streams, long[] events) {
+        int nOfNormal = 0;
+        for (int r = 0; r < size; r++) {
+            long n = experiments[r];
+            if (n <= 0) {
+                events[r] = SpaceSimulation.sample(samplerPolicy, site, n, p, streams[r]);
+                continue;
+            }
+
+            CountSampler sampler = samplerPolicy.select(n, p);
+            if (sampler == CountSampler.NORMAL) {
+                normalRuns[nOfNormal++] = r;
+            } else {
+                events[r] = SpaceSimulation.sample(sampler, site, n, p, streams[r]);
+            }
+        }
+        if (nOfNormal > 0) normal.binomial(experiments, p, streams, normalRuns, nOfNormal, events);
+    }
+
+    /** produce and add small and large particles resulting from shredding satellites of run r */
+    private void shredIntoParticles(int r, long nOfCollisions) {
+        if (nOfCollisions <= 0) return;
+        particlesLarge[r] += ExponentialDistribution.sum((int) nOfCollisions, 1.0 / scenario.shreddingMeanLarge, shreddingRandLarge[r]);
+        particlesSmall[r] += ExponentialDistribution.sum((int) nOfCollisions, 1.0 / scenario.shreddingMeanSmall, shreddingRandSmall[r]);
+    }
+
+    /**
+     * the observatories of run r try to save the satellites
+     * @param number how many dangers there are
+     * @return how many dangers are left
+     */
+    private long save(int r, long number) {
+        if (savesLeft[r] > number) {
+            savesLeft[r] -= number;
+            results[r].addSaves((int) number);
+            return 0;
+
+        } else {
+            number -= savesLeft[r];
+            results[r].addSaves(savesLeft[r]);
+            savesLeft[r] = 0;
+            return number;
+        }
+    }
+
+    private void refreshObservatories() {
+        for (int r = 0; r < size; r++) {
+            daysUntilRefresh[r] = max(0, daysUntilRefresh[r] - 1);
+            while (daysUntilRefresh[r] < 1 && savesLeft[r] < scenario.nOfObservatories) {
+                savesLeft[r]++;
+                daysUntilRefresh[r] += (1.0 / scenario.observatorySavesPerDay);
+            }
+        }
+    }
+
+    private void checkPopulations() {
+        for (int r = 0; r < lanes; r += LONGS.length()) {
+            // the sign bit of the union is set if any of the populations is negative
+            LongVector union = LongVector.fromArray(LONGS, satellitesInOrbit, r)
+                    .or(LongVector.fromArray(LONGS, particlesSmall, r))
+                    .or(LongVector.fromArray(LONGS, particlesLarge, r))
+                    .or(LongVector.fromArray(LONGS, particlesHugh, r));
+            if (union.lt(0).anyTrue()) throw negativePopulation();
+        }
+    }
+
+    private IllegalStateException negativePopulation() {
+        int r = 0;
+        while (satellitesInOrbit[r] >= 0 && particlesSmall[r] >= 0 && particlesLarge[r] >= 0 && particlesHugh[r] >= 0) {
+            r++;
+        }
+        return new IllegalStateException(String.format(
+                "Negative amount detected in run %d after %d days:\n" +
+                        "sat in orbit: %d\n" +
+                        "hugh particles: %d\n" +
+                        "large particles: %d\n" +
+                        "small particles: %d",
+                r, day,
+                satellitesInOrbit[r],
+                particlesHugh[r],
+                particlesLarge[r],
+                particlesSmall[r]
+        ));
+    }
+
+    private void storeResults() {
+        for (int r = 0; r < size; r++) {
+            int flightsQueued = scenario.satellitesRequiredInOrbit - (int) satellitesInOrbit[r];
+            results[r].addResults(particlesSmall[r], particlesLarge[r], (int) particlesHugh[r], (int) satellitesInOrbit[r], flightsQueued);
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package Simulation;
+
+import Distributions.RandomStream;
+import Results.Checkpointable;
+import Results.DailyResults;
+import Results.MultiResultCollector;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * periodically saves the progress of a fixed set of runs to a compressed binary file, such that an interrupted set of
+ * runs can be resumed with {@link #resume(Path, MultiResultCollector)}. A checkpoint holds the collected results of all
+ * finished runs, the indices of these runs, and the complete state of every unfinished run, including its random
+ * streams. A resumed set of runs produces the same results as an uninterrupted one.
+ * <p>
+ * To save a consistent state, all active runs pause between two steps while the checkpoint is written. The collector
+ * and the results of each run must be {@link Checkpointable}, such as the {@link Results.StreamingResultCollector}.
+ */
+public class Checkpointer {
+    private static final int MAGIC = 0x53444350;
+    private static final int VERSION = 2;
+
+    private final Path file;
+    private final Scenario scenario;
+    private final int nOfRuns;
+    private final int runTime;
+    private final long masterSeed;
+    private final boolean antithetic;
+    private final MultiResultCollector collector;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    /** if true, active runs pause at their next day */
+    private volatile boolean requested = false;
+    private final Map<Integer, ActiveRun> active = new HashMap<>();
+    private int nOfPaused = 0;
+    private final BitSet completed;
+    /** states of the runs that were unfinished when the resumed checkpoint was written, by run index */
+    private final Map<Integer, byte[]> savedRuns;
+
+    private ScheduledExecutorService timer;
+
+    /**
+     * prepares checkpoints of a new set of runs. Parameters are equal to {@link RunScheduler#runAll(Scenario, int,
+     * int, long, MultiResultCollector, Results.ProgressBar)}
+     * @param file       the file the checkpoints are written to
+     * @param antithetic whether the runs are executed in antithetic pairs, see {@link RunScheduler}
+     */
+    public Checkpointer(
+            Path file, Scenario scenario, int nOfRuns, int runTime, long masterSeed, boolean antithetic,
+            MultiResultCollector collector
+    ) {
+        this(file, scenario, nOfRuns, runTime, masterSeed, antithetic, collector, new BitSet(nOfRuns), new HashMap<>());
+    }
+
+    private Checkpointer(
+            Path file, Scenario scenario, int nOfRuns, int runTime, long masterSeed, boolean antithetic,
+            MultiResultCollector collector, BitSet completed, Map<Integer, byte[]> savedRuns
+    ) {
+        if (!(collector instanceof Checkpointable)) {
+            throw new IllegalArgumentException(collector.getClass().getSimpleName() + " can not be checkpointed");
+        }
+        this.file = file;
+        this.scenario = scenario;
+        this.nOfRuns = nOfRuns;
+        this.runTime = runTime;
+        this.masterSeed = masterSeed;
+        this.antithetic = antithetic;
+        this.collector = collector;
+        this.completed = completed;
+        this.savedRuns = savedRuns;
+    }
+
+    /**
+     * reads the given checkpoint, and restores the results of its finished runs into the given collector
+     * @param file      a file written by a checkpointer
+     * @param collector a new collector, created in the same way as the collector of the checkpointed runs
+     * @return a checkpointer that continues the checkpointed set of runs
+     */
+    public static Checkpointer resume(Path file, MultiResultCollector collector) throws IOException {
+        if (!(collector instanceof Checkpointable)) {
+            throw new IllegalArgumentException(collector.getClass().getSimpleName() + " can not be checkpointed");
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC) throw new IOException(file + " is not a checkpoint");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("unsupported checkpoint version " + version);
+
+            long masterSeed = in.readLong();
+            int nOfRuns = in.readInt();
+            int runTime = in.readInt();
+            boolean antithetic = in.readBoolean();
+            Scenario scenario = Scenario.read(in);
+
+            String collectorType = in.readUTF();
+            if (!collectorType.equals(collector.getClass().getName()))
+                throw new IOException("the checkpoint was written by a " + collectorType + ", not by a " + collector.getClass().getName());
+            ((Checkpointable) collector).readState(in);
+
+            long[] words = new long[in.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+
+            Map<Integer, byte[]> savedRuns = new HashMap<>();
+            int nOfSaved = in.readInt();
+            for (int i = 0; i < nOfSaved; i++) {
+                int runIndex = in.readInt();
+                byte[] state = new byte[in.readInt()];
+                in.readFully(state);
+                savedRuns.put(runIndex, state);
+            }
+
+            return new Checkpointer(
+                    file, scenario, nOfRuns, runTime, masterSeed, antithetic, collector, BitSet.valueOf(words), savedRuns
+            );
+        }
+    }
+
+    /** writes a checkpoint after every interval, until {@link #stop()} is called */
+    public void start(long intervalMillis) {
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                save();
+            } catch (IOException ex) {
+                // the runs continue, a later checkpoint may succeed
+                System.err.println("\nCould not write checkpoint " + file + ": " + ex);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** stops writing checkpoints, and waits for a checkpoint that is being written */
+    public void stop() throws InterruptedException {
+        if (timer == null) return;
+        timer.shutdown();
+        timer.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * pauses all active runs at their next day, and writes a checkpoint. The file is replaced atomically, such that an
+     * interruption while writing leaves the previous checkpoint intact.
+     */
+    public void save() throws IOException {
+        lock.lock();
+        try {
+            requested = true;
+            while (nOfPaused < active.size()) {
+                changed.awaitUninterruptibly();
+            }
+
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                write(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } finally {
+            requested = false;
+            changed.signalAll();
+            lock.unlock();
+        }
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(masterSeed);
+        out.writeInt(nOfRuns);
+        out.writeInt(runTime);
+        out.writeBoolean(antithetic);
+        scenario.write(out);
+
+        out.writeUTF(collector.getClass().getName());
+        ((Checkpointable) collector).writeState(out);
+
+        long[] words = completed.toLongArray();
+        out.writeInt(words.length);
+        for (long w : words) {
+            out.writeLong(w);
+        }
+
+        out.writeInt(active.size());
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (Map.Entry<Integer, ActiveRun> entry : active.entrySet()) {
+            buffer.reset();
+            DataOutputStream runOut = new DataOutputStream(buffer);
+            ActiveRun run = entry.getValue();
+            ((Checkpointable) run.results).writeState(runOut);
+            run.simulation.writeState(runOut);
+            runOut.flush();
+
+            out.writeInt(entry.getKey());
+            out.writeInt(buffer.size());
+            buffer.writeTo(out);
+        }
+    }
+
+    /**
+     * executes the given run on the current thread, continuing from its saved state if it was unfinished in the
+     * resumed checkpoint. The run pauses whenever a checkpoint is written.
+     * @param runIndex the index of the run
+     * @param rand     the random stream of the run, ignored if the run continues from a saved state
+     */
+    public void execute(int runIndex, RandomStream rand) {
+        SimulationMetrics.runStarted();
+        DailyResults results = collector.newRun(runIndex, runTime);
+        SpaceSimulation sim;
+
+        byte[] saved;
+        synchronized (savedRuns) {
+            saved = savedRuns.remove(runIndex);
+        }
+
+        if (saved == null) {
+            sim = new SpaceSimulation(scenario, runTime, rand, results);
+        } else {
+            try {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(saved));
+                ((Checkpointable) results).readState(in);
+                sim = SpaceSimulation.restore(scenario, runTime, in, results);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("state of run " + runIndex + " is corrupt", ex);
+            }
+        }
+
+        begin(runIndex, sim, results);
+        int startDay = sim.getDay();
+        boolean success = false;
+        try {
+            while (!sim.isFinished()) {
+                if (requested) pause();
+                sim.nextStep();
+            }
+            results.finish();
+            SimulationMetrics.runFinished(sim.getDay() - startDay);
+            success = true;
+
+        } finally {
+            end(runIndex, success);
+        }
+    }
+
+    private void begin(int runIndex, SpaceSimulation sim, DailyResults results) {
+        lock.lock();
+        try {
+            while (requested) {
+                changed.awaitUninterruptibly();
+            }
+            active.put(runIndex, new ActiveRun(sim, results));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void pause() {
+        lock.lock();
+        try {
+            nOfPaused++;
+            changed.signalAll();
+            while (requested) {
+                changed.awaitUninterruptibly();
+            }
+            nOfPaused--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void end(int runIndex, boolean success) {
+        lock.lock();
+        try {
+            active.remove(runIndex);
+            if (success) completed.set(runIndex);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return whether the given run has finished, possibly before resuming */
+    public boolean isCompleted(int runIndex) {
+        lock.lock();
+        try {
+            return completed.get(runIndex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return the number of finished runs, including the runs finished before resuming */
+    public int nOfCompleted() {
+        lock.lock();
+        try {
+            return completed.cardinality();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Scenario getScenario() {
+        return scenario;
+    }
+
+    public int getNOfRuns() {
+        return nOfRuns;
+    }
+
+    public int getRunTime() {
+        return runTime;
+    }
+
+    public long getMasterSeed() {
+        return masterSeed;
+    }
+
+    public boolean isAntithetic() {
+        return antithetic;
+    }
+
+    /** a run that has started, but not yet finished */
+    private static class ActiveRun {
+        final SpaceSimulation simulation;
+        final DailyResults results;
+
+        ActiveRun(SpaceSimulation simulation, DailyResults results) {
+            this.simulation = simulation;
+            this.results = results;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package Simulation;
+
+import Distributions.BinomialDistribution;
+import Distributions.NormalDistribution;
+import Distributions.PoissonDistribution;
+import Distributions.RandomStream;
+
+import static Distributions.Distribution.randomToInt;
+import static java.lang.Math.*;
+
+/**
+ * the samplers of the number of successes of n experiments with probability p, of which a {@link SamplerPolicy} chooses
+ * one per call. Besides sampling, each sampler gives an estimate of its cost and its total variation distance to the
+ * exact binomial distribution, such that the cheapest sampler can be chosen that is accurate enough.
+ * <p>
+ * The costs are fixed estimates in nanoseconds, measured with the {@link Benchmarks.SimulationBenchmarks} on a single
+ * core. They are not measured at run time, such that the choices of a policy, and thus the results of a run, do not
+ * depend on the load of the machine.
+ */
+public enum CountSampler {
+    /** the normal distribution with the same mean and variance, rounded randomly to an integer in [0, n] */
+    NORMAL {
+        @Override
+        public int sample(long n, double p, RandomStream rand) {
+            return sampleNormal(n, p, rand);
+        }
+
+        @Override
+        public double cost(long n, double p) {
+            return 75;
+        }
+
+        @Override
+        void distribution(long n, double p, long lo, double[] out) {
+            double mu = n * p;
+            double sigma = sqrt(mu * (1 - p));
+            double spread = WINDOW_SIGMAS * sigma + 10;
+            long from = (long) floor(mu - spread);
+            double[] values = new double[(int) (ceil(mu + spread) - from + 1)];
+
+            // randomToInt spreads the mass of x over floor(x) and floor(x) + 1, with a weight that is linear in x.
+            // The mass of every unit interval is integrated with 5-point Gauss-Legendre, in pieces of at most sigma
+            int pieces = (int) ceil(1 / min(sigma, 1));
+            double half = 0.5 / pieces;
+            for (int i = 0; i < values.length - 1; i++) {
+                long j = from + i;
+                for (int s = 0; s < pieces; s++) {
+                    double a = j + (double) s / pieces;
+                    for (int g = 0; g < GAUSS_NODES.length; g++) {
+                        double x = a + half * (1 + GAUSS_NODES[g]);
+                        double z = (x - mu) / sigma;
+                        double mass = half * GAUSS_WEIGHTS[g] * exp(-0.5 * z * z) / (sigma * sqrt(2 * PI));
+                        values[i] += mass * (j + 1 - x);
+                        values[i + 1] += mass * (x - j);
+                    }
+                }
+            }
+            // negative values are rounded to 0, as are values in (-1, 0)
+            clamp(n, from, values, lo, out);
+        }
+
+        @Override
+        public double distance(long n, double p) {
+            // the mass is too concentrated to integrate, and poisson is always cheaper here
+            if (n * p * (1 - p) < MIN_NORMAL_SIGMA * MIN_NORMAL_SIGMA) return 1;
+            return super.distance(n, p);
+        }
+    },
+
+    /** the poisson distribution with mean n * p, limited to n. Its distance to the binomial is less than p */
+    POISSON {
+        @Override
+        public int sample(long n, double p, RandomStream rand) {
+            return samplePoisson(n, p, rand);
+        }
+
+        @Override
+        public double cost(long n, double p) {
+            double lambda = n * p;
+            // inversion below lambda 10, transformed rejection above
+            return lambda < 10 ? 20 + 12 * lambda : 130;
+        }
+
+        @Override
+        void distribution(long n, double p, long lo, double[] out) {
+            double lambda = n * p;
+            double spread = WINDOW_SIGMAS * sqrt(lambda) + 10;
+            long from = (long) max(0, floor(lambda - spread));
+            double[] values = new double[(int) (ceil(lambda + spread) - from + 1)];
+            // the ratio of successive probabilities is lambda / (k + 1)
+            fromMode(from, values, (long) lambda, k -> lambda / (k + 1), k -> k / lambda);
+            clamp(n, from, values, lo, out);
+        }
+    },
+
+    /** the exact binomial distribution */
+    BINOMIAL {
+        @Override
+        public int sample(long n, double p, RandomStream rand) {
+            return sampleBinomial(n, p, rand);
+        }
+
+        @Override
+        public double cost(long n, double p) {
+            double mean = n * min(p, 1 - p);
+            // inversion up to an expectation of 30, BTPE above, of which the setup is amortized for large n
+            if (mean <= 30) return 40 + 11 * mean;
+            return mean < 1000 ? 150 : 80;
+        }
+
+        @Override
+        void distribution(long n, double p, long lo, double[] out) {
+            double odds = p / (1 - p);
+            long mode = min((long) ((n + 1) * p), n);
+            fromMode(lo, out, mode, k -> k >= n ? 0 : (n - k) / (k + 1.0) * odds, k -> k / (n - k + 1.0) / odds);
+        }
+
+        @Override
+        public double distance(long n, double p) {
+            return 0;
+        }
+    };
+
+    /**
+     * above this standard deviation, the distance is computed for the number of experiments with this standard
+     * deviation. The distance of the normal approximation decreases with the standard deviation, and that of the
+     * poisson approximation is close to its limit.
+     */
+    private static final double MAX_EXACT_SIGMA = 300;
+    /** below this standard deviation, the normal approximation is not considered accurate */
+    private static final double MIN_NORMAL_SIGMA = 0.1;
+    /** the number of standard deviations around the mean for which the probabilities are computed */
+    private static final double WINDOW_SIGMAS = 12;
+
+    private static final double[] GAUSS_NODES = {
+            -0.9061798459386640, -0.5384693101056831, 0, 0.5384693101056831, 0.9061798459386640
+    };
+    private static final double[] GAUSS_WEIGHTS = {
+            0.2369268850561891, 0.4786286704993665, 0.5688888888888889, 0.4786286704993665, 0.2369268850561891
+    };
+
+    /**
+     * returns a sample of the number of successes of n experiments with probability p
+     * @param n the number of experiments, at least 1
+     */
+    public abstract int sample(long n, double p, RandomStream rand);
+
+    /**
+     * returns a sample of the given sampler, equal to {@code sampler.sample(n, p, rand)}. The daily step of a run calls
+     * every sampler, hence a call of {@link #sample(long, double, RandomStream)} sees three receivers and is not
+     * inlined by the JIT. The switch turns it into one static call per sampler, each of which can be inlined.
+     * @param n the number of experiments, at least 1
+     */
+    static int draw(CountSampler sampler, long n, double p, RandomStream rand) {
+        switch (sampler) {
+            case NORMAL:
+                return sampleNormal(n, p, rand);
+            case POISSON:
+                return samplePoisson(n, p, rand);
+            default:
+                return sampleBinomial(n, p, rand);
+        }
+    }
+
+    private static int sampleNormal(long n, double p, RandomStream rand) {
+        double est = NormalDistribution.get(n * p, sqrt(n * p * (1 - p)), rand);
+        return (int) min(max(randomToInt(est, rand), 0), n);
+    }
+
+    private static int samplePoisson(long n, double p, RandomStream rand) {
+        int est = PoissonDistribution.get(n * p, rand);
+        return (int) min(est, n);
+    }
+
+    private static int sampleBinomial(long n, double p, RandomStream rand) {
+        return (int) BinomialDistribution.get(n, p, rand);
+    }
+
+    /** @return the estimated time of a call of {@link #sample(long, double, RandomStream)} in nanoseconds */
+    public abstract double cost(long n, double p);
+
+    /**
+     * writes the probabilities of the values [lo, lo + out.length) of this sampler to out, which is initially zero.
+     * The window contains all but a negligible part of the probability mass.
+     */
+    abstract void distribution(long n, double p, long lo, double[] out);
+
+    /**
+     * computes the total variation distance between this sampler and the binomial distribution of n experiments with
+     * probability p: the largest difference between the probabilities of any set of outcomes. This takes time linear in
+     * the standard deviation, hence it is meant to be cached by a {@link SamplerPolicy}.
+     * @param n the number of experiments, at least 1
+     * @param p the probability of success, in (0, 1)
+     */
+    public double distance(long n, double p) {
+        if (n * p * (1 - p) > MAX_EXACT_SIGMA * MAX_EXACT_SIGMA) {
+            n = (long) (MAX_EXACT_SIGMA * MAX_EXACT_SIGMA / (p * (1 - p)));
+        }
+        double mean = n * p;
+        double spread = WINDOW_SIGMAS * sqrt(max(mean, 1)) + 10;
+        long lo = (long) max(0, floor(mean - spread));
+        long hi = (long) min(n, ceil(mean + spread));
+
+        double[] exact = new double[(int) (hi - lo + 1)];
+        double[] approx = new double[exact.length];
+        BINOMIAL.distribution(n, p, lo, exact);
+        distribution(n, p, lo, approx);
+
+        double sum = 0;
+        for (int i = 0; i < exact.length; i++) {
+            sum += abs(exact[i] - approx[i]);
+        }
+        return sum / 2;
+    }
+
+    private interface Ratio {
+        double at(long k);
+    }
+
+    /**
+     * computes a distribution from the ratios of successive probabilities, starting at the mode, and normalizes it
+     * over the window
+     * @param up   the ratio P(k + 1) / P(k)
+     * @param down the ratio P(k - 1) / P(k)
+     */
+    private static void fromMode(long lo, double[] out, long mode, Ratio up, Ratio down) {
+        long hi = lo + out.length - 1;
+        mode = min(max(mode, lo), hi);
+        int m = (int) (mode - lo);
+        out[m] = 1;
+        for (int i = m; i < out.length - 1; i++) {
+            out[i + 1] = out[i] * up.at(lo + i);
+        }
+        for (int i = m; i > 0; i--) {
+            out[i - 1] = out[i] * down.at(lo + i);
+        }
+
+        double sum = 0;
+        for (double v : out) {
+            sum += v;
+        }
+        for (int i = 0; i < out.length; i++) {
+            out[i] /= sum;
+        }
+    }
+
+    /**
+     * adds the probabilities of the values [from, from + values.length) to the window of out starting at lo, after
+     * limiting the values to [0, n] as the samplers do
+     */
+    private static void clamp(long n, long from, double[] values, long lo, double[] out) {
+        for (int i = 0; i < values.length; i++) {
+            long k = min(max(from + i, 0), n);
+            if (k >= lo && k < lo + out.length) out[(int) (k - lo)] += values[i];
+        }
+    }
+}
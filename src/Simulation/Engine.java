@@ -0,0 +1,100 @@
+package Simulation;
+
+import Distributions.RandomStream;
+import Results.DailyResults;
+
+/**
+ * creates the simulation of a single run, such that the {@link RunScheduler} can execute the runs of every model in the
+ * same way. An engine must be deterministic, such that runs with the same random stream produce identical results.
+ */
+public interface Engine {
+    /** the number of size bins per decade of the spectrum engine, unless given */
+    int DEFAULT_BINS_PER_DECADE = 12;
+
+    /** the daily steps of {@link SpaceSimulation}, the only engine that can be checkpointed or batched */
+    Engine DAILY = new Engine() {
+        @Override
+        public Runnable create(Scenario scenario, int runTime, RandomStream rand, DailyResults results) {
+            return new SpaceSimulation(scenario, runTime, rand, results);
+        }
+
+        @Override
+        public String toString() {
+            return "daily";
+        }
+    };
+
+    /** every event of the continuous-time process of {@link EventSimulation} */
+    Engine EVENT = new Engine() {
+        @Override
+        public Runnable create(Scenario scenario, int runTime, RandomStream rand, DailyResults results) {
+            return new EventSimulation(scenario, runTime, rand, results);
+        }
+
+        @Override
+        public String toString() {
+            return "event";
+        }
+    };
+
+    /**
+     * @param scenario the model parameters of the run
+     * @param runTime  number of results of the run, equal to the number of simulated days plus one
+     * @param rand     the random stream of the run
+     * @param results  receives the results of every simulated day
+     * @return the simulation of the run, which is executed by calling {@link Runnable#run()}
+     */
+    Runnable create(Scenario scenario, int runTime, RandomStream rand, DailyResults results);
+
+    /**
+     * @param shellWidth the altitude range of each shell in km
+     * @return an engine of {@link ShellSimulation} on the shells of {@link ShellModel#leo(double)}
+     */
+    static Engine shells(double shellWidth) {
+        ShellModel shells = ShellModel.leo(shellWidth);
+        return new Engine() {
+            @Override
+            public Runnable create(Scenario scenario, int runTime, RandomStream rand, DailyResults results) {
+                // the runs already occupy every core of the scheduler
+                return new ShellSimulation(scenario, shells, runTime, rand, false, results);
+            }
+
+            @Override
+            public String toString() {
+                return "shells:" + shellWidth;
+            }
+        };
+    }
+
+    /**
+     * @param binsPerDecade the number of size bins per decade of the spectrum
+     * @return an engine of {@link SpectrumSimulation} on the spectrum of {@link SizeSpectrum#nasa(int)}
+     */
+    static Engine spectrum(int binsPerDecade) {
+        SizeSpectrum spectrum = SizeSpectrum.nasa(binsPerDecade);
+        return new Engine() {
+            @Override
+            public Runnable create(Scenario scenario, int runTime, RandomStream rand, DailyResults results) {
+                return new SpectrumSimulation(scenario, spectrum, runTime, rand, results);
+            }
+
+            @Override
+            public String toString() {
+                return "spectrum:" + binsPerDecade;
+            }
+        };
+    }
+
+    /**
+     * parses an engine as given on the command line: "daily", "event", "spectrum" with the default number of bins,
+     * "spectrum:[bins per decade]" or "shells:[km]"
+     */
+    static Engine parse(String name) {
+        if (name.equals("daily")) return DAILY;
+        if (name.equals("event")) return EVENT;
+        if (name.equals("spectrum")) return spectrum(DEFAULT_BINS_PER_DECADE);
+        if (name.startsWith("spectrum:")) return spectrum(Integer.parseInt(name.substring(9)));
+        if (name.startsWith("shells:")) return shells(Double.parseDouble(name.substring(7)));
+        throw new IllegalArgumentException("Unknown engine " + name);
+    }
+}
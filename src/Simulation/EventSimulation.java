@@ -0,0 +1,338 @@
+package Simulation;
+
+import Distributions.Distribution;
+import Distributions.ExponentialDistribution;
+import Distributions.RandomStream;
+import Results.DailyResults;
+
+/**
+ * simulates the same model as {@link SpaceSimulation}, but as a continuous-time Markov process instead of in daily
+ * steps. Every collision, breakdown and decay is a separate event, and launches and observatory refreshes occur at the
+ * moment they are due. Events are executed with the next-reaction method (Gibson and Bruck, 2000): every kind of event
+ * has its own time of next occurrence in an {@link IndexedEventQueue}, and after an event only the rates that depend on
+ * the changed populations are updated, reusing the remaining waiting time of each event.
+ * <p>
+ * The daily probabilities of the scenario are converted to rates with the same chance of at least one event per day. A
+ * danger is resolved by an observatory as long as it has saves left, otherwise it results in a collision with the
+ * collision-by-danger risk. A collision of two non-functional satellites removes both of them, where a daily step
+ * removes twice as many. The state at the end of each day is written to the results, as by {@link SpaceSimulation}.
+ * <p>
+ * There are no per-day caps on the number of events, but the number of events grows with the populations, hence long
+ * runs with large particle counts are much more expensive than with daily steps.
+ */
+public class EventSimulation implements Runnable {
+    /** events of which the rate depends on the state */
+    private static final int DANGER_SAVED = 0;
+    private static final int SAT_WITH_HUGH = 1;
+    private static final int SAT_WITH_LARGE = 2;
+    private static final int SAT_WITH_SMALL = 3;
+    private static final int HUGH_WITH_LARGE = 4;
+    private static final int HUGH_WITH_HUGH = 5;
+    private static final int BREAKDOWN = 6;
+    private static final int FALL_HUGH = 7;
+    private static final int FALL_LARGE = 8;
+    private static final int FALL_SMALL = 9;
+    private static final int NOF_REACTIONS = 10;
+    /** events that occur at a fixed time */
+    private static final int LAUNCH = 10;
+    private static final int REFRESH = 11;
+    private static final int END_OF_DAY = 12;
+    private static final int NOF_EVENTS = 13;
+
+    /** populations, as flags of the changes of an event */
+    private static final int SATS = 1;
+    private static final int HUGH = 2;
+    private static final int LARGE = 4;
+    private static final int SMALL = 8;
+    private static final int SAVES = 16;
+    /** the populations on which the rate of each reaction depends */
+    private static final int[] DEPENDS = {
+            SATS | HUGH | LARGE | SAVES, SATS | HUGH | SAVES, SATS | LARGE | SAVES, SATS | SMALL,
+            HUGH | LARGE, HUGH, SATS, HUGH, LARGE, SMALL
+    };
+
+    /** the model parameters of this run */
+    private final Scenario scenario;
+    /** rates per day, of a danger and a collision per pair of objects, and of a breakdown or decay per object */
+    private final double dangerRate;
+    private final double collisionRate;
+    private final double breakdownRate;
+    private final double fallRateLarge;
+    private final double fallRateSmall;
+
+    /** particles [1 ... 10] cm */
+    private long particlesSmall;
+    /** particles > 10 cm */
+    private long particlesLarge;
+    /** non-functional satellites still in orbit */
+    private int particlesHugh;
+    /** operational satellites in orbit */
+    private int satellitesInOrbit;
+    /** saves the observatories can still make */
+    private int savesLeft;
+    /** earliest time of the next launch and of the next refresh of the observatories */
+    private double nextLaunch = 0;
+    private double nextRefresh = 0;
+    /** number of days simulated so far, and the current time in days */
+    private int day = 0;
+    private double time = 0;
+
+    private final IndexedEventQueue queue = new IndexedEventQueue(NOF_EVENTS);
+    /** the current rate of each reaction */
+    private final double[] rates = new double[NOF_REACTIONS];
+    /** of each reaction with rate 0, the remaining waiting time at a rate of 1 */
+    private final double[] remaining = new double[NOF_REACTIONS];
+    /** one random stream for the waiting times of each reaction */
+    private final RandomStream[] reactionRand = new RandomStream[NOF_REACTIONS];
+    private final Distribution shreddingDistLarge;
+    private final Distribution shreddingDistSmall;
+    private final Distribution launchPartDistLarge;
+
+    /** results are stored here */
+    private final DailyResults results;
+    private final int maxTime;
+
+    /**
+     * @param scenario the model parameters
+     * @param runTime  number of results of this run, equal to the number of simulated days plus one
+     * @param seed     the seed of the random stream. Two runs with the same seed produce identical results.
+     * @param results  receives the state of every simulated day
+     */
+    public EventSimulation(Scenario scenario, int runTime, long seed, DailyResults results) {
+        this(scenario, runTime, new RandomStream(seed), results);
+    }
+
+    /**
+     * @param scenario the model parameters
+     * @param runTime  number of results of this run, equal to the number of simulated days plus one
+     * @param rand     the random stream of this run, of which a substream is split for each kind of event
+     * @param results  receives the state of every simulated day
+     */
+    public EventSimulation(Scenario scenario, int runTime, RandomStream rand, DailyResults results) {
+        this.scenario = scenario;
+        this.results = results;
+        maxTime = runTime - 1;
+
+        dangerRate = toRate(scenario.probDangerPerParticle);
+        collisionRate = dangerRate * scenario.collisionByDangerRisk;
+        breakdownRate = toRate(scenario.satBreakdownProb);
+        fallRateLarge = toRate(scenario.fallProbLarge);
+        fallRateSmall = toRate(scenario.fallProbSmall);
+
+        for (int i = 0; i < NOF_REACTIONS; i++) {
+            reactionRand[i] = rand.split();
+        }
+        shreddingDistLarge = new ExponentialDistribution(1.0 / scenario.shreddingMeanLarge, rand.split());
+        shreddingDistSmall = new ExponentialDistribution(1.0 / scenario.shreddingMeanSmall, rand.split());
+        launchPartDistLarge = new ExponentialDistribution(1.0 / scenario.launchPartMeanLarge, rand.split());
+
+        particlesSmall = scenario.initialSmallParticles;
+        particlesLarge = scenario.initialLargeParticles;
+        particlesHugh = scenario.initialHughParticles;
+        satellitesInOrbit = scenario.initialSatellites;
+        savesLeft = scenario.nOfObservatories;
+
+        for (int i = 0; i < NOF_REACTIONS; i++) {
+            remaining[i] = ExponentialDistribution.get(1, reactionRand[i]);
+            setRate(i, rate(i));
+        }
+        scheduleLaunch();
+        scheduleRefresh();
+        if (maxTime > 0) queue.update(END_OF_DAY, 1);
+
+        storeResults();
+    }
+
+    /** @return the rate of an event with the given chance of occurring at least once per day */
+    private static double toRate(double dailyProb) {
+        return -Math.log1p(-dailyProb);
+    }
+
+    /**
+     * runs a single simulation run
+     */
+    public void run() {
+        while (!isFinished()) {
+            nextDay();
+        }
+        results.finish();
+    }
+
+    /** @return whether all days of this run have been simulated */
+    public boolean isFinished() {
+        return day >= maxTime;
+    }
+
+    /**
+     * executes all events until the end of the current day, and stores the results of the day. May be called at most
+     * as often as the number of simulated days given at construction.
+     */
+    public void nextDay() {
+        int today = day;
+        while (day == today) {
+            nextEvent();
+        }
+    }
+
+    /** executes the first event in the queue */
+    private void nextEvent() {
+        int event = queue.first();
+        time = queue.time(event);
+
+        int changed;
+        switch (event) {
+            case DANGER_SAVED:
+                savesLeft--;
+                results.addSaves(1);
+                changed = SAVES;
+                break;
+            case SAT_WITH_HUGH:
+                satellitesInOrbit--;
+                particlesHugh--;
+                shredIntoParticles(2);
+                results.addLostSatellites(1);
+                changed = SATS | HUGH | LARGE | SMALL;
+                break;
+            case SAT_WITH_LARGE:
+                satellitesInOrbit--;
+                shredIntoParticles(1);
+                results.addLostSatellites(1);
+                changed = SATS | LARGE | SMALL;
+                break;
+            case SAT_WITH_SMALL:
+                satellitesInOrbit--;
+                particlesHugh++;
+                results.addLostSatellites(1);
+                changed = SATS | HUGH;
+                break;
+            case HUGH_WITH_LARGE:
+                particlesHugh--;
+                shredIntoParticles(1);
+                changed = HUGH | LARGE | SMALL;
+                break;
+            case HUGH_WITH_HUGH:
+                particlesHugh -= 2;
+                shredIntoParticles(2);
+                changed = HUGH | LARGE | SMALL;
+                break;
+            case BREAKDOWN:
+                satellitesInOrbit--;
+                particlesHugh++;
+                changed = SATS | HUGH;
+                break;
+            case FALL_HUGH:
+                particlesHugh--;
+                changed = HUGH;
+                break;
+            case FALL_LARGE:
+                particlesLarge--;
+                changed = LARGE;
+                break;
+            case FALL_SMALL:
+                particlesSmall--;
+                changed = SMALL;
+                break;
+            case LAUNCH:
+                satellitesInOrbit++;
+                particlesHugh += scenario.launchStages;
+                particlesLarge += launchPartDistLarge.sumOf(1);
+                nextLaunch = time + 1.0 / scenario.launchesPerDay;
+                changed = SATS | HUGH | LARGE;
+                break;
+            case REFRESH:
+                savesLeft++;
+                nextRefresh = time + 1.0 / scenario.observatorySavesPerDay;
+                changed = SAVES;
+                break;
+            case END_OF_DAY:
+                storeResults();
+                day++;
+                queue.update(END_OF_DAY, isFinished() ? Double.POSITIVE_INFINITY : day + 1);
+                return;
+            default:
+                throw new IllegalStateException("unknown event " + event);
+        }
+
+        if (event < NOF_REACTIONS) {
+            // the waiting time of the executed reaction is used up
+            remaining[event] = ExponentialDistribution.get(1, reactionRand[event]);
+            rates[event] = 0;
+            queue.update(event, Double.POSITIVE_INFINITY);
+        }
+
+        for (int i = 0; i < NOF_REACTIONS; i++) {
+            if (i == event || (DEPENDS[i] & changed) != 0) {
+                setRate(i, rate(i));
+            }
+        }
+        if ((changed & SATS) != 0) scheduleLaunch();
+        if ((changed & SAVES) != 0) scheduleRefresh();
+    }
+
+    /** @return the current rate of the given reaction */
+    private double rate(int reaction) {
+        double sats = satellitesInOrbit;
+        switch (reaction) {
+            case DANGER_SAVED:
+                return savesLeft > 0 ? sats * (particlesHugh + particlesLarge) * dangerRate : 0;
+            case SAT_WITH_HUGH:
+                return savesLeft > 0 ? 0 : sats * particlesHugh * collisionRate;
+            case SAT_WITH_LARGE:
+                return savesLeft > 0 ? 0 : sats * particlesLarge * collisionRate;
+            case SAT_WITH_SMALL:
+                return sats * particlesSmall * collisionRate;
+            case HUGH_WITH_LARGE:
+                return (double) particlesHugh * particlesLarge * collisionRate;
+            case HUGH_WITH_HUGH:
+                return (double) particlesHugh * (particlesHugh - 1) * collisionRate;
+            case BREAKDOWN:
+                return sats * breakdownRate;
+            case FALL_HUGH:
+                return particlesHugh * fallRateLarge;
+            case FALL_LARGE:
+                return particlesLarge * fallRateSmall;
+            case FALL_SMALL:
+                return particlesSmall * fallRateSmall;
+            default:
+                throw new IllegalArgumentException("not a reaction: " + reaction);
+        }
+    }
+
+    /**
+     * changes the rate of a reaction, and reschedules it such that the remaining waiting time is scaled by the ratio of
+     * the old and the new rate. A reaction without rate keeps its remaining waiting time until it has a rate again.
+     */
+    private void setRate(int reaction, double rate) {
+        double old = rates[reaction];
+        if (rate == old) return;
+
+        if (old > 0) {
+            remaining[reaction] = old * (queue.time(reaction) - time);
+        }
+        rates[reaction] = rate;
+        queue.update(reaction, rate > 0 ? time + remaining[reaction] / rate : Double.POSITIVE_INFINITY);
+    }
+
+    /** a satellite is launched when it is due, as long as fewer satellites are in orbit than required */
+    private void scheduleLaunch() {
+        boolean required = satellitesInOrbit < scenario.satellitesRequiredInOrbit;
+        queue.update(LAUNCH, required ? Math.max(time, nextLaunch) : Double.POSITIVE_INFINITY);
+    }
+
+    /** a save is refreshed when it is due, as long as the observatories have used saves */
+    private void scheduleRefresh() {
+        boolean used = savesLeft < scenario.nOfObservatories;
+        queue.update(REFRESH, used ? Math.max(time, nextRefresh) : Double.POSITIVE_INFINITY);
+    }
+
+    /** produce and add small and large particles resulting from shredding satellites */
+    private void shredIntoParticles(int nOfCollisions) {
+        this.particlesLarge += shreddingDistLarge.sumOf(nOfCollisions);
+        this.particlesSmall += shreddingDistSmall.sumOf(nOfCollisions);
+    }
+
+    private void storeResults() {
+        int flightsQueued = scenario.satellitesRequiredInOrbit - satellitesInOrbit;
+        results.addResults(particlesSmall, particlesLarge, particlesHugh, satellitesInOrbit, flightsQueued);
+    }
+}
@@ -0,0 +1,85 @@
+package Simulation;
+
+import java.util.Arrays;
+
+/**
+ * a priority queue of a fixed number of events, ordered by the time at which they occur next. The position of every
+ * event in the heap is indexed, such that the time of any event can be changed in logarithmic time without removing
+ * it. An event that does not occur has an infinite time.
+ */
+class IndexedEventQueue {
+    private final double[] times;
+    /** the event at each position of the heap */
+    private final int[] heap;
+    /** the position in the heap of each event */
+    private final int[] position;
+
+    /** creates a queue of the events [0, nOfEvents), which initially do not occur */
+    IndexedEventQueue(int nOfEvents) {
+        times = new double[nOfEvents];
+        heap = new int[nOfEvents];
+        position = new int[nOfEvents];
+
+        Arrays.fill(times, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < nOfEvents; i++) {
+            heap[i] = i;
+            position[i] = i;
+        }
+    }
+
+    /** @return the event that occurs first */
+    int first() {
+        return heap[0];
+    }
+
+    /** @return the time at which the given event occurs */
+    double time(int event) {
+        return times[event];
+    }
+
+    /** changes the time at which the given event occurs */
+    void update(int event, double time) {
+        double old = times[event];
+        times[event] = time;
+
+        if (time < old) {
+            siftUp(position[event]);
+        } else if (time > old) {
+            siftDown(position[event]);
+        }
+    }
+
+    private void siftUp(int pos) {
+        int event = heap[pos];
+        double time = times[event];
+
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (times[heap[parent]] <= time) break;
+            place(heap[parent], pos);
+            pos = parent;
+        }
+        place(event, pos);
+    }
+
+    private void siftDown(int pos) {
+        int event = heap[pos];
+        double time = times[event];
+        int size = heap.length;
+
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) break;
+            if (child + 1 < size && times[heap[child + 1]] < times[heap[child]]) child++;
+            if (times[heap[child]] >= time) break;
+            place(heap[child], pos);
+            pos = child;
+        }
+        place(event, pos);
+    }
+
+    private void place(int event, int pos) {
+        heap[pos] = event;
+        position[event] = pos;
+    }
+}
@@ -2,9 +2,12 @@ package Simulation;
 
 import Results.*;
 
+import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Locale;
 
 import static Simulation.SpaceSimulation.YEARS;
@@ -15,39 +18,255 @@ import static Simulation.SpaceSimulation.YEARS;
 public class Main {
     /** number of simulations run */
     public static final int NOF_RUNS = 250;
-    /** how many parallel threads may run at once */
-    private static final int THREAD_POOL = 10;
+    /** in adaptive mode, the minimum and default maximum number of runs */
+    private static final int MIN_RUNS = 30;
+    private static final int MAX_RUNS = 10_000;
     private static final int MAX_YEARS = 300;
     /** number of days for one simulation */
     public static final int MAX_TIME = MAX_YEARS * YEARS;
+    /** maximum number of days written to the csv file */
+    private static final int CSV_ROWS = 5000;
+    /** progress of the runs is saved here, and removed once all runs have finished */
+    private static final String CHECKPOINT_FILE = "checkpoint.bin";
+    private static final int CHECKPOINT_MINUTES = 5;
+    /** with --trajectories, the daily values of every run are stored here */
+    private static final String TRAJECTORY_FILE = "trajectories.bin";
+    /** with --metrics-file, the interval between writes in milliseconds */
+    private static final long METRICS_INTERVAL = 5_000;
+    /** with --levels, the default number of paths into which a path is split at each level */
+    private static final int SPLIT_FACTOR = 4;
 
-    // run NOF_RUNS simulations and save everything in a csv file
+    /**
+     * run NOF_RUNS simulations and save everything in a csv file. Options:
+     * --seed [long]         the master seed
+     * --tolerance [double]  run until the confidence intervals of lost satellites and total particles have a half-width
+     *                       of at most this fraction of their mean, instead of running NOF_RUNS runs
+     * --max-runs [int]      with --tolerance, the maximum number of runs
+     * --max-minutes [int]   with --tolerance, the time after which no new runs are started
+     * --antithetic          run in antithetic pairs, see {@link RunScheduler}
+     * --resume              continue the runs saved in the checkpoint file, with the seed and mode of that checkpoint
+     * --checkpoint-minutes [int]  the interval between checkpoints. Checkpoints are only written without --tolerance
+     * --trajectories        store every day of every run, see {@link TrajectoryStore}. Must also be given with --resume
+     * --max-leap [int]      simulate up to this many days per step when the populations change slowly, see {@link
+     *                       SpaceSimulation#nextStep()}. Ignored with --resume
+     * --mean-field          write the expected values of the {@link MeanFieldModel} instead of running simulations
+     * --quiet               do not print the progress of the runs
+     * --metrics-port [int]  enable the {@link SimulationMetrics}, and serve them on http://localhost:[port]/metrics
+     * --metrics-file [file] enable the {@link SimulationMetrics}, and write them to the file every few seconds. With
+     *                       either metrics option, the cost of each call site of the binomial draws is printed at the end
+     * --sampler [policy]    the {@link SamplerPolicy} of the binomial draws: heuristic (default), normal, poisson,
+     *                       binomial, auto or auto:[max distance]. Must also be given with --resume
+     * --levels [l1,l2,...]  run NOF_RUNS root runs of the {@link SplittingSimulation} instead, which split at these
+     *                       increasing numbers of large particles, and print the probability of reaching each level.
+     *                       Can not be combined with --tolerance, --resume or --trajectories
+     * --split-factor [int]  with --levels, the number of paths into which a path is split at each level
+     * --shells [km]         simulate the orbit as altitude shells of this width with the {@link ShellSimulation}.
+     *                       Runs are not checkpointed, and it can not be combined with --resume, --levels or --max-leap
+     * --engine [engine]     the {@link Engine} of the runs: daily (default), event for the {@link EventSimulation},
+     *                       spectrum or spectrum:[bins per decade] for the {@link SpectrumSimulation}, or shells:[km]
+     *                       as --shells. As --shells, other engines than daily are not checkpointed, and spectrum can
+     *                       not be combined with --max-leap
+     */
     public static void main(String[] args) throws Exception {
-        PrintWriter output = new PrintWriter("data.csv");
-//        PrintStream output = System.out;
-        ProgressBar progress = new ProgressBar(NOF_RUNS);
+        long masterSeed = System.nanoTime();
+        double tolerance = 0;
+        int maxRuns = MAX_RUNS;
+        long maxMinutes = Long.MAX_VALUE / 60_000;
+        boolean antithetic = false;
+        boolean resume = false;
+        long checkpointMinutes = CHECKPOINT_MINUTES;
+        boolean trajectories = false;
+        Scenario scenario = Scenario.DEFAULT;
+        boolean meanField = false;
+        boolean quiet = false;
+        int metricsPort = -1;
+        Path metricsFile = null;
+        double[] levels = null;
+        int splitFactor = SPLIT_FACTOR;
+        Engine engine = Engine.DAILY;
 
-        List<SpaceSimulation> runs = new ArrayList<>(THREAD_POOL);
-        MultiResultCollector collector = MultiSpaceResultsImpl.getCollector(NOF_RUNS, MAX_TIME + 1);
-        for (int i = 0; i < NOF_RUNS; i += THREAD_POOL) {
-
-            for (int j = 0; (j < THREAD_POOL) && (i + j < NOF_RUNS); j++) {
-                SpaceSimulation suite = new SpaceSimulation(MAX_TIME + 1);
-                suite.start(); // in parallel
-                runs.add(suite);
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed":
+                    masterSeed = Long.parseLong(args[++i]);
+                    break;
+                case "--tolerance":
+                    tolerance = Double.parseDouble(args[++i]);
+                    break;
+                case "--max-runs":
+                    maxRuns = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-minutes":
+                    maxMinutes = Long.parseLong(args[++i]);
+                    break;
+                case "--antithetic":
+                    antithetic = true;
+                    break;
+                case "--resume":
+                    resume = true;
+                    break;
+                case "--checkpoint-minutes":
+                    checkpointMinutes = Long.parseLong(args[++i]);
+                    break;
+                case "--trajectories":
+                    trajectories = true;
+                    break;
+                case "--max-leap":
+                    scenario = scenario.with(Scenario.Parameter.MAX_LEAP_DAYS, Integer.parseInt(args[++i]));
+                    break;
+                case "--mean-field":
+                    meanField = true;
+                    break;
+                case "--quiet":
+                    quiet = true;
+                    break;
+                case "--metrics-port":
+                    metricsPort = Integer.parseInt(args[++i]);
+                    break;
+                case "--metrics-file":
+                    metricsFile = Paths.get(args[++i]);
+                    break;
+                case "--sampler":
+                    SpaceSimulation.setSamplerPolicy(SamplerPolicy.parse(args[++i]));
+                    break;
+                case "--levels": {
+                    String[] values = args[++i].split(",");
+                    levels = new double[values.length];
+                    for (int k = 0; k < values.length; k++) {
+                        levels[k] = Double.parseDouble(values[k]);
+                    }
+                    break;
+                }
+                case "--split-factor":
+                    splitFactor = Integer.parseInt(args[++i]);
+                    break;
+                case "--shells":
+                    engine = Engine.shells(Double.parseDouble(args[++i]));
+                    break;
+                case "--engine":
+                    engine = Engine.parse(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument " + args[i]);
             }
+        }
+        if (resume && tolerance > 0) throw new IllegalArgumentException("--resume can not be combined with --tolerance");
+        if (levels != null && (resume || tolerance > 0 || trajectories))
+            throw new IllegalArgumentException("--levels can not be combined with --resume, --tolerance or --trajectories");
+        if (engine != Engine.DAILY && (resume || levels != null))
+            throw new IllegalArgumentException("the " + engine + " engine can not be combined with --resume or --levels");
 
-            for (SpaceSimulation run : runs) {
-                SpaceResults results = run.results();
-                collector.add(results);
-                progress.printUpdate();
+        MetricsExporter exporter = null;
+        if (metricsPort >= 0 || metricsFile != null) {
+            exporter = new MetricsExporter(SimulationMetrics.enable());
+            if (metricsPort >= 0) {
+                System.out.println("Metrics: http://localhost:" + exporter.serve(metricsPort) + "/metrics");
             }
+            if (metricsFile != null) exporter.writeTo(metricsFile, METRICS_INTERVAL);
+        }
+
+        MultiSpaceResults results;
+        if (meanField) {
+            results = new MeanFieldModel(scenario).solve(MAX_TIME + 1, CSV_ROWS);
+        } else if (levels != null) {
+            results = split(scenario, masterSeed, levels, splitFactor, antithetic, quiet);
+        } else {
+            results = simulate(scenario, engine, masterSeed, tolerance, maxRuns, maxMinutes, antithetic, resume, checkpointMinutes, trajectories, quiet);
+        }
+
+        if (exporter != null) {
+            if (metricsFile != null) exporter.write(metricsFile);
+            exporter.stop();
+            if (!meanField) System.out.print("\n" + SimulationMetrics.get().samplerReport());
+        }
+        write(results);
+    }
+
+    /**
+     * executes the simulation runs of the given options, see {@link #main(String[])}
+     * @return the results of all runs
+     */
+    private static MultiSpaceResults simulate(
+            Scenario scenario, Engine engine, long masterSeed, double tolerance, int maxRuns, long maxMinutes, boolean antithetic,
+            boolean resume, long checkpointMinutes, boolean trajectories, boolean quiet
+    ) throws Exception {
+        MultiResultCollector collector = StreamingResultCollector.getCollector(MAX_TIME + 1, CSV_ROWS, antithetic);
+        if (trajectories) {
+            collector = new TrajectoryStore(Paths.get(TRAJECTORY_FILE), collector, MAX_TIME + 1, true, resume);
+        }
+        Path checkpointFile = Paths.get(CHECKPOINT_FILE);
+        Checkpointer checkpointer = null;
+        if (resume) {
+            checkpointer = Checkpointer.resume(checkpointFile, collector);
+            masterSeed = checkpointer.getMasterSeed();
+            antithetic = checkpointer.isAntithetic();
+            System.out.printf("Resuming from %s: %d of %d runs finished%n",
+                    checkpointFile, checkpointer.nOfCompleted(), checkpointer.getNOfRuns()
+            );
+        } else if (tolerance <= 0 && engine == Engine.DAILY) {
+            checkpointer = new Checkpointer(checkpointFile, scenario, NOF_RUNS, MAX_TIME + 1, masterSeed, antithetic, collector);
+        }
+        System.out.println("Master seed: " + masterSeed);
 
-            runs.clear();
+        RunScheduler scheduler = new RunScheduler(Runtime.getRuntime().availableProcessors(), antithetic, 1, engine);
+        SimulationMetrics metrics = SimulationMetrics.get();
+        if (metrics != null) metrics.watch(scheduler);
+        int nOfRuns;
+        if (tolerance > 0) {
+            StoppingRule rule = new StoppingRule(tolerance, MIN_RUNS, maxRuns, maxMinutes * 60_000, antithetic);
+            nOfRuns = scheduler.runUntil(scenario, rule, MAX_TIME + 1, masterSeed, collector, new ProgressBar(maxRuns, !quiet));
+        } else if (checkpointer == null) {
+            nOfRuns = NOF_RUNS;
+            scheduler.runAll(scenario, nOfRuns, MAX_TIME + 1, masterSeed, collector, new ProgressBar(nOfRuns, !quiet));
+        } else {
+            nOfRuns = checkpointer.getNOfRuns();
+            checkpointer.start(checkpointMinutes * 60_000);
+            scheduler.runAll(checkpointer, new ProgressBar(nOfRuns - checkpointer.nOfCompleted(), !quiet));
+            checkpointer.stop();
+            Files.deleteIfExists(checkpointFile);
         }
+        scheduler.shutdown();
         System.out.print("\n\n");
+        System.out.printf("Runs used: %d%n", nOfRuns);
+
+        return collector.wrapUp();
+    }
 
-        MultiSpaceResults results = collector.wrapUp();
+    /**
+     * executes the root runs of a {@link SplittingSimulation}, see {@link #main(String[])}
+     * @return the weighted results of all root runs
+     */
+    private static MultiSpaceResults split(
+            Scenario scenario, long masterSeed, double[] levels, int splitFactor, boolean antithetic, boolean quiet
+    ) {
+        SplittingSimulation splitting = new SplittingSimulation(scenario, MAX_TIME + 1, levels, splitFactor);
+        SplittingResults results = new SplittingResults(MAX_TIME + 1, CSV_ROWS, levels.length, antithetic);
+        System.out.println("Master seed: " + masterSeed);
+
+        RunScheduler scheduler = new RunScheduler(Runtime.getRuntime().availableProcessors(), antithetic);
+        SimulationMetrics metrics = SimulationMetrics.get();
+        if (metrics != null) metrics.watch(scheduler);
+        scheduler.runAll(splitting, NOF_RUNS, masterSeed, results, new ProgressBar(NOF_RUNS, !quiet));
+        scheduler.shutdown();
+        System.out.print("\n\n");
+        System.out.printf(Locale.US, "Root runs used: %d, mean final paths per root: %1.02f%n", NOF_RUNS, results.leavesMean());
+        for (int k = 0; k < levels.length; k++) {
+            System.out.printf(Locale.US, "Probability of %1.0f large particles in %d years: %1.03e %s%n",
+                    levels[k], MAX_YEARS, results.levelProbability(k), results.levelProbabilityConf(k)
+            );
+        }
+
+        return results;
+    }
+
+    /**
+     * writes data.csv and bands.csv of the given results. The percentiles are NaN if the results keep none.
+     */
+    private static void write(MultiSpaceResults results) throws IOException {
+        PrintWriter output = new PrintWriter("data.csv");
+//        PrintStream output = System.out;
+
+        int[] days = results.getDays();
         double[] activeSats = results.getActiveSatellites();
         double[] launchQueue = results.getSpaceFlightsQueued();
         double[] hughParticles = results.getHughParticles();
@@ -62,15 +281,14 @@ public class Main {
         System.out.printf(Locale.US, "Hugh particles: %1.01f %s%n", results.hughParticleMean(), results.hughParticleConf());
 
         System.out.printf(Locale.US, "Mean total particles after %d years: %1.00f",
-                MAX_YEARS, hughParticles[MAX_TIME] + largeParticles[MAX_TIME] + smallParticles[MAX_TIME]
+                MAX_YEARS, results.hughParticleMean() + results.largeParticleMean() + results.smallParticleMean()
         );
 
         output.println("dayNr;activeSats;launchQueue;hughDebris;largeDebris;smallDebris;lostSatellites");
-        final int stepSize = (MAX_TIME / 5000) + 1; // at most 5000 values
-        for (int i = 0; i < activeSats.length; i += stepSize) {
+        for (int i = 0; i < days.length; i++) {
             output.printf(Locale.US,
                     "%d;%.03f;%.04f;%.02f;%.02f;%.02f;%.05f\n",
-                    i,
+                    days[i],
                     activeSats[i],
                     launchQueue[i],
                     hughParticles[i],
@@ -80,6 +298,32 @@ public class Main {
             );
         }
         output.close();
+
+        PrintWriter bands = new PrintWriter("bands.csv");
+        bands.println("dayNr;series;mean;lower;upper;p5;p50;p95");
+        for (Series series : Series.values()) {
+            double[] mean = results.getMean(series);
+            Interval[] conf = results.getConfidence(series);
+            double[] p5;
+            double[] p50;
+            double[] p95;
+            if (results.hasQuantiles()) {
+                p5 = results.getQuantile(series, 0.05);
+                p50 = results.getQuantile(series, 0.50);
+                p95 = results.getQuantile(series, 0.95);
+            } else {
+                p5 = p50 = p95 = new double[days.length];
+                Arrays.fill(p5, Double.NaN);
+            }
+
+            for (int i = 0; i < days.length; i++) {
+                bands.printf(Locale.US,
+                        "%d;%s;%.04f;%.04f;%.04f;%.02f;%.02f;%.02f\n",
+                        days[i], series, mean[i], conf[i].lower, conf[i].upper, p5[i], p50[i], p95[i]
+                );
+            }
+        }
+        bands.close();
     }
 
 }
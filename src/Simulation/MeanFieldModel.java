@@ -0,0 +1,209 @@
+package Simulation;
+
+import Results.MeanFieldResults;
+import Results.MultiSpaceResults;
+import Results.Series;
+
+import static java.lang.Math.*;
+
+/**
+ * integrates the expected values of the populations of a {@link SpaceSimulation} as a system of ordinary differential
+ * equations, as a deterministic preview of a scenario. The rates are the expected daily changes of a single day of the
+ * simulation: each binomial of n experiments with probability p contributes n * p per day, each shredding contributes
+ * its expected number of particles, and decay removes a fraction of each population per day.
+ * <p>
+ * Two discrete rules of the simulation are replaced by continuous ones. The observatories save dangers up to their
+ * daily capacity, non-functional satellites first. Launches happen at the maximum rate while more than one satellite is
+ * missing, and at a proportionally lower rate within one satellite of the required number.
+ * <p>
+ * The system is integrated with the adaptive Dormand-Prince method (RK45), and the values of the sampled days are
+ * interpolated within each step with cubic Hermite polynomials. A run of 300 years takes a few milliseconds.
+ */
+public class MeanFieldModel {
+    /** the relative and absolute error that is tolerated per step */
+    public static final double DEFAULT_TOLERANCE = 1e-6;
+    /** the largest step in days, such that the step size adapts to changes of the regime in time */
+    private static final double MAX_STEP = 30;
+
+    /** the state variables */
+    private static final int SATS = 0;
+    private static final int HUGH = 1;
+    private static final int LARGE = 2;
+    private static final int SMALL = 3;
+    private static final int LOST = 4;
+    private static final int SAVES = 5;
+    private static final int NOF_VARIABLES = 6;
+
+    /** Dormand-Prince coefficients */
+    private static final double[][] A = {
+            {},
+            {1.0 / 5},
+            {3.0 / 40, 9.0 / 40},
+            {44.0 / 45, -56.0 / 15, 32.0 / 9},
+            {19372.0 / 6561, -25360.0 / 2187, 64448.0 / 6561, -212.0 / 729},
+            {9017.0 / 3168, -355.0 / 33, 46732.0 / 5247, 49.0 / 176, -5103.0 / 18656},
+            {35.0 / 384, 0, 500.0 / 1113, 125.0 / 192, -2187.0 / 6784, 11.0 / 84}
+    };
+    /** the difference between the weights of the fifth and the fourth order solution */
+    private static final double[] E = {71.0 / 57600, 0, -71.0 / 16695, 71.0 / 1920, -17253.0 / 339200, 22.0 / 525, -1.0 / 40};
+
+    private final Scenario scenario;
+    private final double tolerance;
+
+    public MeanFieldModel(Scenario scenario) {
+        this(scenario, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * @param scenario  the model parameters
+     * @param tolerance the relative and absolute error that is tolerated per step
+     */
+    public MeanFieldModel(Scenario scenario, double tolerance) {
+        if (tolerance <= 0) throw new IllegalArgumentException("tolerance = " + tolerance);
+        this.scenario = scenario;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * integrates the expected values of a run
+     * @param runLength  the number of days of a run plus one, as for a {@link SpaceSimulation}
+     * @param maxSamples the maximum number of days in the results, evenly spread over the run as by the {@link
+     *                   Results.StreamingResultCollector}
+     * @return the expected values of the sampled days
+     */
+    public MultiSpaceResults solve(int runLength, int maxSamples) {
+        int stride = (runLength - 1) / maxSamples + 1;
+        int nOfSamples = (runLength - 1) / stride + 1;
+        int maxTime = runLength - 1;
+
+        int[] days = new int[nOfSamples];
+        double[][] values = new double[Series.values().length][nOfSamples];
+
+        double[] y = {
+                scenario.initialSatellites, scenario.initialHughParticles, scenario.initialLargeParticles,
+                scenario.initialSmallParticles, 0, 0
+        };
+        double[][] k = new double[7][NOF_VARIABLES];
+        double[] stage = new double[NOF_VARIABLES];
+        double[] next = new double[NOF_VARIABLES];
+        double[] at = new double[NOF_VARIABLES];
+        double[] rate = new double[NOF_VARIABLES];
+        derivative(y, k[0]);
+        store(values, days, 0, 0, y, rate);
+
+        double t = 0;
+        double h = 1;
+        int sample = 1;
+
+        while (sample < nOfSamples) {
+            boolean last = h >= maxTime - t;
+            if (last) h = maxTime - t;
+            double end = last ? maxTime : t + h;
+
+            for (int s = 1; s < 7; s++) {
+                for (int v = 0; v < NOF_VARIABLES; v++) {
+                    double sum = 0;
+                    for (int j = 0; j < s; j++) {
+                        sum += A[s][j] * k[j][v];
+                    }
+                    stage[v] = y[v] + h * sum;
+                }
+                derivative(stage, k[s]);
+            }
+            // the last stage is evaluated at the fifth order solution
+            System.arraycopy(stage, 0, next, 0, NOF_VARIABLES);
+
+            double error = 0;
+            for (int v = 0; v < NOF_VARIABLES; v++) {
+                double e = 0;
+                for (int j = 0; j < 7; j++) {
+                    e += E[j] * k[j][v];
+                }
+                double scale = tolerance + tolerance * max(abs(y[v]), abs(next[v]));
+                error += (h * e / scale) * (h * e / scale);
+            }
+            error = sqrt(error / NOF_VARIABLES);
+
+            if (error <= 1) {
+                // interpolate the samples within this step
+                while (sample < nOfSamples && sample * stride <= end) {
+                    hermite(y, k[0], next, k[6], (sample * stride - t) / h, h, at);
+                    derivative(at, rate);
+                    store(values, days, sample, sample * stride, at, rate);
+                    sample++;
+                }
+
+                t = end;
+                System.arraycopy(next, 0, y, 0, NOF_VARIABLES);
+                System.arraycopy(k[6], 0, k[0], 0, NOF_VARIABLES);
+            }
+
+            double factor = error == 0 ? 5 : 0.9 * pow(error, -0.2);
+            h = min(MAX_STEP, h * min(5, max(0.2, factor)));
+        }
+
+        return new MeanFieldResults(days, values, y[LOST], y[SAVES]);
+    }
+
+    /** writes the given state as the sample of the given day */
+    private void store(double[][] values, int[] days, int sample, int day, double[] y, double[] rate) {
+        days[sample] = day;
+        values[Series.ACTIVE_SATELLITES.ordinal()][sample] = y[SATS];
+        values[Series.SPACE_FLIGHTS_QUEUED.ordinal()][sample] = scenario.satellitesRequiredInOrbit - y[SATS];
+        values[Series.HUGH_PARTICLES.ordinal()][sample] = y[HUGH];
+        values[Series.LARGE_PARTICLES.ordinal()][sample] = y[LARGE];
+        values[Series.SMALL_PARTICLES.ordinal()][sample] = y[SMALL];
+        values[Series.LOST_SATELLITES.ordinal()][sample] = rate[LOST];
+    }
+
+    /** cubic Hermite interpolation at fraction f of a step of size h, from the values and derivatives at both ends */
+    private static void hermite(double[] y0, double[] d0, double[] y1, double[] d1, double f, double h, double[] out) {
+        double f2 = f * f;
+        double f3 = f2 * f;
+        double h00 = 2 * f3 - 3 * f2 + 1;
+        double h10 = f3 - 2 * f2 + f;
+        double h01 = -2 * f3 + 3 * f2;
+        double h11 = f3 - f2;
+
+        for (int v = 0; v < out.length; v++) {
+            out[v] = h00 * y0[v] + h10 * h * d0[v] + h01 * y1[v] + h11 * h * d1[v];
+        }
+    }
+
+    /** computes the expected daily change of every state variable */
+    void derivative(double[] y, double[] dy) {
+        final double pDanger = scenario.probDangerPerParticle;
+        final double pCollision = pDanger * scenario.collisionByDangerRisk;
+        double sats = max(y[SATS], 0);
+        double hugh = max(y[HUGH], 0);
+        double large = max(y[LARGE], 0);
+        double small = max(y[SMALL], 0);
+
+        // the observatories save dangers up to their capacity, first of non-functional satellites
+        double dangerHugh = sats * hugh * pDanger;
+        double dangerLarge = sats * large * pDanger;
+        double savedHugh = min(dangerHugh, scenario.observatorySavesPerDay);
+        double savedLarge = min(dangerLarge, scenario.observatorySavesPerDay - savedHugh);
+
+        double satWithHugh = (dangerHugh - savedHugh) * scenario.collisionByDangerRisk;
+        double satWithLarge = (dangerLarge - savedLarge) * scenario.collisionByDangerRisk;
+        double satWithSmall = sats * small * pCollision;
+        double hughWithLarge = hugh * large * pCollision;
+        // as in a single day, every collision of two non-functional satellites removes and shreds four of them
+        double hughWithHugh = 4 * max(hugh * (hugh - 1), 0) * pCollision;
+        double breakdown = sats * scenario.satBreakdownProb;
+
+        double missing = min(max(scenario.satellitesRequiredInOrbit - sats, 0), 1);
+        double launches = scenario.launchesPerDay * missing;
+        double shredded = 2 * satWithHugh + hughWithHugh + hughWithLarge + satWithLarge;
+
+        dy[SATS] = launches - satWithHugh - satWithLarge - satWithSmall - breakdown;
+        dy[HUGH] = satWithSmall + breakdown + launches * scenario.launchStages
+                - satWithHugh - hughWithHugh - hughWithLarge - hugh * scenario.fallProbLarge;
+        dy[LARGE] = shredded * scenario.shreddingMeanLarge + launches * scenario.launchPartMeanLarge
+                - large * scenario.fallProbSmall;
+        dy[SMALL] = shredded * scenario.shreddingMeanSmall - small * scenario.fallProbSmall;
+        dy[LOST] = satWithHugh + satWithLarge + satWithSmall;
+        dy[SAVES] = savedHugh + savedLarge;
+    }
+}
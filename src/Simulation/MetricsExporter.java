@@ -0,0 +1,97 @@
+package Simulation;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * exports {@link SimulationMetrics} in the Prometheus text format, either on a local http endpoint or by periodically
+ * writing a file, e.g. for the textfile collector of a node exporter on a batch node.
+ */
+public class MetricsExporter {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final SimulationMetrics metrics;
+    private HttpServer server;
+    private ScheduledExecutorService timer;
+
+    public MetricsExporter(SimulationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * serves the metrics on http://localhost:[port]/metrics
+     * @param port the port to listen on, or 0 for any free port
+     * @return the port that is listened on
+     */
+    public int serve(int port) throws IOException {
+        if (server != null) throw new IllegalStateException("already serving on port " + server.getAddress().getPort());
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * writes the metrics to the given file after every interval, until {@link #stop()} is called. The file is
+     * replaced atomically, such that readers never see a partial file.
+     */
+    public void writeTo(Path file, long intervalMillis) {
+        if (timer != null) throw new IllegalStateException("already writing");
+
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-file");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                write(file);
+            } catch (IOException ex) {
+                System.err.println("\nCould not write metrics " + file + ": " + ex);
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** writes the current metrics to the given file */
+    public void write(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, metrics.toPrometheus().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** stops serving and writing the metrics */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (timer != null) {
+            timer.shutdown();
+            timer = null;
+        }
+    }
+}
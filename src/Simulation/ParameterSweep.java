@@ -0,0 +1,256 @@
+package Simulation;
+
+import Results.*;
+import Simulation.Scenario.Parameter;
+
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+import static Simulation.SpaceSimulation.YEARS;
+
+/**
+ * creates sets of scenarios over a grid or a latin hypercube of parameter values, and runs all of them in one pool.
+ * The runs of all scenarios are scheduled at once, such that no scenario waits for another. The i-th run of every
+ * scenario uses the same random stream, hence scenarios are compared with common random numbers: the difference of
+ * each scenario with the first scenario is estimated from the differences of the paired runs.
+ */
+public class ParameterSweep {
+    private static final int DEFAULT_RUNS = 50;
+    private static final int DEFAULT_YEARS = 100;
+    /** the sweep only reports totals, so only a few days are stored per scenario */
+    private static final int SAMPLES_PER_SCENARIO = 10;
+
+    private ParameterSweep() {
+    }
+
+    /**
+     * @param base   the values of all parameters that are not swept
+     * @param values for each swept parameter, the values it takes
+     * @return one scenario for every combination of the given values
+     */
+    public static List<Scenario> grid(Scenario base, Map<Parameter, double[]> values) {
+        List<Scenario> scenarios = new ArrayList<>();
+        scenarios.add(base);
+
+        for (Map.Entry<Parameter, double[]> entry : values.entrySet()) {
+            List<Scenario> next = new ArrayList<>(scenarios.size() * entry.getValue().length);
+            for (Scenario s : scenarios) {
+                for (double v : entry.getValue()) {
+                    next.add(s.with(entry.getKey(), v));
+                }
+            }
+            scenarios = next;
+        }
+        return scenarios;
+    }
+
+    /**
+     * @param base   the values of all parameters that are not swept
+     * @param ranges for each swept parameter, its lower and upper bound
+     * @param n      the number of scenarios
+     * @param seed   the seed of the sampling
+     * @return n scenarios, such that the range of each parameter is divided in n intervals that each contain exactly
+     * one scenario
+     */
+    public static List<Scenario> latinHypercube(Scenario base, Map<Parameter, double[]> ranges, int n, long seed) {
+        SplittableRandom rand = new SplittableRandom(seed);
+        double[][] columns = new double[ranges.size()][];
+
+        int c = 0;
+        for (double[] range : ranges.values()) {
+            // a random permutation of the n intervals, with a random value inside each interval
+            int[] strata = new int[n];
+            for (int i = 0; i < n; i++) strata[i] = i;
+            for (int i = n - 1; i > 0; i--) {
+                int j = rand.nextInt(i + 1);
+                int t = strata[i];
+                strata[i] = strata[j];
+                strata[j] = t;
+            }
+
+            double[] column = new double[n];
+            for (int i = 0; i < n; i++) {
+                double u = (strata[i] + rand.nextDouble()) / n;
+                column[i] = range[0] + u * (range[1] - range[0]);
+            }
+            columns[c++] = column;
+        }
+
+        List<Scenario> scenarios = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Scenario s = base;
+            c = 0;
+            for (Parameter p : ranges.keySet()) {
+                s = s.with(p, columns[c++][i]);
+            }
+            scenarios.add(s);
+        }
+        return scenarios;
+    }
+
+    /**
+     * runs all scenarios on the given scheduler and blocks until all are finished
+     * @param scenarios       the scenarios to run
+     * @param scheduler       the shared pool
+     * @param runsPerScenario number of runs of every scenario
+     * @param runTime         number of results per run, equal to the number of simulated days plus one
+     * @param masterSeed      the master seed of every scenario
+     * @param collectors      creates a new collector for each scenario
+     * @return the results of each scenario, in the order of the scenarios
+     */
+    public static List<MultiSpaceResults> run(
+            List<Scenario> scenarios, RunScheduler scheduler, int runsPerScenario, int runTime, long masterSeed,
+            Supplier<MultiResultCollector> collectors
+    ) {
+        ProgressBar progress = new ProgressBar(scenarios.size() * runsPerScenario);
+        List<MultiResultCollector> scenarioCollectors = new ArrayList<>(scenarios.size());
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(scenarios.size() * runsPerScenario);
+
+        for (Scenario scenario : scenarios) {
+            MultiResultCollector collector = collectors.get();
+            scenarioCollectors.add(collector);
+            tasks.addAll(scheduler.submitAll(scenario, runsPerScenario, runTime, masterSeed, collector, progress));
+        }
+        RunScheduler.joinAll(tasks);
+
+        List<MultiSpaceResults> results = new ArrayList<>(scenarios.size());
+        for (MultiResultCollector collector : scenarioCollectors) {
+            results.add(collector.wrapUp());
+        }
+        return results;
+    }
+
+    /**
+     * runs a sweep and writes the totals of each scenario to sweep.csv. Options:
+     * --grid [PARAMETER]=[v1],[v2],...   sweep the parameter over the given values, may be repeated
+     * --range [PARAMETER]=[min]:[max]    sweep the parameter over the given range, may be repeated
+     * --lhs [int]                        number of scenarios sampled from the ranges, required with --range
+     * --runs [int]                       runs per scenario
+     * --years [int]                      simulated years per run
+     * --seed [long]                      the master seed
+     * --antithetic                       run in antithetic pairs, see {@link RunScheduler}
+     * --batch [int]                      simulate this many runs together in a {@link BatchSimulation}, which
+     *                                    requires the java option --add-modules jdk.incubator.vector
+     * --shells [km]                      simulate the orbit as altitude shells of this width with the {@link
+     *                                    ShellSimulation}. Can not be combined with --batch
+     * --engine [engine]                  the {@link Engine} of the runs, see {@link Engine#parse(String)}. Engines
+     *                                    other than daily can not be combined with --batch
+     * --mean-field                       compute the expected values of each scenario with the {@link MeanFieldModel}
+     *                                    instead of running simulations, e.g. to pre-screen a large sweep
+     * The parameters are the names of {@link Parameter}. Grid and range parameters can not be combined.
+     */
+    public static void main(String[] args) throws Exception {
+        Map<Parameter, double[]> grid = new EnumMap<>(Parameter.class);
+        Map<Parameter, double[]> ranges = new EnumMap<>(Parameter.class);
+        int lhsSize = 0;
+        int runs = DEFAULT_RUNS;
+        int years = DEFAULT_YEARS;
+        long masterSeed = System.nanoTime();
+        boolean antithetic = false;
+        boolean meanField = false;
+        int batchSize = 1;
+        Engine engine = Engine.DAILY;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--grid": {
+                    String[] def = args[++i].split("=");
+                    grid.put(Parameter.valueOf(def[0]), Arrays.stream(def[1].split(",")).mapToDouble(Double::parseDouble).toArray());
+                    break;
+                }
+                case "--range": {
+                    String[] def = args[++i].split("=");
+                    String[] bounds = def[1].split(":");
+                    ranges.put(Parameter.valueOf(def[0]), new double[]{Double.parseDouble(bounds[0]), Double.parseDouble(bounds[1])});
+                    break;
+                }
+                case "--lhs":
+                    lhsSize = Integer.parseInt(args[++i]);
+                    break;
+                case "--runs":
+                    runs = Integer.parseInt(args[++i]);
+                    break;
+                case "--years":
+                    years = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    masterSeed = Long.parseLong(args[++i]);
+                    break;
+                case "--antithetic":
+                    antithetic = true;
+                    break;
+                case "--mean-field":
+                    meanField = true;
+                    break;
+                case "--batch":
+                    batchSize = Integer.parseInt(args[++i]);
+                    break;
+                case "--shells":
+                    engine = Engine.shells(Double.parseDouble(args[++i]));
+                    break;
+                case "--engine":
+                    engine = Engine.parse(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+        if (!grid.isEmpty() && !ranges.isEmpty())
+            throw new IllegalArgumentException("Grid and range parameters can not be combined");
+        if (!ranges.isEmpty() && lhsSize <= 0)
+            throw new IllegalArgumentException("Ranges require --lhs with the number of scenarios");
+
+        List<Scenario> scenarios;
+        Set<Parameter> swept;
+        if (ranges.isEmpty()) {
+            scenarios = grid(Scenario.DEFAULT, grid);
+            swept = grid.keySet();
+        } else {
+            scenarios = latinHypercube(Scenario.DEFAULT, ranges, lhsSize, masterSeed);
+            swept = ranges.keySet();
+        }
+        int runTime = years * YEARS + 1;
+        List<MultiSpaceResults> results;
+        if (meanField) {
+            System.out.printf("Scenarios: %d, mean-field%n", scenarios.size());
+            results = new ArrayList<>(scenarios.size());
+            for (Scenario scenario : scenarios) {
+                results.add(new MeanFieldModel(scenario).solve(runTime, SAMPLES_PER_SCENARIO));
+            }
+
+        } else {
+            System.out.printf("Master seed: %d, scenarios: %d, runs per scenario: %d%n", masterSeed, scenarios.size(), runs);
+            RunScheduler scheduler = new RunScheduler(Runtime.getRuntime().availableProcessors(), antithetic, batchSize, engine);
+            results = run(scenarios, scheduler, runs, runTime, masterSeed,
+                    () -> StreamingResultCollector.getCollector(runTime, SAMPLES_PER_SCENARIO, scheduler.isAntithetic())
+            );
+            scheduler.shutdown();
+            System.out.print("\n\n");
+        }
+
+        PrintWriter output = new PrintWriter("sweep.csv");
+        StringBuilder header = new StringBuilder("scenario");
+        for (Parameter p : swept) header.append(';').append(p);
+        output.println(header + ";lostSatellites;lostLower;lostUpper;totalParticles;saves;lostDifference;differenceLower;differenceUpper");
+
+        MultiSpaceResults baseline = results.get(0);
+        for (int i = 0; i < scenarios.size(); i++) {
+            Scenario scenario = scenarios.get(i);
+            MultiSpaceResults result = results.get(i);
+            Interval lostConf = result.lostSatellitesConf();
+            Interval diffConf = result.pairedDifferenceConf(baseline, Outcome.LOST_SATELLITES);
+
+            output.print(i);
+            for (Parameter p : swept) output.printf(Locale.US, ";%s", scenario.get(p));
+            output.printf(Locale.US, ";%.03f;%.03f;%.03f;%.01f;%.01f;%.03f;%.03f;%.03f\n",
+                    result.lostSatellitesMean(), lostConf.lower, lostConf.upper,
+                    result.smallParticleMean() + result.largeParticleMean() + result.hughParticleMean(),
+                    result.savesMean(),
+                    result.pairedDifferenceMean(baseline, Outcome.LOST_SATELLITES), diffConf.lower, diffConf.upper
+            );
+        }
+        output.close();
+    }
+}
@@ -0,0 +1,331 @@
+package Simulation;
+
+import Distributions.RandomStream;
+import Results.DailyResults;
+import Results.MultiResultCollector;
+import Results.ProgressBar;
+import Results.SplittingResults;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * dispatches every simulation run as an independent task on a work-stealing pool, such that no run has to wait for
+ * another run to finish. Finished results are passed to the collector as soon as they are available.
+ * <p>
+ * The i-th run of every call with the same master seed uses the same random stream, such that the runs of different
+ * scenarios are paired by run index and share their random numbers. In antithetic mode, run 2i + 1 uses the antithetic
+ * counterpart of the stream of run 2i.
+ */
+public class RunScheduler {
+    private final ForkJoinPool pool;
+    private final boolean antithetic;
+    private final int batchSize;
+    private final Engine engine;
+
+    /** creates a scheduler using all available cores */
+    public RunScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism the number of runs that may execute at once
+     */
+    public RunScheduler(int parallelism) {
+        this(parallelism, false);
+    }
+
+    /**
+     * @param parallelism the number of runs that may execute at once
+     * @param antithetic  if true, runs are executed in antithetic pairs, see {@link #runStream(long, int)}
+     */
+    public RunScheduler(int parallelism, boolean antithetic) {
+        this(parallelism, antithetic, 1);
+    }
+
+    /**
+     * @param parallelism the number of tasks that may execute at once
+     * @param antithetic  if true, runs are executed in antithetic pairs, see {@link #runStream(long, int)}
+     * @param batchSize   the number of consecutive runs of {@link #submitAll} that are simulated together by one {@link
+     *                    BatchSimulation}, or 1 to simulate every run separately
+     */
+    public RunScheduler(int parallelism, boolean antithetic, int batchSize) {
+        this(parallelism, antithetic, batchSize, Engine.DAILY);
+    }
+
+    /**
+     * @param parallelism the number of tasks that may execute at once
+     * @param antithetic  if true, runs are executed in antithetic pairs, see {@link #runStream(long, int)}
+     * @param batchSize   the number of consecutive runs of {@link #submitAll} that are simulated together by one {@link
+     *                    BatchSimulation}, or 1 to simulate every run separately. Batches require {@link Engine#DAILY}
+     * @param engine      creates the simulation of every run, except for checkpointed and splitting runs
+     */
+    public RunScheduler(int parallelism, boolean antithetic, int batchSize, Engine engine) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism = " + parallelism);
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize = " + batchSize);
+        if (batchSize > 1 && engine != Engine.DAILY)
+            throw new IllegalArgumentException("batches can not be simulated by the " + engine + " engine");
+        pool = new ForkJoinPool(parallelism);
+        this.antithetic = antithetic;
+        this.batchSize = batchSize;
+        this.engine = engine;
+    }
+
+    /**
+     * executes the given number of runs, and blocks until all have finished
+     * @param scenario   the model parameters of all runs
+     * @param nOfRuns    number of simulation runs
+     * @param runTime    number of results per run, equal to the number of simulated days plus one
+     * @param masterSeed the seed of which the streams of the individual runs are derived, see {@link #runStream(long, int)}
+     * @param collector  receives the results of each run
+     * @param progress   is updated after each finished run
+     */
+    public void runAll(
+            Scenario scenario, int nOfRuns, int runTime, long masterSeed, MultiResultCollector collector, ProgressBar progress
+    ) {
+        joinAll(submitAll(scenario, nOfRuns, runTime, masterSeed, collector, progress));
+    }
+
+    /**
+     * schedules the given number of runs without waiting for them, such that runs of several calls share the pool.
+     * Parameters are equal to {@link #runAll(Scenario, int, int, long, MultiResultCollector, ProgressBar)}
+     * @return the tasks of the runs, see {@link #joinAll(List)}
+     */
+    public List<ForkJoinTask<?>> submitAll(
+            Scenario scenario, int nOfRuns, int runTime, long masterSeed, MultiResultCollector collector, ProgressBar progress
+    ) {
+        checkPairs(nOfRuns);
+        if (batchSize > 1) return submitBatches(scenario, nOfRuns, runTime, masterSeed, collector, progress);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(nOfRuns);
+
+        for (int i = 0; i < nOfRuns; i++) {
+            int runIndex = i;
+            tasks.add(pool.submit(() -> {
+                SimulationMetrics.runStarted();
+                DailyResults results = collector.newRun(runIndex, runTime);
+                engine.create(scenario, runTime, runStream(masterSeed, runIndex), results).run();
+                SimulationMetrics.runFinished(runTime - 1);
+                progress.printUpdate();
+            }));
+        }
+        return tasks;
+    }
+
+    /** as {@link #submitAll}, with one task per batch of consecutive runs, which keeps antithetic pairs together */
+    private List<ForkJoinTask<?>> submitBatches(
+            Scenario scenario, int nOfRuns, int runTime, long masterSeed, MultiResultCollector collector, ProgressBar progress
+    ) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(nOfRuns / batchSize + 1);
+
+        for (int first = 0; first < nOfRuns; first += batchSize) {
+            int firstIndex = first;
+            int size = Math.min(batchSize, nOfRuns - first);
+            tasks.add(pool.submit(() -> {
+                RandomStream[] streams = new RandomStream[size];
+                DailyResults[] results = new DailyResults[size];
+                for (int j = 0; j < size; j++) {
+                    SimulationMetrics.runStarted();
+                    streams[j] = runStream(masterSeed, firstIndex + j);
+                    results[j] = collector.newRun(firstIndex + j, runTime);
+                }
+
+                new BatchSimulation(scenario, runTime, streams, results).run();
+                for (int j = 0; j < size; j++) {
+                    SimulationMetrics.runFinished(runTime - 1);
+                    progress.printUpdate();
+                }
+            }));
+        }
+        return tasks;
+    }
+
+    /**
+     * executes all runs of the checkpointer that have not finished yet, and blocks until all have finished. Unfinished
+     * runs of a resumed checkpoint continue from their saved state.
+     * @param checkpointer the set of runs, which writes checkpoints while the runs execute
+     * @param progress     is updated after each finished run
+     */
+    public void runAll(Checkpointer checkpointer, ProgressBar progress) {
+        if (checkpointer.isAntithetic() != antithetic)
+            throw new IllegalArgumentException("antithetic mode of the checkpoint differs from this scheduler");
+        if (engine != Engine.DAILY)
+            throw new IllegalArgumentException("runs of the " + engine + " engine can not be checkpointed");
+        checkPairs(checkpointer.getNOfRuns());
+
+        long masterSeed = checkpointer.getMasterSeed();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(checkpointer.getNOfRuns());
+
+        for (int i = 0; i < checkpointer.getNOfRuns(); i++) {
+            if (checkpointer.isCompleted(i)) continue;
+
+            int runIndex = i;
+            tasks.add(pool.submit(() -> {
+                checkpointer.execute(runIndex, runStream(masterSeed, runIndex));
+                progress.printUpdate();
+            }));
+        }
+        joinAll(tasks);
+    }
+
+    /**
+     * executes the given number of root runs of a splitting simulation, and blocks until all have finished. Root run i
+     * starts with the same random stream as run i of {@link #runAll(Scenario, int, int, long, MultiResultCollector,
+     * ProgressBar)}.
+     * @param splitting  the splitting of every root run
+     * @param nOfRoots   number of root runs
+     * @param masterSeed the seed of which the streams of the root runs are derived, see {@link #runStream(long, int)}
+     * @param results    receives the weighted results of each root run
+     * @param progress   is updated after each finished root run
+     */
+    public void runAll(
+            SplittingSimulation splitting, int nOfRoots, long masterSeed, SplittingResults results, ProgressBar progress
+    ) {
+        checkPairs(nOfRoots);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(nOfRoots);
+
+        for (int i = 0; i < nOfRoots; i++) {
+            int rootIndex = i;
+            tasks.add(pool.submit(() -> {
+                SimulationMetrics.runStarted();
+                long days = splitting.run(runStream(masterSeed, rootIndex), results.newRoot(rootIndex));
+                SimulationMetrics.runFinished((int) Math.min(days, Integer.MAX_VALUE));
+                progress.printUpdate();
+            }));
+        }
+        joinAll(tasks);
+    }
+
+    /** in antithetic mode, the results are collected per pair, hence every run must have its partner */
+    private void checkPairs(int nOfRuns) {
+        if (antithetic && nOfRuns % 2 != 0)
+            throw new IllegalArgumentException("an odd number of runs leaves a run without its antithetic partner: " + nOfRuns);
+    }
+
+    /** waits for all given tasks to finish, and rethrows any exception of a run */
+    public static void joinAll(List<ForkJoinTask<?>> tasks) {
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * executes runs until the stopping rule is satisfied or its budget is spent, and blocks until all started runs
+     * have finished. Every started run is collected.
+     * @param scenario   the model parameters of all runs
+     * @param rule       decides whether more runs are required
+     * @param runTime    number of results per run, equal to the number of simulated days plus one
+     * @param masterSeed the seed of which the streams of the individual runs are derived, see {@link #runStream(long, int)}
+     * @param collector  receives the results of each run
+     * @param progress   is updated after each finished run
+     * @return the number of runs executed
+     */
+    public int runUntil(
+            Scenario scenario, StoppingRule rule, int runTime, long masterSeed, MultiResultCollector collector, ProgressBar progress
+    ) {
+        if (rule.isAntithetic() != antithetic)
+            throw new IllegalArgumentException("antithetic mode of the stopping rule differs from this scheduler");
+        List<ForkJoinTask<?>> workers = new ArrayList<>(getParallelism());
+
+        for (int w = 0; w < getParallelism(); w++) {
+            workers.add(pool.submit(() -> {
+                int i;
+                while ((i = rule.nextRun()) >= 0) {
+                    SimulationMetrics.runStarted();
+                    MonitoredRun results = new MonitoredRun(collector.newRun(i, runTime));
+                    engine.create(scenario, runTime, runStream(masterSeed, i), results).run();
+                    SimulationMetrics.runFinished(runTime - 1);
+                    rule.add(i, results.lostSatellites, results.totalParticles);
+                    progress.printUpdate();
+                }
+            }));
+        }
+
+        joinAll(workers);
+        return rule.nOfRuns();
+    }
+
+    /**
+     * @param masterSeed the seed of the complete set of runs
+     * @param runIndex   the index of the run in the set
+     * @return the random stream of the given run. In antithetic mode, runs 2i and 2i + 1 share the seed of index i,
+     * and the stream of the odd run is antithetic
+     */
+    public RandomStream runStream(long masterSeed, int runIndex) {
+        if (antithetic) {
+            return new RandomStream(runSeed(masterSeed, runIndex / 2), runIndex % 2 == 1);
+        }
+        return new RandomStream(runSeed(masterSeed, runIndex));
+    }
+
+    /**
+     * derives the seed of a single run, such that each run can be replayed by itself
+     * @param masterSeed the seed of the complete set of runs
+     * @param runIndex   the index of the run in the set
+     * @return a well-mixed seed, unique for each run index
+     */
+    public static long runSeed(long masterSeed, int runIndex) {
+        // splitmix64 finalizer on the golden-gamma sequence
+        long z = masterSeed + (runIndex + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public boolean isAntithetic() {
+        return antithetic;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /** @return an estimate of the number of runs that are submitted, but have not yet started */
+    public long getQueuedRuns() {
+        return pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount();
+    }
+
+    /** the number of runs that may execute at once */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /** stops accepting new runs, and releases the worker threads after the current runs finish */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /** passes all results on, while recording the values that stopping rules depend on */
+    private static class MonitoredRun implements DailyResults {
+        private final DailyResults target;
+        int lostSatellites = 0;
+        long totalParticles = 0;
+
+        MonitoredRun(DailyResults target) {
+            this.target = target;
+        }
+
+        @Override
+        public void addResults(long pSmall, long pLarge, int pHugh, int satsInOrbit, int flightsQueued) {
+            totalParticles = pSmall + pLarge + pHugh;
+            target.addResults(pSmall, pLarge, pHugh, satsInOrbit, flightsQueued);
+        }
+
+        @Override
+        public void addLostSatellites(int n) {
+            lostSatellites += n;
+            target.addLostSatellites(n);
+        }
+
+        @Override
+        public void addSaves(int n) {
+            target.addSaves(n);
+        }
+
+        @Override
+        public void finish() {
+            target.finish();
+        }
+    }
+}
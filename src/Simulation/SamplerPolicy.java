@@ -0,0 +1,62 @@
+package Simulation;
+
+import java.util.Locale;
+
+/**
+ * chooses the {@link CountSampler} of each binomial draw of a {@link SpaceSimulation}. A policy must be deterministic,
+ * such that runs with the same seed and policy produce identical results.
+ */
+public interface SamplerPolicy {
+    /**
+     * the fixed rule of earlier versions: poisson if the probability is below a quarter of {@link
+     * SpaceSimulation#POISSON_ERROR_MARGIN}, the exact binomial otherwise
+     */
+    SamplerPolicy HEURISTIC = new SamplerPolicy() {
+        @Override
+        public CountSampler select(long n, double p) {
+            return 4 * p < SpaceSimulation.POISSON_ERROR_MARGIN ? CountSampler.POISSON : CountSampler.BINOMIAL;
+        }
+
+        @Override
+        public String toString() {
+            return "heuristic";
+        }
+    };
+
+    /**
+     * @param n the number of experiments, at least 1
+     * @param p the probability of success of each experiment
+     * @return the sampler for the number of successes
+     */
+    CountSampler select(long n, double p);
+
+    /** @return a policy that always chooses the given sampler */
+    static SamplerPolicy fixed(CountSampler sampler) {
+        return new SamplerPolicy() {
+            @Override
+            public CountSampler select(long n, double p) {
+                return sampler;
+            }
+
+            @Override
+            public String toString() {
+                return sampler.name().toLowerCase(Locale.US);
+            }
+        };
+    }
+
+    /**
+     * parses a policy as given on the command line: "heuristic", the name of a sampler for a fixed policy, "auto" for
+     * an {@link AutoTunedPolicy} with the default bound, or "auto:[bound]"
+     */
+    static SamplerPolicy parse(String name) {
+        if (name.equals("heuristic")) return HEURISTIC;
+        if (name.equals("auto")) return new AutoTunedPolicy(AutoTunedPolicy.DEFAULT_MAX_DISTANCE);
+        if (name.startsWith("auto:")) return new AutoTunedPolicy(Double.parseDouble(name.substring(5)));
+
+        for (CountSampler sampler : CountSampler.values()) {
+            if (sampler.name().equalsIgnoreCase(name)) return fixed(sampler);
+        }
+        throw new IllegalArgumentException("Unknown sampler policy " + name);
+    }
+}
@@ -0,0 +1,37 @@
+package Simulation;
+
+/**
+ * the binomial draws of a day of a {@link SpaceSimulation}, in the order in which they are drawn. The first eight are the
+ * dangers and collisions, the next four the breakdowns and the decay of the populations. The last are only drawn by
+ * the {@link SpectrumSimulation}. The {@link SimulationMetrics} count the calls and the time of each draw separately.
+ */
+public enum SamplerSite {
+    /** dangers of operational satellites with non-functional satellites */
+    SAT_HUGH_DANGER,
+    /** dangers of operational satellites with large particles */
+    SAT_LARGE_DANGER,
+    /** dangers of operational satellites with small particles */
+    SAT_SMALL_DANGER,
+    /** collisions of non-functional satellites with large particles */
+    HUGH_LARGE_COLLISION,
+    /** collisions of pairs of non-functional satellites */
+    HUGH_HUGH_COLLISION,
+    /** collisions of the dangers with non-functional satellites that the observatories could not save */
+    SAT_HUGH_COLLISION,
+    /** collisions of the dangers with large particles that the observatories could not save */
+    SAT_LARGE_COLLISION,
+    /** collisions of the dangers with small particles */
+    SAT_SMALL_COLLISION,
+    /** breakdowns of operational satellites */
+    SAT_BREAKDOWN,
+    /** non-functional satellites falling into the atmosphere */
+    HUGH_FALL,
+    /** large particles falling into the atmosphere */
+    LARGE_FALL,
+    /** small particles falling into the atmosphere */
+    SMALL_FALL,
+    /** catastrophic collisions between particles of a {@link SpectrumSimulation} */
+    DEBRIS_COLLISION,
+    /** the division of fragments and falling particles over the size bins of a {@link SpectrumSimulation} */
+    SIZE_SPLIT
+}
@@ -0,0 +1,205 @@
+package Simulation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static Simulation.SpaceSimulation.NOF_TRACKED_OBJECTS;
+import static Simulation.SpaceSimulation.YEARS;
+import static Simulation.SpaceSimulation.probSplit;
+
+/**
+ * an immutable set of model parameters of a {@link SpaceSimulation}. All values are either integer/long or double
+ * precision, time is measured in days. See {@link SpaceSimulation} for the sources of the default values.
+ * <p>
+ * Every parameter is also addressable by its {@link Parameter}, such that variations can be created with {@link
+ * #with(Parameter, double)} and parameters can be swept, see {@link ParameterSweep}.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class Scenario {
+    /** the parameters of the model, with their default value */
+    public enum Parameter {
+        /** number of satellites that we want in the sky */
+        SATELLITES_REQUIRED(1200),
+        /** probability per day for a small or large particle to fall into the atmosphere or outer space */
+        FALL_PROB_SMALL(probSplit(300.0 / NOF_TRACKED_OBJECTS, YEARS)),
+        /** probability per day for a hugh particle to fall into the atmosphere or outer space */
+        FALL_PROB_LARGE(probSplit(300.0 / NOF_TRACKED_OBJECTS, YEARS)),
+        /** the number of particles a satellite creates when colliding */
+        SHREDDING_FACTOR(10_000),
+        /** the fraction of shredded particles that is smaller than 10 cm */
+        SHREDDING_SMALL_FRACTION(0.75),
+        /** number of hugh particles generated upon launching a new satellite */
+        LAUNCH_STAGES(2),
+        /** mean number of large particles generated upon launching a new satellite */
+        LAUNCH_PARTICLES_LARGE(50),
+        /** probability of a dangerous situation per satellite - particle pair per day */
+        // 12 avoidances per year: with 38_700 tracked particles and 19 satellites, we have 38_700 * 19 * p = 12
+        PROB_DANGER_PER_PARTICLE(probSplit(12.0 / (19 * NOF_TRACKED_OBJECTS), YEARS)),
+        /** average chance of collision when alarm is raised */
+        COLLISION_BY_DANGER_RISK(1.0 / 25_000),
+        /** breakdown probability per satellite per day. */
+        // Even though this would result in an exponential breakdown, this holds when the number of satellites in orbit is constant
+        SAT_BREAKDOWN_PROB(probSplit(0.1, YEARS)),
+        /** max satellite launches per day */
+        LAUNCHES_PER_DAY(2 * 90.0 / YEARS),
+        /** number of satellites that an observatory can resolve within 24 hours */
+        OBSERVATORY_CAPACITY(0.25),
+        /**
+         * number of observatories. The ESA has 19 satellites by itself. NaN, the default, derives it from the required
+         * satellites, see {@link #SATELLITES_PER_OBSERVATORY}
+         */
+        OBSERVATORIES(Double.NaN),
+        /** initial number of particles [1 ... 10] cm */
+        INITIAL_SMALL_PARTICLES(750_000),
+        /** initial number of particles > 10 cm */
+        INITIAL_LARGE_PARTICLES(29_000),
+        /** initial number of non-functional satellites still in orbit */
+        INITIAL_HUGH_PARTICLES(3600),
+        /** initial number of operational satellites in orbit */
+        INITIAL_SATELLITES(1800),
+        /** stepper setting: the maximum expected relative change of any population within a step of several days */
+        LEAP_TOLERANCE(0.01),
+        /** stepper setting: the maximum number of days of one step. At 1, every day is simulated exactly */
+        MAX_LEAP_DAYS(1);
+
+        /** the value of this parameter in {@link #DEFAULT}, or NaN if it is derived from other parameters */
+        public final double defaultValue;
+
+        Parameter(double defaultValue) {
+            this.defaultValue = defaultValue;
+        }
+    }
+
+    /** unless set explicitly, there is one observatory for this many required satellites, rounded down */
+    public static final int SATELLITES_PER_OBSERVATORY = 19;
+
+    /** the scenario with all parameters on their default value */
+    public static final Scenario DEFAULT = new Scenario(defaultValues());
+
+    /** values of all parameters, indexed by {@link Parameter#ordinal()} */
+    private final double[] values;
+
+    public final int satellitesRequiredInOrbit;
+    public final double fallProbSmall;
+    public final double fallProbLarge;
+    public final double shreddingFactor;
+    public final double shreddingSmallFraction;
+    /** mean number of large and small particles resulting from shredding one satellite */
+    public final double shreddingMeanLarge;
+    public final double shreddingMeanSmall;
+    public final int launchStages;
+    public final double launchPartMeanLarge;
+    public final double probDangerPerParticle;
+    public final double collisionByDangerRisk;
+    public final double satBreakdownProb;
+    public final double launchesPerDay;
+    public final double observatoryCapacity;
+    public final int nOfObservatories;
+    public final double observatorySavesPerDay;
+    public final long initialSmallParticles;
+    public final long initialLargeParticles;
+    public final int initialHughParticles;
+    public final int initialSatellites;
+    public final double leapTolerance;
+    public final int maxLeapDays;
+
+    private Scenario(double[] values) {
+        this.values = values;
+
+        satellitesRequiredInOrbit = (int) get(Parameter.SATELLITES_REQUIRED);
+        fallProbSmall = get(Parameter.FALL_PROB_SMALL);
+        fallProbLarge = get(Parameter.FALL_PROB_LARGE);
+        shreddingFactor = get(Parameter.SHREDDING_FACTOR);
+        shreddingSmallFraction = get(Parameter.SHREDDING_SMALL_FRACTION);
+        shreddingMeanLarge = shreddingFactor * (1 - shreddingSmallFraction);
+        shreddingMeanSmall = shreddingFactor * shreddingSmallFraction;
+        launchStages = (int) get(Parameter.LAUNCH_STAGES);
+        launchPartMeanLarge = get(Parameter.LAUNCH_PARTICLES_LARGE);
+        probDangerPerParticle = get(Parameter.PROB_DANGER_PER_PARTICLE);
+        collisionByDangerRisk = get(Parameter.COLLISION_BY_DANGER_RISK);
+        satBreakdownProb = get(Parameter.SAT_BREAKDOWN_PROB);
+        launchesPerDay = get(Parameter.LAUNCHES_PER_DAY);
+        observatoryCapacity = get(Parameter.OBSERVATORY_CAPACITY);
+        nOfObservatories = (int) get(Parameter.OBSERVATORIES);
+        observatorySavesPerDay = nOfObservatories * observatoryCapacity;
+        initialSmallParticles = (long) get(Parameter.INITIAL_SMALL_PARTICLES);
+        initialLargeParticles = (long) get(Parameter.INITIAL_LARGE_PARTICLES);
+        initialHughParticles = (int) get(Parameter.INITIAL_HUGH_PARTICLES);
+        initialSatellites = (int) get(Parameter.INITIAL_SATELLITES);
+        leapTolerance = get(Parameter.LEAP_TOLERANCE);
+        maxLeapDays = (int) get(Parameter.MAX_LEAP_DAYS);
+    }
+
+    private static double[] defaultValues() {
+        Parameter[] parameters = Parameter.values();
+        double[] values = new double[parameters.length];
+        for (Parameter p : parameters) {
+            values[p.ordinal()] = p.defaultValue;
+        }
+        return values;
+    }
+
+    /** @return the value of the given parameter in this scenario, which is derived if it was not set */
+    public double get(Parameter parameter) {
+        double value = values[parameter.ordinal()];
+        if (Double.isNaN(value) && parameter == Parameter.OBSERVATORIES) {
+            return (int) get(Parameter.SATELLITES_REQUIRED) / SATELLITES_PER_OBSERVATORY;
+        }
+        return value;
+    }
+
+    /** @return a scenario equal to this one, except that the given parameter has the given value */
+    public Scenario with(Parameter parameter, double value) {
+        double[] newValues = values.clone();
+        newValues[parameter.ordinal()] = value;
+        return new Scenario(newValues);
+    }
+
+    /** writes the values of all parameters */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(values.length);
+        for (double v : values) {
+            out.writeDouble(v);
+        }
+    }
+
+    /** @return the scenario written by {@link #write(DataOutput)} */
+    public static Scenario read(DataInput in) throws IOException {
+        int nOfParameters = in.readInt();
+        if (nOfParameters != Parameter.values().length)
+            throw new IllegalStateException("expected " + Parameter.values().length + " parameters, found " + nOfParameters);
+
+        double[] values = new double[nOfParameters];
+        for (int i = 0; i < nOfParameters; i++) {
+            values[i] = in.readDouble();
+        }
+        return new Scenario(values);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return (other instanceof Scenario) && Arrays.equals(values, ((Scenario) other).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    /** lists only the parameters that differ from the default, where derived parameters are not listed */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Scenario{");
+        String separator = "";
+        for (Parameter p : Parameter.values()) {
+            if (Double.compare(values[p.ordinal()], p.defaultValue) != 0) {
+                builder.append(String.format(Locale.US, "%s%s=%s", separator, p, get(p)));
+                separator = ", ";
+            }
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,193 @@
+package Simulation;
+
+/**
+ * the division of low earth orbit into shells of equal altitude width, for the {@link ShellSimulation}. Each shell has a
+ * share of the debris and of the satellites, and a share of the volume of all shells. The populations of a {@link
+ * Scenario} are divided over the shells by their share, and the satellites that are launched go to the shell that lacks
+ * most satellites relative to its share.
+ * <p>
+ * Objects descend by atmospheric drag from a shell into the shell below, and leave orbit from the lowest shell. The
+ * expected time an object stays in a shell decreases by a factor e for every scale height of lower altitude, which
+ * follows the density of the upper atmosphere. The times are calibrated such that an object at the reference altitude
+ * has the same expected lifetime as with the daily fall probability of the scenario.
+ */
+public final class ShellModel {
+    /** mean radius of the earth in km */
+    public static final double EARTH_RADIUS = 6371;
+    /** the range of altitudes of {@link #leo(double)} in km */
+    public static final double LEO_LOWEST_ALTITUDE = 400;
+    public static final double LEO_HIGHEST_ALTITUDE = 1400;
+    /** altitude and spread of the peak of the debris density of {@link #leo(double)}, in km */
+    public static final double DEBRIS_PEAK = 850;
+    public static final double DEBRIS_SPREAD = 150;
+    /** altitude and spread of the peak of the satellite density of {@link #leo(double)}, in km */
+    public static final double SATELLITE_PEAK = 550;
+    public static final double SATELLITE_SPREAD = 100;
+    /** a rough fit of the orbital lifetimes between 400 and 1000 km */
+    public static final double DEFAULT_SCALE_HEIGHT = 100;
+
+    private final double lowestAltitude;
+    private final double shellWidth;
+    private final int nOfShells;
+    private final double[] debrisShare;
+    private final double[] satelliteShare;
+    private final double[] volumeShare;
+    /** relative expected time that an object stays in each shell */
+    private final double[] residence;
+    /** total relative residence from the reference altitude down */
+    private final double referenceLifetime;
+
+    /**
+     * @param lowestAltitude    the altitude of the bottom of the lowest shell in km
+     * @param shellWidth        the altitude range of each shell in km
+     * @param debrisShare       for each shell, the relative amount of debris. Normalized to a sum of 1
+     * @param satelliteShare    for each shell, the relative amount of satellites. Normalized to a sum of 1
+     * @param scaleHeight       the decrease of altitude in km over which the time in a shell decreases by a factor e
+     * @param referenceAltitude the altitude at which objects have the lifetime of the daily fall probability
+     */
+    public ShellModel(
+            double lowestAltitude, double shellWidth, double[] debrisShare, double[] satelliteShare,
+            double scaleHeight, double referenceAltitude
+    ) {
+        if (lowestAltitude < 0) throw new IllegalArgumentException("lowestAltitude = " + lowestAltitude);
+        if (!(shellWidth > 0)) throw new IllegalArgumentException("shellWidth = " + shellWidth);
+        if (!(scaleHeight > 0)) throw new IllegalArgumentException("scaleHeight = " + scaleHeight);
+        if (debrisShare.length == 0 || debrisShare.length != satelliteShare.length)
+            throw new IllegalArgumentException(debrisShare.length + " debris shares for " + satelliteShare.length + " satellite shares");
+
+        this.lowestAltitude = lowestAltitude;
+        this.shellWidth = shellWidth;
+        nOfShells = debrisShare.length;
+        this.debrisShare = normalized(debrisShare);
+        this.satelliteShare = normalized(satelliteShare);
+
+        double[] volume = new double[nOfShells];
+        residence = new double[nOfShells];
+        double lifetime = 0;
+        for (int s = 0; s < nOfShells; s++) {
+            double inner = EARTH_RADIUS + altitude(s);
+            double outer = inner + shellWidth;
+            volume[s] = outer * outer * outer - inner * inner * inner;
+
+            residence[s] = Math.exp((altitude(s) + shellWidth / 2 - referenceAltitude) / scaleHeight);
+            if (altitude(s) <= referenceAltitude) lifetime += residence[s];
+        }
+        volumeShare = normalized(volume);
+        // if all shells are above the reference altitude, the lowest shell is the reference
+        referenceLifetime = lifetime > 0 ? lifetime : residence[0];
+    }
+
+    /**
+     * @param shellWidth the altitude range of each shell in km
+     * @return the shells between {@link #LEO_LOWEST_ALTITUDE} and {@link #LEO_HIGHEST_ALTITUDE}, with the debris and
+     * satellites spread around their peak altitudes as a normal density, and the debris peak as reference altitude
+     */
+    public static ShellModel leo(double shellWidth) {
+        int nOfShells = (int) Math.ceil((LEO_HIGHEST_ALTITUDE - LEO_LOWEST_ALTITUDE) / shellWidth);
+        double[] debris = new double[nOfShells];
+        double[] satellites = new double[nOfShells];
+        for (int s = 0; s < nOfShells; s++) {
+            double center = LEO_LOWEST_ALTITUDE + (s + 0.5) * shellWidth;
+            debris[s] = density(center, DEBRIS_PEAK, DEBRIS_SPREAD);
+            satellites[s] = density(center, SATELLITE_PEAK, SATELLITE_SPREAD);
+        }
+        return new ShellModel(LEO_LOWEST_ALTITUDE, shellWidth, debris, satellites, DEFAULT_SCALE_HEIGHT, DEBRIS_PEAK);
+    }
+
+    private static double density(double x, double mean, double spread) {
+        double z = (x - mean) / spread;
+        return Math.exp(-0.5 * z * z);
+    }
+
+    private static double[] normalized(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            if (!(v >= 0)) throw new IllegalArgumentException("negative share " + v);
+            sum += v;
+        }
+        if (!(sum > 0)) throw new IllegalArgumentException("all shares are zero");
+
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i] / sum;
+        }
+        return result;
+    }
+
+    /** @return the number of shells */
+    public int size() {
+        return nOfShells;
+    }
+
+    /** @return the altitude of the bottom of the given shell in km */
+    public double altitude(int shell) {
+        return lowestAltitude + shell * shellWidth;
+    }
+
+    /** @return the fraction of the debris in the given shell */
+    public double debrisShare(int shell) {
+        return debrisShare[shell];
+    }
+
+    /** @return the fraction of the satellites in the given shell */
+    public double satelliteShare(int shell) {
+        return satelliteShare[shell];
+    }
+
+    /**
+     * @return the factor by which the probability of a danger per pair of objects within the shell exceeds the
+     * probability per pair of the scenario, which holds for pairs anywhere in orbit. This is the inverse of the share of
+     * the volume of the shell, hence if the objects are spread by volume, the total number of dangers is unchanged.
+     */
+    public double crowding(int shell) {
+        return 1 / volumeShare[shell];
+    }
+
+    /**
+     * @param shell    the shell of the object
+     * @param fallProb the probability per day of the scenario for the object to fall into the atmosphere
+     * @return the probability per day for an object to descend into the shell below, or to leave orbit from the lowest
+     * shell
+     */
+    public double descentProb(int shell, double fallProb) {
+        // the expected lifetime 1 / fallProb is divided over the shells below the reference altitude by their residence
+        double daysInShell = residence[shell] / (fallProb * referenceLifetime);
+        return -Math.expm1(-1 / daysInShell);
+    }
+
+    /**
+     * divides the total over the shells by the given shares, with the largest remainders rounded up such that the parts
+     * sum to the total
+     */
+    static long[] apportion(long total, double[] shares) {
+        long[] parts = new long[shares.length];
+        double[] remainders = new double[shares.length];
+        long left = total;
+        for (int s = 0; s < shares.length; s++) {
+            double exact = total * shares[s];
+            parts[s] = (long) exact;
+            remainders[s] = exact - parts[s];
+            left -= parts[s];
+        }
+
+        for (; left > 0; left--) {
+            int largest = 0;
+            for (int s = 1; s < shares.length; s++) {
+                if (remainders[s] > remainders[largest]) largest = s;
+            }
+            parts[largest]++;
+            remainders[largest] = -1;
+        }
+        return parts;
+    }
+
+    /** @return a copy of the debris shares */
+    double[] debrisShares() {
+        return debrisShare.clone();
+    }
+
+    /** @return a copy of the satellite shares */
+    double[] satelliteShares() {
+        return satelliteShare.clone();
+    }
+}
@@ -0,0 +1,439 @@
+package Simulation;
+
+import Distributions.ExponentialDistribution;
+import Distributions.RandomStream;
+import Results.DailyResults;
+
+import java.util.concurrent.RecursiveAction;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * simulates the model of {@link SpaceSimulation} with the populations divided over altitude shells, see {@link
+ * ShellModel}. Dangers and collisions only occur between objects of the same shell, with the probability per pair scaled
+ * by the crowding of the shell. Fragments of a collision stay in the shell of the collision. Objects descend into the
+ * shell below instead of falling out of orbit, and launches go to the shell that lacks most satellites. The operational
+ * satellites keep their altitude. The observatories and the launch schedule are shared by all shells, and the results
+ * are the totals over all shells.
+ * <p>
+ * The draws of a shell only depend on the populations of that shell, hence they are executed in parallel across the
+ * shells with fork-join, in the pool of the calling thread or the common pool. Every shell has its own random streams,
+ * such that the results do not depend on the parallelism. Only the observatories, the descents and the launches are
+ * processed sequentially. The random stream of the run is split first for the launches, and then for each shell from low
+ * to high in the order of the streams of {@link SpaceSimulation}.
+ */
+public class ShellSimulation implements Runnable {
+    /** the smallest number of shells of which the draws are forked as a separate task */
+    private static final int SHELLS_PER_TASK = 4;
+    /** the phases of a day that are executed per shell */
+    private static final int DANGERS = 0;
+    private static final int COLLISIONS = 1;
+
+    private final Scenario scenario;
+    private final ShellModel shells;
+    private final SamplerPolicy samplerPolicy = SpaceSimulation.getSamplerPolicy();
+    private final int nOfShells;
+    private final boolean parallel;
+    private final int maxTime;
+    private int day = 0;
+
+    /** the populations of each shell, see {@link SpaceSimulation} */
+    private final long[] particlesSmall;
+    private final long[] particlesLarge;
+    private final int[] particlesHugh;
+    private final int[] satellitesInOrbit;
+    /** the target number of satellites of each shell */
+    private final double[] satellitesRequired;
+
+    /** probabilities per day of each shell */
+    private final double[] probDanger;
+    private final double[] descentProbSmall;
+    private final double[] descentProbHugh;
+
+    /** the events of the current day of each shell */
+    private final int[] collSatWithHugh;
+    private final int[] collSatWithLarge;
+    private final int[] collSatWithSmall;
+    private final int[] collHughWithLarge;
+    private final int[] collHughWithHugh;
+    private final int[] lostSatellites;
+    private final int[] descendingSmall;
+    private final int[] descendingLarge;
+    private final int[] descendingHugh;
+    private final int[] launches;
+
+    /** the random streams of each shell, one for each kind of event */
+    private final RandomStream[] dangerRand;
+    private final RandomStream[] collisionRand;
+    private final RandomStream[] breakdownRand;
+    private final RandomStream[] fallRand;
+    private final RandomStream[] shreddingRandLarge;
+    private final RandomStream[] shreddingRandSmall;
+    private final RandomStream launchRand;
+
+    /** number of days before the next satellite is launched */
+    private double daysUntilNextLaunch = 0;
+    /** the state of the observatories */
+    private int savesLeft;
+    private double daysUntilRefresh = 0;
+
+    private final DailyResults results;
+
+    /**
+     * @param scenario the model parameters, of which the populations are divided over the shells
+     * @param shells   the shells of the orbit
+     * @param runTime  number of results of this run, equal to the number of simulated days plus one
+     * @param rand     the random stream of this run
+     * @param parallel whether to execute the draws of the shells in parallel
+     * @param results  receives the total state over all shells of every simulated day
+     */
+    public ShellSimulation(
+            Scenario scenario, ShellModel shells, int runTime, RandomStream rand, boolean parallel, DailyResults results
+    ) {
+        if (scenario.maxLeapDays > 1)
+            throw new IllegalArgumentException("shells can not leap, maxLeapDays = " + scenario.maxLeapDays);
+
+        this.scenario = scenario;
+        this.shells = shells;
+        this.parallel = parallel;
+        this.results = results;
+        nOfShells = shells.size();
+        maxTime = runTime - 1;
+
+        double[] debrisShares = shells.debrisShares();
+        double[] satelliteShares = shells.satelliteShares();
+        particlesSmall = ShellModel.apportion(scenario.initialSmallParticles, debrisShares);
+        particlesLarge = ShellModel.apportion(scenario.initialLargeParticles, debrisShares);
+        particlesHugh = toInts(ShellModel.apportion(scenario.initialHughParticles, debrisShares));
+        satellitesInOrbit = toInts(ShellModel.apportion(scenario.initialSatellites, satelliteShares));
+        satellitesRequired = new double[nOfShells];
+
+        probDanger = new double[nOfShells];
+        descentProbSmall = new double[nOfShells];
+        descentProbHugh = new double[nOfShells];
+
+        collSatWithHugh = new int[nOfShells];
+        collSatWithLarge = new int[nOfShells];
+        collSatWithSmall = new int[nOfShells];
+        collHughWithLarge = new int[nOfShells];
+        collHughWithHugh = new int[nOfShells];
+        lostSatellites = new int[nOfShells];
+        descendingSmall = new int[nOfShells];
+        descendingLarge = new int[nOfShells];
+        descendingHugh = new int[nOfShells];
+        launches = new int[nOfShells];
+
+        dangerRand = new RandomStream[nOfShells];
+        collisionRand = new RandomStream[nOfShells];
+        breakdownRand = new RandomStream[nOfShells];
+        fallRand = new RandomStream[nOfShells];
+        shreddingRandLarge = new RandomStream[nOfShells];
+        shreddingRandSmall = new RandomStream[nOfShells];
+        launchRand = rand.split();
+
+        for (int s = 0; s < nOfShells; s++) {
+            satellitesRequired[s] = scenario.satellitesRequiredInOrbit * satelliteShares[s];
+            probDanger[s] = min(1, scenario.probDangerPerParticle * shells.crowding(s));
+            descentProbSmall[s] = shells.descentProb(s, scenario.fallProbSmall);
+            descentProbHugh[s] = shells.descentProb(s, scenario.fallProbLarge);
+
+            dangerRand[s] = rand.split();
+            collisionRand[s] = rand.split();
+            breakdownRand[s] = rand.split();
+            fallRand[s] = rand.split();
+            shreddingRandLarge[s] = rand.split();
+            shreddingRandSmall[s] = rand.split();
+        }
+        savesLeft = scenario.nOfObservatories;
+
+        storeResults();
+    }
+
+    private static int[] toInts(long[] values) {
+        int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (int) values[i];
+        }
+        return result;
+    }
+
+    /** runs a single simulation run */
+    public void run() {
+        while (!isFinished()) {
+            nextDay();
+        }
+        results.finish();
+    }
+
+    /** @return whether all days of this run have been simulated */
+    public boolean isFinished() {
+        return day >= maxTime;
+    }
+
+    /** @return the number of days simulated so far */
+    public int getDay() {
+        return day;
+    }
+
+    /** @return the shells of this run */
+    public ShellModel getShells() {
+        return shells;
+    }
+
+    /** @return the particles [1 ... 10] cm in the given shell */
+    public long getSmallParticles(int shell) {
+        return particlesSmall[shell];
+    }
+
+    /** @return the particles > 10 cm in the given shell */
+    public long getLargeParticles(int shell) {
+        return particlesLarge[shell];
+    }
+
+    /** @return the non-functional satellites in the given shell */
+    public int getHughParticles(int shell) {
+        return particlesHugh[shell];
+    }
+
+    /** @return the operational satellites in the given shell */
+    public int getSatellites(int shell) {
+        return satellitesInOrbit[shell];
+    }
+
+    /** simulates a single day of all shells and stores the total results */
+    public void nextDay() {
+        forEachShell(DANGERS);
+
+        // the observatories resolve the dangers of the shells from low to high, as long as they have saves left
+        for (int s = 0; s < nOfShells; s++) {
+            collSatWithHugh[s] = save(collSatWithHugh[s]);
+            collSatWithLarge[s] = save(collSatWithLarge[s]);
+        }
+
+        forEachShell(COLLISIONS);
+
+        int lost = 0;
+        for (int s = 0; s < nOfShells; s++) {
+            lost += lostSatellites[s];
+        }
+        results.addLostSatellites(lost);
+
+        descend();
+        launch();
+        refreshObservatories();
+        checkPopulations();
+        storeResults();
+        day++;
+    }
+
+    /** executes the given phase of the day for all shells, in parallel if enabled */
+    private void forEachShell(int phase) {
+        if (parallel && nOfShells >= 2 * SHELLS_PER_TASK) {
+            new ShellTask(phase, 0, nOfShells).invoke();
+        } else {
+            for (int s = 0; s < nOfShells; s++) {
+                executePhase(phase, s);
+            }
+        }
+    }
+
+    private void executePhase(int phase, int shell) {
+        if (phase == DANGERS) {
+            drawDangers(shell);
+        } else {
+            collide(shell);
+        }
+    }
+
+    /** the dangers and the collisions between non-operational objects of a shell, as in {@link SpaceSimulation} */
+    private void drawDangers(int s) {
+        final double pDanger = probDanger[s];
+        final double pCollision = pDanger * scenario.collisionByDangerRisk;
+        final int hugh = particlesHugh[s];
+        final int sats = satellitesInOrbit[s];
+
+        collSatWithHugh[s] = sample(SamplerSite.SAT_HUGH_DANGER, (long) hugh * sats, pDanger, dangerRand[s]);
+        collSatWithLarge[s] = sample(SamplerSite.SAT_LARGE_DANGER, particlesLarge[s] * sats, pDanger, dangerRand[s]);
+        collSatWithSmall[s] = sample(SamplerSite.SAT_SMALL_DANGER, particlesSmall[s] * sats, pDanger, dangerRand[s]);
+        collHughWithLarge[s] = sample(SamplerSite.HUGH_LARGE_COLLISION, particlesLarge[s] * hugh, pCollision, dangerRand[s]);
+        int hughWithHugh = sample(SamplerSite.HUGH_HUGH_COLLISION, (long) hugh * (hugh - 1), pCollision, dangerRand[s]);
+        collHughWithHugh[s] = min(hugh, hughWithHugh * 2);
+    }
+
+    /**
+     * the collisions of the dangers that were not saved, their effects, the breakdowns and the descents of a shell, as
+     * in {@link SpaceSimulation}. The descents are applied by {@link #descend()}.
+     */
+    private void collide(int s) {
+        final double collisionByDangerRisk = scenario.collisionByDangerRisk;
+
+        int satWithHugh = sample(SamplerSite.SAT_HUGH_COLLISION, collSatWithHugh[s], collisionByDangerRisk, collisionRand[s]);
+        int satWithLarge = sample(SamplerSite.SAT_LARGE_COLLISION, collSatWithLarge[s], collisionByDangerRisk, collisionRand[s]);
+        int satWithSmall = sample(SamplerSite.SAT_SMALL_COLLISION, collSatWithSmall[s], collisionByDangerRisk, collisionRand[s]);
+
+        satellitesInOrbit[s] -= satWithHugh;
+        particlesHugh[s] -= satWithHugh;
+        shredIntoParticles(s, satWithHugh * 2);
+
+        particlesHugh[s] -= max(collHughWithHugh[s] * 2, 0);
+        shredIntoParticles(s, collHughWithHugh[s] * 2);
+
+        particlesHugh[s] -= collHughWithLarge[s];
+        shredIntoParticles(s, collHughWithLarge[s]);
+
+        satellitesInOrbit[s] -= satWithLarge;
+        shredIntoParticles(s, satWithLarge);
+
+        satellitesInOrbit[s] -= satWithSmall;
+        particlesHugh[s] += satWithSmall;
+        lostSatellites[s] = satWithHugh + satWithLarge + satWithSmall;
+
+        int satBreakdown = sample(SamplerSite.SAT_BREAKDOWN, satellitesInOrbit[s], scenario.satBreakdownProb, breakdownRand[s]);
+        satellitesInOrbit[s] -= satBreakdown;
+        particlesHugh[s] += satBreakdown;
+
+        descendingHugh[s] = sample(SamplerSite.HUGH_FALL, particlesHugh[s], descentProbHugh[s], fallRand[s]);
+        descendingLarge[s] = sample(SamplerSite.LARGE_FALL, particlesLarge[s], descentProbSmall[s], fallRand[s]);
+        descendingSmall[s] = sample(SamplerSite.SMALL_FALL, particlesSmall[s], descentProbSmall[s], fallRand[s]);
+    }
+
+    /** moves the descending objects into the shell below, or out of orbit from the lowest shell */
+    private void descend() {
+        for (int s = 0; s < nOfShells; s++) {
+            particlesHugh[s] -= descendingHugh[s];
+            particlesLarge[s] -= descendingLarge[s];
+            particlesSmall[s] -= descendingSmall[s];
+            if (s > 0) {
+                particlesHugh[s - 1] += descendingHugh[s];
+                particlesLarge[s - 1] += descendingLarge[s];
+                particlesSmall[s - 1] += descendingSmall[s];
+            }
+        }
+    }
+
+    /** launches the satellites that are due, each to the shell that lacks most satellites */
+    private void launch() {
+        int total = 0;
+        for (int s = 0; s < nOfShells; s++) {
+            total += satellitesInOrbit[s];
+        }
+
+        daysUntilNextLaunch = max(0, daysUntilNextLaunch - 1);
+        while (daysUntilNextLaunch < 1 && total < scenario.satellitesRequiredInOrbit) {
+            int target = 0;
+            for (int s = 1; s < nOfShells; s++) {
+                if (satellitesRequired[s] - satellitesInOrbit[s] > satellitesRequired[target] - satellitesInOrbit[target])
+                    target = s;
+            }
+            satellitesInOrbit[target]++;
+            launches[target]++;
+            total++;
+            daysUntilNextLaunch += (1.0 / scenario.launchesPerDay);
+        }
+
+        for (int s = 0; s < nOfShells; s++) {
+            if (launches[s] == 0) continue;
+            particlesHugh[s] += launches[s] * scenario.launchStages;
+            particlesLarge[s] += ExponentialDistribution.sum(launches[s], 1.0 / scenario.launchPartMeanLarge, launchRand);
+            launches[s] = 0;
+        }
+    }
+
+    /** produce and add small and large particles resulting from shredding satellites in the given shell */
+    private void shredIntoParticles(int s, int nOfCollisions) {
+        if (nOfCollisions <= 0) return;
+        particlesLarge[s] += ExponentialDistribution.sum(nOfCollisions, 1.0 / scenario.shreddingMeanLarge, shreddingRandLarge[s]);
+        particlesSmall[s] += ExponentialDistribution.sum(nOfCollisions, 1.0 / scenario.shreddingMeanSmall, shreddingRandSmall[s]);
+    }
+
+    private int sample(SamplerSite site, long n, double p, RandomStream rand) {
+        return SpaceSimulation.sample(samplerPolicy, site, n, p, rand);
+    }
+
+    /**
+     * try to save the satellites
+     * @param number how many dangers there are
+     * @return how many dangers are left
+     */
+    private int save(int number) {
+        if (savesLeft > number) {
+            savesLeft -= number;
+            results.addSaves(number);
+            return 0;
+
+        } else {
+            number -= savesLeft;
+            results.addSaves(savesLeft);
+            savesLeft = 0;
+            return number;
+        }
+    }
+
+    private void refreshObservatories() {
+        daysUntilRefresh = max(0, daysUntilRefresh - 1);
+        while (daysUntilRefresh < 1 && savesLeft < scenario.nOfObservatories) {
+            savesLeft++;
+            daysUntilRefresh += (1.0 / scenario.observatorySavesPerDay);
+        }
+    }
+
+    private void checkPopulations() {
+        for (int s = 0; s < nOfShells; s++) {
+            if (satellitesInOrbit[s] < 0 || particlesSmall[s] < 0 || particlesLarge[s] < 0 || particlesHugh[s] < 0) {
+                throw new IllegalStateException(String.format(
+                        "Negative amount detected in shell %d after %d days:\n" +
+                                "sat in orbit: %d\n" +
+                                "hugh particles: %d\n" +
+                                "large particles: %d\n" +
+                                "small particles: %d",
+                        s, day,
+                        satellitesInOrbit[s],
+                        particlesHugh[s],
+                        particlesLarge[s],
+                        particlesSmall[s]
+                ));
+            }
+        }
+    }
+
+    private void storeResults() {
+        long small = 0;
+        long large = 0;
+        int hugh = 0;
+        int sats = 0;
+        for (int s = 0; s < nOfShells; s++) {
+            small += particlesSmall[s];
+            large += particlesLarge[s];
+            hugh += particlesHugh[s];
+            sats += satellitesInOrbit[s];
+        }
+        results.addResults(small, large, hugh, sats, scenario.satellitesRequiredInOrbit - sats);
+    }
+
+    /** executes a phase of the day for a range of shells, splitting the range in halves down to {@link #SHELLS_PER_TASK} */
+    private class ShellTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int phase;
+        private final int from;
+        private final int to;
+
+        ShellTask(int phase, int from, int to) {
+            this.phase = phase;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < 2 * SHELLS_PER_TASK) {
+                for (int s = from; s < to; s++) {
+                    executePhase(phase, s);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ShellTask(phase, from, middle), new ShellTask(phase, middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package Simulation;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * live counters of the simulation runs of this JVM, for watching the throughput of long batches. Counts the started and
+ * finished runs, the simulated days per worker thread, the calls and time of the binomial draws per {@link SamplerSite}
+ * and {@link CountSampler}, the allocations of the worker threads, and the runs waiting in the queue of a {@link
+ * RunScheduler}. The costs of the draws are summarized by {@link #samplerReport()}.
+ * <p>
+ * The metrics are disabled by default, such that the simulation does not pay for the time measurements. Once enabled
+ * with {@link #enable()}, they are registered as the MXBean {@value #OBJECT_NAME}, and can be exported in the Prometheus
+ * text format with a {@link MetricsExporter}. Runs are counted when they finish, hence the days per second are updated
+ * once per run.
+ */
+public class SimulationMetrics implements SimulationMetricsMXBean {
+    public static final String OBJECT_NAME = "SpaceDebris:type=SimulationMetrics";
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** the enabled metrics, or null if metrics are disabled */
+    static volatile SimulationMetrics active = null;
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder runsStarted = new LongAdder();
+    private final LongAdder runsCompleted = new LongAdder();
+    private final Map<String, LongAdder> workerDays = new ConcurrentHashMap<>();
+    /** the calls and time of the binomial draws, by call site and sampler */
+    private final LongAdder[][] samplerCalls = new LongAdder[SamplerSite.values().length][CountSampler.values().length];
+    private final LongAdder[][] samplerNanos = new LongAdder[SamplerSite.values().length][CountSampler.values().length];
+    /** the allocated bytes of each worker thread when it was first seen, by thread id */
+    private final Map<Long, Long> allocationBase = new ConcurrentHashMap<>();
+    /** the last known allocated bytes of each worker thread, such that finished threads keep counting */
+    private final Map<Long, Long> allocationLast = new ConcurrentHashMap<>();
+    private volatile RunScheduler scheduler = null;
+
+    private SimulationMetrics() {
+        for (int i = 0; i < samplerCalls.length; i++) {
+            for (int j = 0; j < samplerCalls[i].length; j++) {
+                samplerCalls[i][j] = new LongAdder();
+                samplerNanos[i][j] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * enables the collection of metrics and registers them with the platform MBean server. Has no effect if the
+     * metrics are already enabled.
+     * @return the enabled metrics
+     */
+    public static synchronized SimulationMetrics enable() {
+        if (active != null) return active;
+
+        SimulationMetrics metrics = new SimulationMetrics();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(metrics, new ObjectName(OBJECT_NAME));
+        } catch (JMException ex) {
+            throw new IllegalStateException("could not register " + OBJECT_NAME, ex);
+        }
+        if (THREADS.isThreadAllocatedMemorySupported()) THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        active = metrics;
+        return metrics;
+    }
+
+    /** stops collecting metrics, and unregisters them */
+    public static synchronized void disable() {
+        if (active == null) return;
+        active = null;
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (JMException ex) {
+            throw new IllegalStateException("could not unregister " + OBJECT_NAME, ex);
+        }
+    }
+
+    /** @return the enabled metrics, or null if metrics are disabled */
+    public static SimulationMetrics get() {
+        return active;
+    }
+
+    /** records the start of a run on the current thread, if metrics are enabled */
+    static void runStarted() {
+        SimulationMetrics metrics = active;
+        if (metrics == null) return;
+
+        metrics.runsStarted.increment();
+        long id = Thread.currentThread().getId();
+        if (!metrics.allocationBase.containsKey(id)) {
+            metrics.allocationBase.put(id, THREADS.getThreadAllocatedBytes(id));
+        }
+    }
+
+    /**
+     * records the end of a run on the current thread, if metrics are enabled
+     * @param days the number of days simulated by the run
+     */
+    static void runFinished(int days) {
+        SimulationMetrics metrics = active;
+        if (metrics == null) return;
+
+        metrics.runsCompleted.increment();
+        metrics.workerDays.computeIfAbsent(Thread.currentThread().getName(), k -> new LongAdder()).add(days);
+    }
+
+    /** records a binomial draw at the given call site by the given sampler. Draws of zero experiments are not counted */
+    void sampled(SamplerSite site, CountSampler sampler, long nanos) {
+        samplerCalls[site.ordinal()][sampler.ordinal()].increment();
+        samplerNanos[site.ordinal()][sampler.ordinal()].add(nanos);
+    }
+
+    /** reports the runs that wait in the queue of the given scheduler */
+    public void watch(RunScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public double getUptimeSeconds() {
+        return (System.nanoTime() - startNanos) * 1e-9;
+    }
+
+    @Override
+    public long getRunsStarted() {
+        return runsStarted.sum();
+    }
+
+    @Override
+    public long getRunsCompleted() {
+        return runsCompleted.sum();
+    }
+
+    @Override
+    public long getRunsActive() {
+        return getRunsStarted() - getRunsCompleted();
+    }
+
+    @Override
+    public long getQueuedRuns() {
+        RunScheduler s = scheduler;
+        return s == null ? 0 : s.getQueuedRuns();
+    }
+
+    @Override
+    public long getSimulatedDays() {
+        long sum = 0;
+        for (LongAdder days : workerDays.values()) {
+            sum += days.sum();
+        }
+        return sum;
+    }
+
+    @Override
+    public double getSimulatedDaysPerSecond() {
+        return getSimulatedDays() / getUptimeSeconds();
+    }
+
+    @Override
+    public Map<String, Long> getWorkerSimulatedDays() {
+        Map<String, Long> days = new TreeMap<>();
+        workerDays.forEach((worker, n) -> days.put(worker, n.sum()));
+        return days;
+    }
+
+    @Override
+    public Map<String, Double> getWorkerSimulatedDaysPerSecond() {
+        double seconds = getUptimeSeconds();
+        Map<String, Double> rates = new TreeMap<>();
+        workerDays.forEach((worker, n) -> rates.put(worker, n.sum() / seconds));
+        return rates;
+    }
+
+    @Override
+    public Map<String, Long> getSamplerCalls() {
+        return bySampler(samplerCalls);
+    }
+
+    @Override
+    public Map<String, Long> getSamplerNanos() {
+        return bySampler(samplerNanos);
+    }
+
+    @Override
+    public Map<String, Long> getCallSiteCalls() {
+        return bySite(samplerCalls);
+    }
+
+    @Override
+    public Map<String, Long> getCallSiteNanos() {
+        return bySite(samplerNanos);
+    }
+
+    private static Map<String, Long> bySampler(LongAdder[][] counters) {
+        Map<String, Long> values = new TreeMap<>();
+        for (CountSampler sampler : CountSampler.values()) {
+            long sum = 0;
+            for (SamplerSite site : SamplerSite.values()) {
+                sum += counters[site.ordinal()][sampler.ordinal()].sum();
+            }
+            values.put(label(sampler), sum);
+        }
+        return values;
+    }
+
+    private static Map<String, Long> bySite(LongAdder[][] counters) {
+        Map<String, Long> values = new TreeMap<>();
+        for (SamplerSite site : SamplerSite.values()) {
+            long sum = 0;
+            for (CountSampler sampler : CountSampler.values()) {
+                sum += counters[site.ordinal()][sampler.ordinal()].sum();
+            }
+            values.put(label(site), sum);
+        }
+        return values;
+    }
+
+    private static String label(Enum<?> value) {
+        return value.name().toLowerCase(Locale.US);
+    }
+
+    /**
+     * @return a table of the cost of each call site of the binomial draws: the number of calls, the mean and total
+     * time, the share of the total time of all draws, and the share of the calls that each sampler handled
+     */
+    public String samplerReport() {
+        long totalNanos = 0;
+        for (LongAdder[] site : samplerNanos) {
+            for (LongAdder nanos : site) {
+                totalNanos += nanos.sum();
+            }
+        }
+
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.US, "%-22s %12s %9s %10s %7s", "call site", "calls", "mean ns", "total ms", "share"));
+        for (CountSampler sampler : CountSampler.values()) {
+            out.append(String.format(Locale.US, " %9s", label(sampler)));
+        }
+        out.append('\n');
+
+        for (SamplerSite site : SamplerSite.values()) {
+            long calls = 0;
+            long nanos = 0;
+            for (CountSampler sampler : CountSampler.values()) {
+                calls += samplerCalls[site.ordinal()][sampler.ordinal()].sum();
+                nanos += samplerNanos[site.ordinal()][sampler.ordinal()].sum();
+            }
+            out.append(String.format(Locale.US, "%-22s %12d %9.1f %10.1f %6.1f%%", label(site), calls,
+                    calls == 0 ? 0.0 : (double) nanos / calls, nanos * 1e-6, totalNanos == 0 ? 0.0 : 100.0 * nanos / totalNanos
+            ));
+            for (CountSampler sampler : CountSampler.values()) {
+                long n = samplerCalls[site.ordinal()][sampler.ordinal()].sum();
+                out.append(String.format(Locale.US, " %8.1f%%", calls == 0 ? 0.0 : 100.0 * n / calls));
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        if (!THREADS.isThreadAllocatedMemorySupported()) return -1;
+
+        long sum = 0;
+        for (Map.Entry<Long, Long> entry : allocationBase.entrySet()) {
+            long id = entry.getKey();
+            long bytes = THREADS.getThreadAllocatedBytes(id);
+            // a thread that has terminated reports -1
+            if (bytes >= 0) {
+                allocationLast.put(id, bytes);
+            } else {
+                bytes = allocationLast.getOrDefault(id, entry.getValue());
+            }
+            sum += bytes - entry.getValue();
+        }
+        return sum;
+    }
+
+    @Override
+    public double getAllocatedBytesPerSecond() {
+        return getAllocatedBytes() / getUptimeSeconds();
+    }
+
+    /** @return the current values of all metrics, in the Prometheus text exposition format */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        metric(out, "spacedebris_uptime_seconds", "gauge", "Seconds since the metrics were enabled.", getUptimeSeconds());
+        metric(out, "spacedebris_runs_started_total", "counter", "Simulation runs started.", getRunsStarted());
+        metric(out, "spacedebris_runs_completed_total", "counter", "Simulation runs finished.", getRunsCompleted());
+        metric(out, "spacedebris_runs_active", "gauge", "Simulation runs executing.", getRunsActive());
+        metric(out, "spacedebris_runs_queued", "gauge", "Simulation runs waiting for a worker.", getQueuedRuns());
+        metric(out, "spacedebris_simulated_days_total", "counter", "Simulated days of finished runs.", getSimulatedDays());
+
+        header(out, "spacedebris_worker_simulated_days_total", "counter", "Simulated days of finished runs per worker.");
+        getWorkerSimulatedDays().forEach((worker, days) ->
+                sample(out, "spacedebris_worker_simulated_days_total", "worker", worker, days));
+        header(out, "spacedebris_worker_simulated_days_per_second", "gauge", "Average simulated days per second per worker.");
+        getWorkerSimulatedDaysPerSecond().forEach((worker, rate) ->
+                sample(out, "spacedebris_worker_simulated_days_per_second", "worker", worker, rate));
+
+        header(out, "spacedebris_sampler_calls_total", "counter", "Binomial draws per call site and sampler.");
+        samplerSamples(out, "spacedebris_sampler_calls_total", samplerCalls, 1);
+        header(out, "spacedebris_sampler_seconds_total", "counter", "Time spent in binomial draws per call site and sampler.");
+        samplerSamples(out, "spacedebris_sampler_seconds_total", samplerNanos, 1e-9);
+
+        metric(out, "spacedebris_allocated_bytes_total", "counter", "Bytes allocated by the worker threads.", getAllocatedBytes());
+        return out.toString();
+    }
+
+    private static void metric(StringBuilder out, String name, String type, String help, double value) {
+        header(out, name, type, help);
+        out.append(name).append(' ').append(format(value)).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String label, String value, double sample) {
+        out.append(name).append('{').append(label(label, value)).append("} ").append(format(sample)).append('\n');
+    }
+
+    private static void samplerSamples(StringBuilder out, String name, LongAdder[][] counters, double scale) {
+        for (SamplerSite site : SamplerSite.values()) {
+            for (CountSampler sampler : CountSampler.values()) {
+                out.append(name).append('{').append(label("site", label(site))).append(',')
+                        .append(label("sampler", label(sampler))).append("} ")
+                        .append(format(counters[site.ordinal()][sampler.ordinal()].sum() * scale)).append('\n');
+            }
+        }
+    }
+
+    private static String label(String label, String value) {
+        String escaped = value.replace("\\", "\\\\").replace("\"", "\\\"");
+        return label + "=\"" + escaped + '"';
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) return Long.toString((long) value);
+        return String.format(Locale.US, "%.6g", value);
+    }
+}
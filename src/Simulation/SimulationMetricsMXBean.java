@@ -0,0 +1,51 @@
+package Simulation;
+
+import java.util.Map;
+
+/**
+ * the attributes of the {@link SimulationMetrics}, as shown by JMX clients such as jconsole. Rates are averages since
+ * the metrics were enabled.
+ */
+public interface SimulationMetricsMXBean {
+
+    /** @return the number of seconds since the metrics were enabled */
+    double getUptimeSeconds();
+
+    long getRunsStarted();
+
+    long getRunsCompleted();
+
+    /** @return the number of runs that have started, but not yet finished */
+    long getRunsActive();
+
+    /** @return the number of runs that wait for a worker of the watched scheduler */
+    long getQueuedRuns();
+
+    /** @return the number of simulated days of all finished runs */
+    long getSimulatedDays();
+
+    double getSimulatedDaysPerSecond();
+
+    /** @return per worker thread, the number of simulated days of its finished runs */
+    Map<String, Long> getWorkerSimulatedDays();
+
+    /** @return per worker thread, the number of simulated days per second */
+    Map<String, Double> getWorkerSimulatedDaysPerSecond();
+
+    /** @return per sampler of the binomial draws, the number of calls */
+    Map<String, Long> getSamplerCalls();
+
+    /** @return per sampler of the binomial draws, the total time spent in nanoseconds */
+    Map<String, Long> getSamplerNanos();
+
+    /** @return per call site of the binomial draws, the number of calls */
+    Map<String, Long> getCallSiteCalls();
+
+    /** @return per call site of the binomial draws, the total time spent in nanoseconds */
+    Map<String, Long> getCallSiteNanos();
+
+    /** @return the number of bytes allocated by the worker threads, or -1 if this is not supported by the JVM */
+    long getAllocatedBytes();
+
+    double getAllocatedBytesPerSecond();
+}
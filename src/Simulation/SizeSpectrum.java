@@ -0,0 +1,156 @@
+package Simulation;
+
+/**
+ * the division of the debris of a {@link SpectrumSimulation} into logarithmic bins of characteristic length, from
+ * {@link #MIN_SIZE} up to the size of an intact satellite. Sizes are in meters.
+ * <p>
+ * Fragmentation follows the power law of the NASA standard breakup model (Johnson et al., "NASA's new breakup model of
+ * EVOLVE 4.0", 2001): the number of fragments larger than L is proportional to M^0.75 L^-1.71, where M is the mass of the
+ * broken object. The mass of an object grows with the cube of its size, hence the number of fragments of a broken
+ * particle is a fraction (L / {@link #INTACT_SIZE})^2.25 of that of an intact satellite. The fragments of an object are
+ * smaller than the object, and fragments below {@link #MIN_SIZE} are not counted.
+ * <p>
+ * A collision is catastrophic if the smaller object is at least {@link #CATASTROPHIC_RATIO} of the size of the larger,
+ * which corresponds to the threshold of 40 J/g of the breakup model at the typical collision speed of 10 km/s. Other
+ * collisions only crater the larger object and are neglected. Particles of at least this fraction of an intact satellite
+ * destroy it, and are also the particles that are tracked, as the large particles of {@link SpaceSimulation}.
+ */
+public final class SizeSpectrum {
+    /** the lower edge of the smallest bin */
+    public static final double MIN_SIZE = 0.01;
+    /** the size of an intact satellite, and the upper edge of the largest bin */
+    public static final double INTACT_SIZE = 1;
+    /** the exponent of the cumulative number of fragments per size of the NASA breakup model */
+    public static final double NASA_EXPONENT = 1.71;
+    /** the exponent of the number of fragments per size of the broken object, 0.75 of the exponent of the mass */
+    public static final double YIELD_EXPONENT = 0.75 * 3;
+    /** the smallest size ratio of two objects of which a collision is catastrophic */
+    public static final double CATASTROPHIC_RATIO = 0.1;
+
+    private final int binsPerDecade;
+    private final int nOfBins;
+    private final double exponent;
+    /** the edges of the bins, from {@link #MIN_SIZE} to {@link #INTACT_SIZE} */
+    private final double[] edges;
+    /** the geometric center of each bin */
+    private final double[] sizes;
+    /** the first bin of which the particles are tracked */
+    private final int firstTracked;
+    /** the share of the fragments in each bin of a broken object, by the bin of the object, where the last is intact */
+    private final double[][] fragmentShares;
+    /** the expected number of fragments of a broken object relative to an intact satellite, by the bin of the object */
+    private final double[] fragmentYield;
+
+    /**
+     * @param binsPerDecade the number of bins for each factor 10 of size
+     * @param exponent      the exponent of the cumulative number of fragments larger than a given size
+     */
+    public SizeSpectrum(int binsPerDecade, double exponent) {
+        if (binsPerDecade < 1) throw new IllegalArgumentException("binsPerDecade = " + binsPerDecade);
+        if (!(exponent > 0)) throw new IllegalArgumentException("exponent = " + exponent);
+
+        this.binsPerDecade = binsPerDecade;
+        this.exponent = exponent;
+        int decades = (int) Math.round(Math.log10(INTACT_SIZE / MIN_SIZE));
+        nOfBins = decades * binsPerDecade;
+
+        edges = new double[nOfBins + 1];
+        sizes = new double[nOfBins];
+        for (int i = 0; i <= nOfBins; i++) {
+            edges[i] = MIN_SIZE * Math.pow(10, (double) i / binsPerDecade);
+        }
+        for (int i = 0; i < nOfBins; i++) {
+            sizes[i] = Math.sqrt(edges[i] * edges[i + 1]);
+        }
+        firstTracked = (int) Math.round(Math.log10(CATASTROPHIC_RATIO * INTACT_SIZE / MIN_SIZE) * binsPerDecade);
+
+        fragmentShares = new double[nOfBins + 1][];
+        fragmentYield = new double[nOfBins + 1];
+        double intactFragments = cumulative(0) - cumulative(nOfBins);
+        for (int parent = 0; parent <= nOfBins; parent++) {
+            fragmentShares[parent] = shares(0, parent);
+            double parentSize = parent == nOfBins ? INTACT_SIZE : sizes[parent];
+            double fragments = cumulative(0) - cumulative(parent);
+            fragmentYield[parent] = Math.pow(parentSize / INTACT_SIZE, YIELD_EXPONENT) * fragments / intactFragments;
+        }
+    }
+
+    /** @return the spectrum of the NASA breakup model with the given number of bins per decade */
+    public static SizeSpectrum nasa(int binsPerDecade) {
+        return new SizeSpectrum(binsPerDecade, NASA_EXPONENT);
+    }
+
+    /** @return the relative number of fragments larger than the lower edge of the given bin */
+    private double cumulative(int bin) {
+        return Math.pow(edges[bin] / MIN_SIZE, -exponent);
+    }
+
+    /**
+     * @return for each bin, the share of the fragments in that bin of the fragments in bins [from, to), by the power law
+     * of this spectrum. Bins outside the range have a share of 0. An empty range has no shares at all.
+     */
+    double[] shares(int from, int to) {
+        double[] shares = new double[nOfBins];
+        double total = cumulative(from) - cumulative(to);
+        for (int i = from; i < to; i++) {
+            shares[i] = (cumulative(i) - cumulative(i + 1)) / total;
+        }
+        return shares;
+    }
+
+    /** @return the number of bins */
+    public int size() {
+        return nOfBins;
+    }
+
+    /** @return the number of bins for each factor 10 of size */
+    public int binsPerDecade() {
+        return binsPerDecade;
+    }
+
+    /** @return the characteristic length of the particles of the given bin, the geometric center of its edges */
+    public double binSize(int bin) {
+        return sizes[bin];
+    }
+
+    /** @return the lower edge of the given bin */
+    public double lowerEdge(int bin) {
+        return edges[bin];
+    }
+
+    /** @return the first bin of which the particles are tracked, and destroy a satellite on collision */
+    public int firstTracked() {
+        return firstTracked;
+    }
+
+    /**
+     * @return the largest difference of bin index of which a collision of two particles is catastrophic, see {@link
+     * #CATASTROPHIC_RATIO}
+     */
+    public int catastrophicRange() {
+        return (int) Math.floor(Math.log10(1 / CATASTROPHIC_RATIO) * binsPerDecade + 1e-9);
+    }
+
+    /**
+     * @return the factor by which the probability of a collision per pair of objects of the given sizes exceeds that of
+     * an intact satellite and a particle of negligible size. The cross section grows with the square of the sum of the
+     * sizes.
+     */
+    public static double crossSection(double sizeA, double sizeB) {
+        double relative = (sizeA + sizeB) / INTACT_SIZE;
+        return relative * relative;
+    }
+
+    /** @return the share of the fragments in each bin of an object of the given bin, or of an intact object if -1 */
+    double[] fragmentShares(int parent) {
+        return fragmentShares[parent < 0 ? nOfBins : parent];
+    }
+
+    /**
+     * @return the expected number of fragments of an object of the given bin, or of an intact object if -1, relative to
+     * an intact object
+     */
+    double fragmentYield(int parent) {
+        return fragmentYield[parent < 0 ? nOfBins : parent];
+    }
+}
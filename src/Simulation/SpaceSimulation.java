@@ -1,15 +1,18 @@
 package Simulation;
 
 import Distributions.*;
-import Results.SpaceResults;
+import Results.DailyResults;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
-import static Distributions.Distribution.randomToInt;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 
 /**
  * all values are either integer/long or double precision, time is measured in days, distance is measured in meters.
- * Values are derived from - (not) http://www.raa-journal.org/raa/index.php/raa/article/viewFile/1587/1442
+ * The model parameters are given by a {@link Scenario}, of which the default values are derived from - (not) http://www.raa-journal.org/raa/index.php/raa/article/viewFile/1587/1442
  *                         - https://www.esa.int/Our_Activities/Operations/Space_Debris/Reentry_and_collision_avoidance
  *                         - https://www.esa.int/Our_Activities/Operations/Space_Debris/Space_debris_by_the_numbers
  *                         - https://www.livescience.com/62113-how-much-space-junk-hits-earth.html
@@ -20,106 +23,411 @@ import static java.lang.Math.min;
  * @author Geert van Ieperen created on 22-5-2018.
  */
 @SuppressWarnings("WeakerAccess")
-public class SpaceSimulation extends Thread {
-    /** If this is false, poisson distributions may be used for collisions */
-    public static final boolean FORCE_NORMAL_DIST = false;
+public class SpaceSimulation implements Runnable {
     /** if the error resulting from assuming poisson at binomials falls below this margin, poisson is used instead */
     public static final double POISSON_ERROR_MARGIN = 0.001;
+    /** the sampler policy of the runs that are created from now on */
+    private static volatile SamplerPolicy defaultPolicy = SamplerPolicy.HEURISTIC;
 
     /** Conversion factors */
     public static final int YEARS = 365; // in days
     public static final int NOF_TRACKED_OBJECTS = 38_700; // a few values are based on this
 
-    /** number of satellites that we want in the sky */
-    public static final int satellitesRequiredInOrbit = 1200;
-
-    /** average period for debris to fall into the atmosphere or outer space in days */
-    public static final double fallProbSmall = probSplit(300.0 / NOF_TRACKED_OBJECTS, YEARS);
-    public static final double fallProbLarge = fallProbSmall;
-    /** the number of particles a satellite creates when colliding */
-    public static final double shreddingFactor = 10_000;
-    /** the fraction of shredded particles that is smaller than 10 cm */
-    public static final double shreddingSmallFraction = 0.75;
-    /** distributions for the shredding values */
-    public static final Distribution shreddingDistLarge =
-            new ExponentialDistribution(1.0 / (shreddingFactor * (1 - shreddingSmallFraction)));
-    public static final Distribution shreddingDistSmall =
-            new ExponentialDistribution(1.0 / (shreddingFactor * shreddingSmallFraction));
-
-    /** number of hugh particles generated upon launching a new satellite */
-    public static final int launchStages = 2;
-    public static final Distribution launchPartDistLarge = new ExponentialDistribution(1.0 / 50);
-    /** probability of a dangerous situation per satellite - particle pair per day */
-    // 12 avoidances per year: with 38_700 tracked particles and 19 satellites, we have 38_700 * 19 * p = 12
-    public static final double probDangerPerParticle = probSplit(12.0 / (19 * NOF_TRACKED_OBJECTS), YEARS);
-    /** average chance of collision when alarm is raised */
-    public static final double collisionByDangerRisk = 1.0 / 25_000;
-    /** breakdown probability per satellite per day. */
-    // Even though this would result in an exponential breakdown, this holds when the number of satellites in orbit is constant
-    public final static double satBreakdownProb = probSplit(0.1, YEARS);
-
-    /** max satellite launches per day */
-    public static final double launchesPerDay = 2 * 90.0 / YEARS;
-    /** number of satellites that an observatory can resolve within 24 hours */
-    public static final double observatoryCapacity = 0.25;
-    // the ESA has 19 satellites by itself
-    public static final int nOfObservatories = satellitesRequiredInOrbit / 19;
-    public static final double observatorySavesPerDay = nOfObservatories * observatoryCapacity;
+    /** the model parameters of this run */
+    private final Scenario scenario;
+    /** chooses the sampler of every binomial draw of this run */
+    private final SamplerPolicy samplerPolicy = defaultPolicy;
 
     /** particles [1 ... 10] cm */
-    private long particlesSmall = 750_000;
+    private long particlesSmall;
     /** particles > 10 cm */
-    private long particlesLarge = 29_000;
+    private long particlesLarge;
     /** non-functional satellites still in orbit */
-    private int particlesHugh = 3600;
+    private int particlesHugh;
     /** operational satellites in orbit */
-    private int satellitesInOrbit = 1800;
+    private int satellitesInOrbit;
     /** number of days before the next satellite is launched */
     private double daysUntilNextLaunch = 0;
+    /** number of days simulated so far */
+    private int day = 0;
 
+    /**
+     * the random streams of this run, one for each kind of event. Runs with the same seed draw the same kind of event
+     * from the same stream, such that the runs of two scenarios stay synchronized (common random numbers)
+     */
+    private final RandomStream dangerRand;
+    private final RandomStream collisionRand;
+    private final RandomStream breakdownRand;
+    private final RandomStream fallRand;
+    private final RandomStream shreddingRandLarge;
+    private final RandomStream shreddingRandSmall;
+    private final RandomStream launchRand;
+    /** rates of the exponential number of particles of shredding and launching */
+    private final double shreddingRateLarge;
+    private final double shreddingRateSmall;
+    private final double launchPartRateLarge;
+    /** the probabilities and intervals of the scenario that are derived once for every day */
+    private final double probDangerCollision;
+    private final double launchInterval;
+    private final double refreshInterval;
+
+    /** observatories capable of saving satellites from collisions */
+    private final Observatories esa;
     /** results are stored here */
-    private final SpaceResults results;
+    private final DailyResults results;
     private final int maxTime;
 
-    public SpaceSimulation(int runTime) {
-        results = new SpaceResults(runTime);
+    /**
+     * @param scenario the model parameters
+     * @param runTime  number of results of this run, equal to the number of simulated days plus one
+     * @param seed     the seed of the random stream. Two runs with the same seed produce identical results.
+     * @param results  receives the state of every simulated day
+     */
+    public SpaceSimulation(Scenario scenario, int runTime, long seed, DailyResults results) {
+        this(scenario, runTime, new RandomStream(seed), results);
+    }
+
+    /**
+     * @param scenario the model parameters
+     * @param runTime  number of results of this run, equal to the number of simulated days plus one
+     * @param rand     the random stream of this run, of which a substream is split for each kind of event
+     * @param results  receives the state of every simulated day
+     */
+    public SpaceSimulation(Scenario scenario, int runTime, RandomStream rand, DailyResults results) {
+        // arguments are evaluated from left to right, hence the substreams are split in a fixed order
+        this(scenario, runTime, results,
+                rand.split(), rand.split(), rand.split(), rand.split(), rand.split(), rand.split(), rand.split()
+        );
+
+        particlesSmall = scenario.initialSmallParticles;
+        particlesLarge = scenario.initialLargeParticles;
+        particlesHugh = scenario.initialHughParticles;
+        satellitesInOrbit = scenario.initialSatellites;
+
+        storeResults();
+    }
+
+    private SpaceSimulation(
+            Scenario scenario, int runTime, DailyResults results,
+            RandomStream dangerRand, RandomStream collisionRand, RandomStream breakdownRand, RandomStream fallRand,
+            RandomStream shreddingRandLarge, RandomStream shreddingRandSmall, RandomStream launchRand
+    ) {
+        this.scenario = scenario;
+        this.results = results;
         maxTime = runTime - 1;
 
-        results.addResults(particlesSmall, particlesLarge, particlesHugh, satellitesInOrbit);
+        this.dangerRand = dangerRand;
+        this.collisionRand = collisionRand;
+        this.breakdownRand = breakdownRand;
+        this.fallRand = fallRand;
+        this.shreddingRandLarge = shreddingRandLarge;
+        this.shreddingRandSmall = shreddingRandSmall;
+        this.launchRand = launchRand;
+        shreddingRateLarge = 1.0 / scenario.shreddingMeanLarge;
+        shreddingRateSmall = 1.0 / scenario.shreddingMeanSmall;
+        launchPartRateLarge = 1.0 / scenario.launchPartMeanLarge;
+        probDangerCollision = scenario.probDangerPerParticle * scenario.collisionByDangerRisk;
+        launchInterval = 1.0 / scenario.launchesPerDay;
+        refreshInterval = 1.0 / scenario.observatorySavesPerDay;
+        esa = new Observatories();
+    }
+
+    /**
+     * continues a run from the state written by {@link #writeState(DataOutput)}. The results of the days before the
+     * saved state must be restored separately.
+     * @param scenario the model parameters of the saved run
+     * @param runTime  number of results of the saved run
+     * @param in       the saved state
+     * @param results  receives the state of every remaining day
+     */
+    public static SpaceSimulation restore(Scenario scenario, int runTime, DataInput in, DailyResults results)
+            throws IOException {
+        SpaceSimulation sim = new SpaceSimulation(scenario, runTime, results,
+                RandomStream.read(in), RandomStream.read(in), RandomStream.read(in), RandomStream.read(in),
+                RandomStream.read(in), RandomStream.read(in), RandomStream.read(in)
+        );
+
+        sim.particlesSmall = in.readLong();
+        sim.particlesLarge = in.readLong();
+        sim.particlesHugh = in.readInt();
+        sim.satellitesInOrbit = in.readInt();
+        sim.daysUntilNextLaunch = in.readDouble();
+        sim.day = in.readInt();
+        sim.esa.savesLeft = in.readInt();
+        sim.esa.daysUntilRefresh = in.readDouble();
+        return sim;
+    }
+
+    /** writes the state of this run between two days, including the state of its random streams */
+    public void writeState(DataOutput out) throws IOException {
+        dangerRand.write(out);
+        collisionRand.write(out);
+        breakdownRand.write(out);
+        fallRand.write(out);
+        shreddingRandLarge.write(out);
+        shreddingRandSmall.write(out);
+        launchRand.write(out);
+
+        out.writeLong(particlesSmall);
+        out.writeLong(particlesLarge);
+        out.writeInt(particlesHugh);
+        out.writeInt(satellitesInOrbit);
+        out.writeDouble(daysUntilNextLaunch);
+        out.writeInt(day);
+        out.writeInt(esa.savesLeft);
+        out.writeDouble(esa.daysUntilRefresh);
+    }
+
+    /**
+     * copies the state of {@link #writeState(DataOutput)} into a new run, except for the random streams, such that the
+     * copy continues independently of this run. The copy does not store the current day again.
+     * @param rand    the random stream of the copy, of which its substreams are split as by the constructor
+     * @param results receives the state of every remaining day of the copy
+     * @return a run that continues from the current state of this run
+     */
+    SpaceSimulation branch(RandomStream rand, DailyResults results) {
+        SpaceSimulation copy = new SpaceSimulation(scenario, maxTime + 1, results,
+                rand.split(), rand.split(), rand.split(), rand.split(), rand.split(), rand.split(), rand.split()
+        );
+
+        copy.particlesSmall = particlesSmall;
+        copy.particlesLarge = particlesLarge;
+        copy.particlesHugh = particlesHugh;
+        copy.satellitesInOrbit = satellitesInOrbit;
+        copy.daysUntilNextLaunch = daysUntilNextLaunch;
+        copy.day = day;
+        copy.esa.savesLeft = esa.savesLeft;
+        copy.esa.daysUntilRefresh = esa.daysUntilRefresh;
+        return copy;
     }
 
     /**
      * runs a single simulation run
      */
     public void run() {
-        Observatories esa = new Observatories();
-        for (int i = 0; i < maxTime; i++) {
-            progressOneDay(esa);
-            esa.nextDay();
-
-            if (satellitesInOrbit < 0 || particlesSmall < 0 || particlesLarge < 0 || particlesHugh < 0) {
-                throw new IllegalStateException(String.format(
-                        "Negative amount detected after %d days:\n" +
-                                "sat in orbit: %d\n" +
-                                "hugh particles: %d\n" +
-                                "large particles: %d\n" +
-                                "small particles: %d",
-                        i,
-                        satellitesInOrbit,
-                        particlesHugh,
-                        particlesLarge,
-                        particlesSmall
-                ));
-            }
+        while (!isFinished()) {
+            nextStep();
+        }
+        results.finish();
+    }
+
+    /**
+     * advances this run by one step of {@link #leapSize()} days, and stores the results of every day of the step. With
+     * the default {@link Scenario#maxLeapDays} of 1, this is equal to {@link #nextDay()}.
+     * @return the number of days simulated
+     */
+    public int nextStep() {
+        int days = leapSize();
+        if (days == 1) {
+            nextDay();
+        } else {
+            leap(days);
+        }
+        return days;
+    }
+
+    /** @return whether all days of this run have been simulated */
+    public boolean isFinished() {
+        return day >= maxTime;
+    }
+
+    /** @return the number of days simulated so far */
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * simulates a single day and stores its results. May be called at most as often as the number of simulated days
+     * given at construction.
+     */
+    public void nextDay() {
+        progressOneDay(esa);
+        esa.nextDay();
+        checkPopulations();
+        storeResults();
+        day++;
+    }
+
+    private void checkPopulations() {
+        // the sign bit of the union is set if any of the populations is negative, which takes a single branch
+        if ((satellitesInOrbit | particlesHugh | particlesLarge | particlesSmall) < 0) throw negativePopulation();
+    }
+
+    private IllegalStateException negativePopulation() {
+        return new IllegalStateException(String.format(
+                "Negative amount detected after %d days:\n" +
+                        "sat in orbit: %d\n" +
+                        "hugh particles: %d\n" +
+                        "large particles: %d\n" +
+                        "small particles: %d",
+                day,
+                satellitesInOrbit,
+                particlesHugh,
+                particlesLarge,
+                particlesSmall
+        ));
+    }
+
+    /**
+     * chooses the number of days of the next step, such that the expected change of every population within the step
+     * stays below {@link Scenario#leapTolerance} of its size, and its standard deviation as well (Cao, Gillespie and
+     * Petzold, 2006). The change of a population is estimated by the mean and variance of its daily change in the current
+     * state. Shredding adds many particles at once, hence during a cascade the variance of the particle counts reduces
+     * the step to single days.
+     * @return the number of days of the next step, between 1 and both {@link Scenario#maxLeapDays} and the remaining days
+     */
+    int leapSize() {
+        int maxDays = min(scenario.maxLeapDays, maxTime - day);
+        if (maxDays <= 1) return 1;
+
+        final double pDanger = scenario.probDangerPerParticle;
+        final double pCollision = pDanger * scenario.collisionByDangerRisk;
+        final double shredsLarge = scenario.shreddingMeanLarge;
+        final double shredsSmall = scenario.shreddingMeanSmall;
+
+        // expected number of events per day. Saves are ignored, which only overestimates the changes
+        double satShreds = satellitesInOrbit * (particlesHugh + particlesLarge) * pCollision;
+        double satDisabled = satellitesInOrbit * (particlesSmall * pCollision + scenario.satBreakdownProb);
+        double hughShreds = particlesHugh * (particlesLarge + 2.0 * (particlesHugh - 1)) * pCollision;
+        double shreds = satShreds + hughShreds;
+        double launches = satellitesInOrbit < scenario.satellitesRequiredInOrbit ? scenario.launchesPerDay : 0;
+
+        // mean and variance of the daily change of each population. The number of shredded particles is exponential,
+        // hence its second moment is twice the square of its mean
+        double tau = maxDays;
+        tau = min(tau, stepBound(satellitesInOrbit, satShreds + satDisabled + launches, satShreds + satDisabled + launches));
+        tau = min(tau, stepBound(particlesHugh,
+                particlesHugh * scenario.fallProbLarge + satDisabled + shreds + launches * scenario.launchStages,
+                particlesHugh * scenario.fallProbLarge + satDisabled + 4 * shreds + launches * scenario.launchStages * scenario.launchStages
+        ));
+        tau = min(tau, stepBound(particlesLarge,
+                particlesLarge * scenario.fallProbSmall + shreds * shredsLarge + launches * scenario.launchPartMeanLarge,
+                particlesLarge * scenario.fallProbSmall + shreds * 2 * shredsLarge * shredsLarge
+                        + launches * 2 * scenario.launchPartMeanLarge * scenario.launchPartMeanLarge
+        ));
+        tau = min(tau, stepBound(particlesSmall,
+                particlesSmall * scenario.fallProbSmall + shreds * shredsSmall,
+                particlesSmall * scenario.fallProbSmall + shreds * 2 * shredsSmall * shredsSmall
+        ));
+
+        return max(1, (int) tau);
+    }
+
+    /**
+     * @param size     the size of a population
+     * @param mean     the expected absolute daily change of the population
+     * @param variance the variance of the daily change of the population
+     * @return the largest number of days for which both the expected change and its standard deviation stay below the
+     * tolerated change of the population
+     */
+    private double stepBound(double size, double mean, double variance) {
+        double tolerated = max(scenario.leapTolerance * size, 1);
+        return min(tolerated / mean, tolerated * tolerated / variance);
+    }
+
+    /**
+     * simulates the given number of days at once, using the populations at the start of the leap for all days. The
+     * number of events of each kind is sampled once for the whole leap, and the effects of the events are processed as
+     * in a single day. The daily results within the leap are interpolated linearly between the start and the end of the
+     * leap, and the satellites lost within the leap are reported before its first day.
+     * @param days the number of days to simulate, at least 2 and at most the number of remaining days
+     */
+    private void leap(int days) {
+        final double probDangerPerParticle = scenario.probDangerPerParticle;
+        final double collisionByDangerRisk = scenario.collisionByDangerRisk;
+
+        long startSmall = particlesSmall;
+        long startLarge = particlesLarge;
+        int startHugh = particlesHugh;
+        int startSats = satellitesInOrbit;
+
+        // a sum of binomials with equal probability is a binomial of the total number of experiments
+        int collSatWithHugh = sample(SamplerSite.SAT_HUGH_DANGER, (long) particlesHugh * satellitesInOrbit * days, probDangerPerParticle, dangerRand);
+        int collSatWithLarge = sample(SamplerSite.SAT_LARGE_DANGER, particlesLarge * satellitesInOrbit * days, probDangerPerParticle, dangerRand);
+        int collSatWithSmall = sample(SamplerSite.SAT_SMALL_DANGER, particlesSmall * satellitesInOrbit * days, probDangerPerParticle, dangerRand);
+        int collHughWithLarge = sample(SamplerSite.HUGH_LARGE_COLLISION, particlesLarge * particlesHugh * days, probDangerCollision, dangerRand);
+        int collHughWithHugh = sample(SamplerSite.HUGH_HUGH_COLLISION, (long) particlesHugh * (particlesHugh - 1) * days, probDangerCollision, dangerRand);
+
+        collHughWithHugh = min(particlesHugh, collHughWithHugh * 2);
+        // within a leap, more collisions may be sampled than there are objects
+        int hughLeft = max(0, particlesHugh - collHughWithHugh * 2);
+        collHughWithLarge = min(hughLeft, collHughWithLarge);
+        hughLeft -= collHughWithLarge;
+
+        // the observatories can also use the saves that are refreshed during the leap
+        esa.beginLeap(days);
+        collSatWithHugh = sample(SamplerSite.SAT_HUGH_COLLISION, esa.save(collSatWithHugh), collisionByDangerRisk, collisionRand);
+        collSatWithLarge = sample(SamplerSite.SAT_LARGE_COLLISION, esa.save(collSatWithLarge), collisionByDangerRisk, collisionRand);
+        collSatWithSmall = sample(SamplerSite.SAT_SMALL_COLLISION, collSatWithSmall, collisionByDangerRisk, collisionRand);
+        esa.endLeap();
+
+        collSatWithHugh = min(collSatWithHugh, min(satellitesInOrbit, hughLeft));
+        collSatWithLarge = min(collSatWithLarge, satellitesInOrbit - collSatWithHugh);
+        collSatWithSmall = min(collSatWithSmall, satellitesInOrbit - collSatWithHugh - collSatWithLarge);
+
+        // process effects of collisions
+        satellitesInOrbit -= collSatWithHugh;
+        particlesHugh -= collSatWithHugh;
+        shredIntoParticles(collSatWithHugh * 2);
+        results.addLostSatellites(collSatWithHugh);
+
+        particlesHugh -= min(collHughWithHugh * 2, particlesHugh);
+        shredIntoParticles(collHughWithHugh * 2);
+
+        particlesHugh -= collHughWithLarge;
+        shredIntoParticles(collHughWithLarge);
+
+        satellitesInOrbit -= collSatWithLarge;
+        shredIntoParticles(collSatWithLarge);
+        results.addLostSatellites(collSatWithLarge);
 
-            results.addResults(particlesSmall, particlesLarge, particlesHugh, satellitesInOrbit);
+        satellitesInOrbit -= collSatWithSmall;
+        particlesHugh += collSatWithSmall;
+        results.addLostSatellites(collSatWithSmall);
+
+        // survival over the leap is the product of the daily survival
+        int satBreakdown = sample(SamplerSite.SAT_BREAKDOWN, satellitesInOrbit, leapProb(scenario.satBreakdownProb, days), breakdownRand);
+        satellitesInOrbit -= satBreakdown;
+        particlesHugh += satBreakdown;
+
+        particlesHugh -= sample(SamplerSite.HUGH_FALL, particlesHugh, leapProb(scenario.fallProbLarge, days), fallRand);
+        particlesLarge -= sample(SamplerSite.LARGE_FALL, particlesLarge, leapProb(scenario.fallProbSmall, days), fallRand);
+        particlesSmall -= sample(SamplerSite.SMALL_FALL, particlesSmall, leapProb(scenario.fallProbSmall, days), fallRand);
+
+        // launches are scheduled day by day, as in a single day
+        int launches = 0;
+        for (int i = 0; i < days; i++) {
+            daysUntilNextLaunch = max(0, daysUntilNextLaunch - 1);
+            while (daysUntilNextLaunch < 1 && this.satellitesInOrbit < scenario.satellitesRequiredInOrbit) {
+                this.satellitesInOrbit++;
+                launches++;
+                daysUntilNextLaunch += launchInterval;
+            }
+        }
+        particlesHugh += launches * scenario.launchStages;
+        particlesLarge += ExponentialDistribution.sum(launches, launchPartRateLarge, launchRand);
+
+        checkPopulations();
+
+        for (int i = 1; i <= days; i++) {
+            double f = (double) i / days;
+            long small = startSmall + Math.round((particlesSmall - startSmall) * f);
+            long large = startLarge + Math.round((particlesLarge - startLarge) * f);
+            int hugh = startHugh + (int) Math.round((particlesHugh - startHugh) * f);
+            int sats = startSats + (int) Math.round((satellitesInOrbit - startSats) * f);
+            results.addResults(small, large, hugh, sats, scenario.satellitesRequiredInOrbit - sats);
         }
+        day += days;
+    }
+
+    /** @return the probability of at least one success in the given number of days, with the given daily probability */
+    private static double leapProb(double dailyProb, int days) {
+        return 1 - Math.pow(1 - dailyProb, days);
     }
 
-    /** returns the results, but only after the {@link #run()} method has finished */
-    public SpaceResults results() throws InterruptedException {
-        join();
-        return results;
+    private void storeResults() {
+        int flightsQueued = scenario.satellitesRequiredInOrbit - satellitesInOrbit;
+        results.addResults(particlesSmall, particlesLarge, particlesHugh, satellitesInOrbit, flightsQueued);
     }
 
     /**
@@ -127,20 +435,23 @@ public class SpaceSimulation extends Thread {
      * @param obs an observatory capable of saving satellites from collisions
      */
     private void progressOneDay(Observatories obs) {
+        final double probDangerPerParticle = scenario.probDangerPerParticle;
+        final double collisionByDangerRisk = scenario.collisionByDangerRisk;
+
         // different types of collisions
-        int collSatWithHugh = sampleOptimized((long) particlesHugh * satellitesInOrbit, probDangerPerParticle);
-        int collSatWithLarge = sampleOptimized(particlesLarge * satellitesInOrbit, probDangerPerParticle);
-        int collSatWithSmall = sampleOptimized(particlesSmall * satellitesInOrbit, probDangerPerParticle);
-        int collHughWithLarge = sampleOptimized(particlesLarge * particlesHugh, probDangerPerParticle * collisionByDangerRisk);
-        int collHughWithHugh = sampleOptimized((long) particlesHugh * (particlesHugh - 1), probDangerPerParticle * collisionByDangerRisk);
+        int collSatWithHugh = sample(SamplerSite.SAT_HUGH_DANGER, (long) particlesHugh * satellitesInOrbit, probDangerPerParticle, dangerRand);
+        int collSatWithLarge = sample(SamplerSite.SAT_LARGE_DANGER, particlesLarge * satellitesInOrbit, probDangerPerParticle, dangerRand);
+        int collSatWithSmall = sample(SamplerSite.SAT_SMALL_DANGER, particlesSmall * satellitesInOrbit, probDangerPerParticle, dangerRand);
+        int collHughWithLarge = sample(SamplerSite.HUGH_LARGE_COLLISION, particlesLarge * particlesHugh, probDangerCollision, dangerRand);
+        int collHughWithHugh = sample(SamplerSite.HUGH_HUGH_COLLISION, (long) particlesHugh * (particlesHugh - 1), probDangerCollision, dangerRand);
 
         // it may theoretically happen for three sats to collide, but then the collision chance should be adjusted
         collHughWithHugh = min(particlesHugh, collHughWithHugh * 2);
 
         // the observatory tries to resolve plausible collisions. upon failing, there is still only little chance on collision
-        collSatWithHugh = sampleOptimized(obs.save(collSatWithHugh), collisionByDangerRisk);
-        collSatWithLarge = sampleOptimized(obs.save(collSatWithLarge), collisionByDangerRisk);
-        collSatWithSmall = sampleOptimized(collSatWithSmall, collisionByDangerRisk);
+        collSatWithHugh = sample(SamplerSite.SAT_HUGH_COLLISION, obs.save(collSatWithHugh), collisionByDangerRisk, collisionRand);
+        collSatWithLarge = sample(SamplerSite.SAT_LARGE_COLLISION, obs.save(collSatWithLarge), collisionByDangerRisk, collisionRand);
+        collSatWithSmall = sample(SamplerSite.SAT_SMALL_COLLISION, collSatWithSmall, collisionByDangerRisk, collisionRand);
 
         // process effects of collisions
         satellitesInOrbit -= collSatWithHugh;
@@ -162,69 +473,112 @@ public class SpaceSimulation extends Thread {
         particlesHugh += collSatWithSmall;
         results.addLostSatellites(collSatWithSmall);
 
-        int satBreakdown = sampleOptimized(satellitesInOrbit, satBreakdownProb);
+        int satBreakdown = sample(SamplerSite.SAT_BREAKDOWN, satellitesInOrbit, scenario.satBreakdownProb, breakdownRand);
         satellitesInOrbit -= satBreakdown;
         particlesHugh += satBreakdown;
 
         // particles falling back into the atmosphere
-        particlesHugh -= sampleOptimized(particlesHugh, fallProbLarge);
-        particlesLarge -= sampleOptimized(particlesLarge, fallProbSmall);
-        particlesSmall -= sampleOptimized(particlesSmall, fallProbSmall);
+        particlesHugh -= sample(SamplerSite.HUGH_FALL, particlesHugh, scenario.fallProbLarge, fallRand);
+        particlesLarge -= sample(SamplerSite.LARGE_FALL, particlesLarge, scenario.fallProbSmall, fallRand);
+        particlesSmall -= sample(SamplerSite.SMALL_FALL, particlesSmall, scenario.fallProbSmall, fallRand);
 
         // launching new satellites
         daysUntilNextLaunch = max(0, daysUntilNextLaunch - 1);
         // could have been an if-statement, but this is more stable
-        while (daysUntilNextLaunch < 1 && this.satellitesInOrbit < satellitesRequiredInOrbit) {
+        int launches = 0;
+        while (daysUntilNextLaunch < 1 && this.satellitesInOrbit < scenario.satellitesRequiredInOrbit) {
             this.satellitesInOrbit++;
-            particlesHugh += launchStages;
-            particlesLarge += launchPartDistLarge.nextRandom();
-            daysUntilNextLaunch += (1.0 / launchesPerDay);
+            launches++;
+            daysUntilNextLaunch += launchInterval;
         }
+        particlesHugh += launches * scenario.launchStages;
+        particlesLarge += ExponentialDistribution.sum(launches, launchPartRateLarge, launchRand);
     }
 
     /** produce and add small and large particles resulting from shredding satellites */
     private void shredIntoParticles(int nOfCollisions) {
-        for (int i = 0; i < nOfCollisions; i++) {
-            this.particlesLarge += shreddingDistLarge.nextRandom();
-            this.particlesSmall += shreddingDistSmall.nextRandom();
-        }
+        if (nOfCollisions <= 0) return;
+        // constant time in the number of collisions
+        this.particlesLarge += ExponentialDistribution.sum(nOfCollisions, shreddingRateLarge, shreddingRandLarge);
+        this.particlesSmall += ExponentialDistribution.sum(nOfCollisions, shreddingRateSmall, shreddingRandSmall);
     }
 
-    /** returns a sample of collisions */
-    private static int sampleOptimized(long n, double p) {
-        if (n <= 0) {
-            if (n == 0) {
-                return 0;
-            } else {
-                throw new IllegalStateException("n < 0: " + n);
-            }
+    /**
+     * returns a sample of the number of successes of n experiments with probability p, drawn from the given stream by
+     * the sampler that the policy of this run chooses
+     */
+    private int sample(SamplerSite site, long n, double p, RandomStream rand) {
+        return sample(samplerPolicy, site, n, p, rand);
+    }
+
+    /**
+     * returns a sample of the number of successes of n experiments with probability p, drawn from the given stream by
+     * the sampler that the given policy chooses. The time of each call is recorded per call site if {@link
+     * SimulationMetrics} are enabled.
+     */
+    static int sample(SamplerPolicy policy, SamplerSite site, long n, double p, RandomStream rand) {
+        if (n <= 0) return sampleNone(n);
+        return sample(policy.select(n, p), site, n, p, rand);
+    }
 
-        } else if (FORCE_NORMAL_DIST || n > (9 * (1 - p) / p)) { // if the binomial approaches an normal dist
-            double est = NormalDistribution.get(n * p, n * p * (1 - p));
-            return (int) min(max(randomToInt(est), 0), n);
+    /**
+     * returns a sample of the number of successes of n experiments with probability p, drawn from the given stream by
+     * the given sampler. The time of each call is recorded per call site if {@link SimulationMetrics} are enabled.
+     * @param n the number of experiments, at least 1
+     */
+    static int sample(CountSampler sampler, SamplerSite site, long n, double p, RandomStream rand) {
+        SimulationMetrics metrics = SimulationMetrics.active;
+        if (metrics == null) return CountSampler.draw(sampler, n, p, rand);
+
+        long start = System.nanoTime();
+        int sample = CountSampler.draw(sampler, n, p, rand);
+        metrics.sampled(site, sampler, System.nanoTime() - start);
+        return sample;
+    }
 
-        } else if (4 * p < POISSON_ERROR_MARGIN) {
-            int est = PoissonDistribution.get(n * p);
-            return (int) min(est, n);
+    /**
+     * returns a sample of the number of successes of n experiments with probability p, drawn from the given stream by
+     * the sampler that the current default policy chooses
+     */
+    public static int sampleOptimized(long n, double p, RandomStream rand) {
+        if (n <= 0) return sampleNone(n);
+        return CountSampler.draw(defaultPolicy.select(n, p), n, p, rand);
+    }
 
+    private static int sampleNone(long n) {
+        if (n == 0) {
+            return 0;
         } else {
-            return BinomialDistribution.get(n, p);
+            throw new IllegalStateException("n < 0: " + n);
         }
     }
 
+    /**
+     * sets the sampler policy of the runs that are created from now on. Runs that have been created keep their policy.
+     * The policy is not part of the saved state of a run, hence a run that is restored must be given the same policy.
+     */
+    public static void setSamplerPolicy(SamplerPolicy policy) {
+        defaultPolicy = policy;
+    }
+
+    /** @return the sampler policy of the runs that are created from now on */
+    public static SamplerPolicy getSamplerPolicy() {
+        return defaultPolicy;
+    }
+
     /**
      * @param repetitions n
      * @param totalProb   t
      * @return p such that n experiments of p have a chance t on at least one success; (1 - p)^n = (1 - t)
      */
-    private static double probSplit(double totalProb, int repetitions) {
+    static double probSplit(double totalProb, int repetitions) {
         // the chance of (NOT t) is equal to the chance of (NOT p after n times) : (1 - t) = (1 - p)^n
         return 1 - Math.pow(1 - totalProb, 1.0 / repetitions);
     }
 
     // may save a few collisions
     class Observatories {
-        private int savesLeft = nOfObservatories;
+        private int savesLeft = scenario.nOfObservatories;
         private double daysUntilRefresh = 0;
 
         /**
@@ -246,11 +600,31 @@ public class SpaceSimulation extends Thread {
             }
         }
 
+        /**
+         * makes the saves that are refreshed between the days of a leap available at once. The refreshes are counted
+         * as if all saves are used every day, as in a day with more dangers than saves.
+         */
+        void beginLeap(int days) {
+            for (int i = 1; i < days; i++) {
+                daysUntilRefresh = max(0, daysUntilRefresh - 1);
+                while (daysUntilRefresh < 1) {
+                    savesLeft++;
+                    daysUntilRefresh += refreshInterval;
+                }
+            }
+        }
+
+        /** discards the saves of {@link #beginLeap(int)} that can not be stored, and refreshes after the last day */
+        void endLeap() {
+            savesLeft = min(savesLeft, scenario.nOfObservatories);
+            nextDay();
+        }
+
         public void nextDay() {
             daysUntilRefresh = max(0, daysUntilRefresh - 1);
-            while (daysUntilRefresh < 1 && savesLeft < nOfObservatories) {
+            while (daysUntilRefresh < 1 && savesLeft < scenario.nOfObservatories) {
                 savesLeft++;
-                daysUntilRefresh += (1.0 / observatorySavesPerDay);
+                daysUntilRefresh += refreshInterval;
             }
         }
     }
@@ -0,0 +1,528 @@
+package Simulation;
+
+import Distributions.ExponentialDistribution;
+import Distributions.RandomStream;
+import Results.DailyResults;
+
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * simulates the model of {@link SpaceSimulation} with the debris divided into the size bins of a {@link SizeSpectrum}
+ * instead of small and large particles. Satellites and non-functional satellites are intact objects of {@link
+ * SizeSpectrum#INTACT_SIZE}. Broken objects fragment by the power law of the spectrum, and particles also collide with
+ * each other. The scenario gives the probabilities for an intact object and a particle of negligible size; the
+ * probability of a collision of a pair grows with the {@link SizeSpectrum#crossSection(double, double)} of the pair. The
+ * daily results report the untracked bins as small and the tracked bins as large particles.
+ * <p>
+ * To keep the cost of a day close to that of {@link SpaceSimulation}, the bins are not sampled one by one. The bins form
+ * two groups, the untracked and the tracked particles, of which the totals are always exact. The dangers of a satellite
+ * are independent of the size of the particle, hence they are drawn per group, with the mean cross section of the group
+ * as collision risk. All catastrophic collisions between particles are drawn at once over the symmetric pairs of bins
+ * within {@link SizeSpectrum#catastrophicRange()}, and the pair of each collision is chosen afterwards; the other pairs
+ * are skipped. A draw of several probabilities with their mean is exact in the limit of rare events, which holds for all
+ * collisions.
+ * <p>
+ * Particles that fall, fragments of intact objects and launched particles are drawn as a total per group. Every
+ * particle of a group is equally likely to fall, and the arriving particles of a group follow the same power law, hence
+ * they are only divided over the bins once they are a fraction {@link #COMPOSITION_TOLERANCE} of the group. The sums
+ * over the bins are only computed after the bins have changed. Only the mean cross sections and the weights of the
+ * pairs of bins are thereby out of date, by at most this fraction.
+ */
+public class SpectrumSimulation implements Runnable {
+    /** divisions of fewer objects than this number times the number of bins pick the bin of every object */
+    private static final int PICKS_PER_BIN = 16;
+    /** the fraction of a group that may have arrived or fallen before the bins of the group are updated */
+    private static final double COMPOSITION_TOLERANCE = 0.01;
+    /** the groups of bins */
+    private static final int UNTRACKED = 0;
+    private static final int TRACKED = 1;
+
+    private final Scenario scenario;
+    private final SizeSpectrum spectrum;
+    private final SamplerPolicy samplerPolicy = SpaceSimulation.getSamplerPolicy();
+    private final int nOfBins;
+    private final int maxTime;
+    private int day = 0;
+
+    /** the number of particles of each size bin */
+    private final long[] debris;
+    /** non-functional satellites still in orbit */
+    private int particlesHugh;
+    /** operational satellites in orbit */
+    private int satellitesInOrbit;
+    /** number of days before the next satellite is launched */
+    private double daysUntilNextLaunch = 0;
+    /** the state of the observatories */
+    private int savesLeft;
+    private double daysUntilRefresh = 0;
+
+    /** the bins [from, to) and the share of each bin of an arriving particle, of each group */
+    private final int[] groupFrom;
+    private final int[] groupTo;
+    private final double[][] groupShares;
+    /** the particles of each group that have arrived but are not yet in the bins */
+    private final long[] arrived = new long[2];
+    /** the particles of each group that have fallen but are not yet removed from the bins */
+    private final long[] fallen = new long[2];
+    /** the share of the fragments of an intact object in the tracked bins */
+    private final double trackedFragments;
+
+    /** whether the bins have changed since the sums below were computed */
+    private boolean changed = true;
+    /** the particles in the bins of each group, and the sum of their cross sections with an intact object */
+    private final long[] binned = new long[2];
+    private final double[] binnedCross = new double[2];
+    /** the cumulative collision weight of the pairs, and the number of pairs of particles */
+    private final double[] pairCumulative;
+    private double pairCount;
+
+    /** the cross section of a particle of each bin with an intact object */
+    private final double[] intactCross;
+    /** the pairs of bins of which collisions are catastrophic, with their cross section */
+    private final int[] pairFirst;
+    private final int[] pairSecond;
+    private final double[] pairCross;
+    /** the particles of each bin broken in the current day */
+    private final int[] broken;
+
+    /** the random streams of this run, split in this order */
+    private final RandomStream dangerRand;
+    private final RandomStream collisionRand;
+    private final RandomStream breakdownRand;
+    private final RandomStream fallRand;
+    private final RandomStream shreddingRand;
+    private final RandomStream splitRand;
+    private final RandomStream launchRand;
+
+    private final DailyResults results;
+
+    /**
+     * @param scenario the model parameters. The small and large particles are divided over the untracked and tracked
+     *                 bins by the power law of the spectrum, and the shredding factor is the number of fragments of an
+     *                 intact object in the bins
+     * @param spectrum the size bins of the debris
+     * @param runTime  number of results of this run, equal to the number of simulated days plus one
+     * @param rand     the random stream of this run
+     * @param results  receives the state of every simulated day
+     */
+    public SpectrumSimulation(Scenario scenario, SizeSpectrum spectrum, int runTime, RandomStream rand, DailyResults results) {
+        if (scenario.maxLeapDays > 1)
+            throw new IllegalArgumentException("a spectrum can not leap, maxLeapDays = " + scenario.maxLeapDays);
+
+        this.scenario = scenario;
+        this.spectrum = spectrum;
+        this.results = results;
+        nOfBins = spectrum.size();
+        maxTime = runTime - 1;
+
+        dangerRand = rand.split();
+        collisionRand = rand.split();
+        breakdownRand = rand.split();
+        fallRand = rand.split();
+        shreddingRand = rand.split();
+        splitRand = rand.split();
+        launchRand = rand.split();
+
+        int firstTracked = spectrum.firstTracked();
+        groupFrom = new int[]{0, firstTracked};
+        groupTo = new int[]{firstTracked, nOfBins};
+        groupShares = new double[][]{spectrum.shares(0, firstTracked), spectrum.shares(firstTracked, nOfBins)};
+        double[] intactShares = spectrum.fragmentShares(-1);
+        double tracked = 0;
+        for (int i = firstTracked; i < nOfBins; i++) {
+            tracked += intactShares[i];
+        }
+        trackedFragments = tracked;
+
+        intactCross = new double[nOfBins];
+        for (int i = 0; i < nOfBins; i++) {
+            intactCross[i] = SizeSpectrum.crossSection(SizeSpectrum.INTACT_SIZE, spectrum.binSize(i));
+        }
+
+        int range = spectrum.catastrophicRange();
+        int nOfPairs = 0;
+        for (int i = 0; i < nOfBins; i++) {
+            nOfPairs += min(range + 1, nOfBins - i);
+        }
+        pairFirst = new int[nOfPairs];
+        pairSecond = new int[nOfPairs];
+        pairCross = new double[nOfPairs];
+        pairCumulative = new double[nOfPairs];
+        int k = 0;
+        for (int i = 0; i < nOfBins; i++) {
+            for (int j = i; j <= min(i + range, nOfBins - 1); j++) {
+                pairFirst[k] = i;
+                pairSecond[k] = j;
+                pairCross[k] = SizeSpectrum.crossSection(spectrum.binSize(i), spectrum.binSize(j));
+                k++;
+            }
+        }
+        broken = new int[nOfBins];
+
+        debris = new long[nOfBins];
+        add(scenario.initialSmallParticles, groupShares[UNTRACKED], 0, firstTracked, splitRand);
+        add(scenario.initialLargeParticles, groupShares[TRACKED], firstTracked, nOfBins, splitRand);
+        particlesHugh = scenario.initialHughParticles;
+        satellitesInOrbit = scenario.initialSatellites;
+        savesLeft = scenario.nOfObservatories;
+
+        storeResults();
+    }
+
+    /** runs a single simulation run */
+    public void run() {
+        while (!isFinished()) {
+            nextDay();
+        }
+        results.finish();
+    }
+
+    /** @return whether all days of this run have been simulated */
+    public boolean isFinished() {
+        return day >= maxTime;
+    }
+
+    /** @return the number of days simulated so far */
+    public int getDay() {
+        return day;
+    }
+
+    /** @return the size bins of this run */
+    public SizeSpectrum getSpectrum() {
+        return spectrum;
+    }
+
+    /**
+     * @return the number of particles in the given size bin. The particles that have arrived or fallen since the last
+     * update of the bins are not included, which are at most {@link #COMPOSITION_TOLERANCE} of the untracked or the
+     * tracked particles.
+     */
+    public long getDebris(int bin) {
+        return debris[bin];
+    }
+
+    /** simulates a single day and stores its results */
+    public void nextDay() {
+        final double probDangerPerParticle = scenario.probDangerPerParticle;
+        final double collisionByDangerRisk = scenario.collisionByDangerRisk;
+        final double probCollision = probDangerPerParticle * collisionByDangerRisk;
+        final double intactWithIntact = SizeSpectrum.crossSection(SizeSpectrum.INTACT_SIZE, SizeSpectrum.INTACT_SIZE);
+        final int hugh = particlesHugh;
+        final int sats = satellitesInOrbit;
+
+        long untracked = total(UNTRACKED);
+        long tracked = total(TRACKED);
+        double crossUntracked = meanCross(UNTRACKED);
+        double crossTracked = meanCross(TRACKED);
+
+        // different types of collisions
+        int collSatWithHugh = sample(SamplerSite.SAT_HUGH_DANGER, (long) hugh * sats, probDangerPerParticle, dangerRand);
+        int collSatWithLarge = sample(SamplerSite.SAT_LARGE_DANGER, tracked * sats, probDangerPerParticle, dangerRand);
+        int collSatWithSmall = sample(SamplerSite.SAT_SMALL_DANGER, untracked * sats, probDangerPerParticle, dangerRand);
+        int collHughWithLarge = sample(SamplerSite.HUGH_LARGE_COLLISION, tracked * hugh, probCollision * crossTracked, dangerRand);
+        int collHughWithHugh = sample(SamplerSite.HUGH_HUGH_COLLISION, (long) hugh * (hugh - 1) / 2, probCollision * intactWithIntact, dangerRand);
+        int debrisCollisions = drawDebrisCollisions(probCollision);
+
+        // the observatory tries to resolve plausible collisions, of which the risk depends on the size of the particle
+        collSatWithHugh = sample(SamplerSite.SAT_HUGH_COLLISION, save(collSatWithHugh), collisionByDangerRisk * intactWithIntact, collisionRand);
+        collSatWithLarge = sample(SamplerSite.SAT_LARGE_COLLISION, save(collSatWithLarge), collisionByDangerRisk * crossTracked, collisionRand);
+        collSatWithSmall = sample(SamplerSite.SAT_SMALL_COLLISION, collSatWithSmall, collisionByDangerRisk * crossUntracked, collisionRand);
+
+        // every intact object takes part in at most one collision
+        collHughWithHugh = min(collHughWithHugh, hugh / 2);
+        collHughWithLarge = min(collHughWithLarge, hugh - 2 * collHughWithHugh);
+        collSatWithHugh = min(collSatWithHugh, min(sats, hugh - 2 * collHughWithHugh - collHughWithLarge));
+        collSatWithLarge = min(collSatWithLarge, sats - collSatWithHugh);
+        collSatWithSmall = min(collSatWithSmall, sats - collSatWithHugh - collSatWithLarge);
+
+        // process effects of collisions. A particle that destroys an intact object stays in orbit
+        satellitesInOrbit -= collSatWithHugh + collSatWithLarge + collSatWithSmall;
+        particlesHugh -= collSatWithHugh + 2 * collHughWithHugh + collHughWithLarge;
+        particlesHugh += collSatWithSmall;
+        results.addLostSatellites(collSatWithHugh + collSatWithLarge + collSatWithSmall);
+
+        shredIntact(2 * collSatWithHugh + 2 * collHughWithHugh + collHughWithLarge + collSatWithLarge);
+        breakDebris(debrisCollisions);
+
+        int satBreakdown = sample(SamplerSite.SAT_BREAKDOWN, satellitesInOrbit, scenario.satBreakdownProb, breakdownRand);
+        satellitesInOrbit -= satBreakdown;
+        particlesHugh += satBreakdown;
+
+        // particles falling back into the atmosphere
+        particlesHugh -= sample(SamplerSite.HUGH_FALL, particlesHugh, scenario.fallProbLarge, fallRand);
+        fall(TRACKED, SamplerSite.LARGE_FALL);
+        fall(UNTRACKED, SamplerSite.SMALL_FALL);
+
+        launch();
+        refreshObservatories();
+        checkPopulations();
+        storeResults();
+        day++;
+    }
+
+    /** @return the number of particles of the given group */
+    private long total(int group) {
+        update();
+        return binned[group] + arrived[group] - fallen[group];
+    }
+
+    /** @return the mean cross section of a particle of the bins of the given group with an intact object */
+    private double meanCross(int group) {
+        update();
+        return binned[group] == 0 ? 0 : binnedCross[group] / binned[group];
+    }
+
+    /** computes the sums over the bins, if the bins have changed */
+    private void update() {
+        if (!changed) return;
+
+        for (int g = UNTRACKED; g <= TRACKED; g++) {
+            long particles = 0;
+            double cross = 0;
+            for (int i = groupFrom[g]; i < groupTo[g]; i++) {
+                particles += debris[i];
+                cross += debris[i] * intactCross[i];
+            }
+            binned[g] = particles;
+            binnedCross[g] = cross;
+        }
+
+        double pairs = 0;
+        double weight = 0;
+        for (int k = 0; k < pairFirst.length; k++) {
+            long a = debris[pairFirst[k]];
+            long b = debris[pairSecond[k]];
+            double n = pairFirst[k] == pairSecond[k] ? 0.5 * a * (a - 1) : (double) a * b;
+            pairs += n;
+            weight += n * pairCross[k];
+            pairCumulative[k] = weight;
+        }
+        pairCount = pairs;
+        changed = false;
+    }
+
+    /** draws the number of collisions between particles of all catastrophic pairs of bins at once */
+    private int drawDebrisCollisions(double probCollision) {
+        update();
+        double weight = pairCumulative[pairCumulative.length - 1];
+        if (weight == 0) return 0;
+
+        // the experiments are pairs of particles, with the mean probability of all pairs
+        long experiments = (long) min(pairCount, Long.MAX_VALUE / 2);
+        return sample(SamplerSite.DEBRIS_COLLISION, experiments, min(1, probCollision * weight / experiments), dangerRand);
+    }
+
+    /** chooses the pair of bins of each collision by its weight, and breaks both particles of each collision */
+    private void breakDebris(int collisions) {
+        if (collisions == 0) return;
+        double total = pairCumulative[pairCumulative.length - 1];
+
+        for (int c = 0; c < collisions; c++) {
+            double u = collisionRand.nextDouble() * total;
+            // the first pair of which the cumulative weight exceeds u
+            int lo = 0;
+            int hi = pairCumulative.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (pairCumulative[mid] > u) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+
+            int a = pairFirst[lo];
+            int b = pairSecond[lo];
+            // the populations of the day may have been broken already
+            if (debris[a] < (a == b ? 2 : 1) || debris[b] < 1) continue;
+            debris[a]--;
+            debris[b]--;
+            broken[a]++;
+            broken[b]++;
+        }
+
+        for (int i = 0; i < nOfBins; i++) {
+            if (broken[i] == 0) continue;
+            shredDebris(i, broken[i]);
+            broken[i] = 0;
+        }
+        changed = true;
+    }
+
+    /** adds the fragments of the given number of intact objects to the particles that arrive in each group */
+    private void shredIntact(int count) {
+        if (count <= 0) return;
+
+        // constant time in the number of collisions
+        long fragments = (long) ExponentialDistribution.sum(count, 1.0 / scenario.shreddingFactor, shreddingRand);
+        int tracked = sample(SamplerSite.SIZE_SPLIT, fragments, trackedFragments, splitRand);
+        arrive(TRACKED, tracked);
+        arrive(UNTRACKED, fragments - tracked);
+    }
+
+    /** adds the fragments of the given number of particles of the given bin to the bins below */
+    private void shredDebris(int parent, int count) {
+        double mean = scenario.shreddingFactor * spectrum.fragmentYield(parent);
+        if (mean == 0) return;
+
+        long fragments = (long) ExponentialDistribution.sum(count, 1.0 / mean, shreddingRand);
+        add(fragments, spectrum.fragmentShares(parent), 0, parent, splitRand);
+    }
+
+    /** draws the particles of the given group that fall into the atmosphere today */
+    private void fall(int group, SamplerSite site) {
+        fallen[group] += sample(site, total(group), scenario.fallProbSmall, fallRand);
+        settle(group);
+    }
+
+    /** adds the given number of particles to the given group, with the shares of the group */
+    private void arrive(int group, long count) {
+        arrived[group] += count;
+        settle(group);
+    }
+
+    /** updates the bins of the group once the particles that have arrived or fallen exceed the tolerated fraction */
+    private void settle(int group) {
+        long pending = arrived[group] + fallen[group];
+        if (pending == 0 || pending < COMPOSITION_TOLERANCE * total(group)) return;
+
+        remove(fallen[group], binned[group], groupFrom[group], groupTo[group], fallRand);
+        add(arrived[group], groupShares[group], groupFrom[group], groupTo[group], splitRand);
+        arrived[group] = 0;
+        fallen[group] = 0;
+        changed = true;
+    }
+
+    /** launches the satellites that are due, and adds their particles */
+    private void launch() {
+        daysUntilNextLaunch = max(0, daysUntilNextLaunch - 1);
+        // could have been an if-statement, but this is more stable
+        int launches = 0;
+        while (daysUntilNextLaunch < 1 && this.satellitesInOrbit < scenario.satellitesRequiredInOrbit) {
+            this.satellitesInOrbit++;
+            launches++;
+            daysUntilNextLaunch += (1.0 / scenario.launchesPerDay);
+        }
+        if (launches == 0) return;
+
+        particlesHugh += launches * scenario.launchStages;
+        arrive(TRACKED, (long) ExponentialDistribution.sum(launches, 1.0 / scenario.launchPartMeanLarge, launchRand));
+    }
+
+    /** divides the given number of new particles over the bins [from, to), with the given share of each bin */
+    private void add(long count, double[] shares, int from, int to, RandomStream rand) {
+        if (count <= 0 || from >= to) return;
+
+        if (count < PICKS_PER_BIN * (to - from)) {
+            for (long c = 0; c < count; c++) {
+                double u = rand.nextDouble();
+                int i = from;
+                while (i < to - 1 && u >= shares[i]) {
+                    u -= shares[i];
+                    i++;
+                }
+                debris[i]++;
+            }
+            return;
+        }
+
+        double remaining = 1;
+        for (int i = from; i < to - 1 && count > 0; i++) {
+            int n = sample(SamplerSite.SIZE_SPLIT, count, min(1, shares[i] / remaining), rand);
+            debris[i] += n;
+            count -= n;
+            remaining -= shares[i];
+        }
+        debris[to - 1] += count;
+    }
+
+    /**
+     * removes the given number of particles from the bins [from, to) that hold the given number of particles, where
+     * every particle is equally likely to be removed
+     */
+    private void remove(long count, long particles, int from, int to, RandomStream rand) {
+        if (count <= 0) return;
+
+        if (count < PICKS_PER_BIN * (to - from)) {
+            // without replacement
+            for (long c = 0; c < count && particles > 0; c++, particles--) {
+                long u = (long) (rand.nextDouble() * particles);
+                int i = from;
+                while (i < to - 1 && u >= debris[i]) {
+                    u -= debris[i];
+                    i++;
+                }
+                debris[i]--;
+            }
+            return;
+        }
+
+        // the division of a binomial total is multinomial, up to the negligible dependence of drawing without replacement
+        for (int i = from; i < to - 1 && count > 0; i++) {
+            long inBin = debris[i];
+            long n = min(inBin, sample(SamplerSite.SIZE_SPLIT, count, min(1, (double) inBin / particles), rand));
+            debris[i] -= n;
+            count -= n;
+            particles -= inBin;
+        }
+        debris[to - 1] -= min(count, debris[to - 1]);
+    }
+
+    private int sample(SamplerSite site, long n, double p, RandomStream rand) {
+        return SpaceSimulation.sample(samplerPolicy, site, n, p, rand);
+    }
+
+    /**
+     * try to save the satellites
+     * @param number how many dangers there are
+     * @return how many dangers are left
+     */
+    private int save(int number) {
+        if (savesLeft > number) {
+            savesLeft -= number;
+            results.addSaves(number);
+            return 0;
+
+        } else {
+            number -= savesLeft;
+            results.addSaves(savesLeft);
+            savesLeft = 0;
+            return number;
+        }
+    }
+
+    private void refreshObservatories() {
+        daysUntilRefresh = max(0, daysUntilRefresh - 1);
+        while (daysUntilRefresh < 1 && savesLeft < scenario.nOfObservatories) {
+            savesLeft++;
+            daysUntilRefresh += (1.0 / scenario.observatorySavesPerDay);
+        }
+    }
+
+    private void checkPopulations() {
+        boolean negative = satellitesInOrbit < 0 || particlesHugh < 0 || total(UNTRACKED) < 0 || total(TRACKED) < 0;
+        for (long n : debris) {
+            negative |= n < 0;
+        }
+        if (negative) {
+            throw new IllegalStateException(String.format(
+                    "Negative amount detected after %d days:\n" +
+                            "sat in orbit: %d\n" +
+                            "hugh particles: %d\n" +
+                            "debris: %s",
+                    day,
+                    satellitesInOrbit,
+                    particlesHugh,
+                    Arrays.toString(debris)
+            ));
+        }
+    }
+
+    private void storeResults() {
+        int flightsQueued = scenario.satellitesRequiredInOrbit - satellitesInOrbit;
+        results.addResults(total(UNTRACKED), total(TRACKED), particlesHugh, satellitesInOrbit, flightsQueued);
+    }
+}
@@ -0,0 +1,233 @@
+package Simulation;
+
+import Distributions.RandomStream;
+import Results.DailyResults;
+import Results.SplittingResults;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * estimates the rare runs of a {@link SpaceSimulation} in which the debris cascades by multilevel splitting. The number
+ * of large particles is divided by a number of increasing levels. A path that crosses its next level is split into
+ * {@code splitFactor} paths, which continue independently from the same state, each with a fraction 1 / splitFactor
+ * of the weight of the path. Thereby the paths that are on their way to a cascade are followed many times, while a
+ * benign run costs the same as a single run. The first path of a root run is equal to the run of {@link
+ * SpaceSimulation} with the same random stream.
+ * <p>
+ * A path that falls back below {@link #ROULETTE_FRACTION} of the last level it crossed is terminated early with
+ * probability 1 - 1 / splitFactor, and otherwise continues with splitFactor times its weight (Russian roulette). As in
+ * RESTART (Villen-Altamirano, 1991), the weight of a path below the k-th level is thereby always splitFactor^-k, and the
+ * cost of the paths that return to the benign regime stays bounded. The margin below the level prevents that a path
+ * that moves around a level is split and terminated repeatedly.
+ * <p>
+ * Both splitting and roulette keep the expectation of the weighted sum of the final paths equal to the expectation of
+ * a single run, hence the {@link SplittingResults} of many root runs are unbiased. The splitting factor is best chosen
+ * close to the inverse of the probability that a path crosses the next level after crossing the previous one, such
+ * that every level is reached by about as many paths.
+ */
+public class SplittingSimulation {
+    /** a path is rouletted once its large particles fall below this fraction of the last level it crossed */
+    public static final double ROULETTE_FRACTION = 0.9;
+
+    private final Scenario scenario;
+    private final int runTime;
+    private final double[] levels;
+    private final int splitFactor;
+
+    /**
+     * @param scenario    the model parameters of all paths
+     * @param runTime     number of results of each run, equal to the number of simulated days plus one
+     * @param levels      the increasing numbers of large particles at which a path is split
+     * @param splitFactor the number of paths into which a path is split at each level
+     */
+    public SplittingSimulation(Scenario scenario, int runTime, double[] levels, int splitFactor) {
+        if (splitFactor < 1) throw new IllegalArgumentException("splitFactor = " + splitFactor);
+        for (int k = 0; k < levels.length; k++) {
+            if (!(levels[k] > 0) || (k > 0 && !(levels[k] > levels[k - 1])))
+                throw new IllegalArgumentException("levels must be positive and increasing, level " + k + " = " + levels[k]);
+        }
+
+        this.scenario = scenario;
+        this.runTime = runTime;
+        this.levels = levels.clone();
+        this.splitFactor = splitFactor;
+    }
+
+    /** @return the number of levels */
+    public int nOfLevels() {
+        return levels.length;
+    }
+
+    /**
+     * simulates all paths of a single root run, and finishes its results
+     * @param rand    the random stream of the root run. The streams of split paths are split from it after the streams
+     *                of the first path
+     * @param results receives the weighted results of all paths
+     * @return the number of days simulated over all paths
+     */
+    public long run(RandomStream rand, SplittingResults.WeightedRun results) {
+        Path path = new Path(0);
+        SpaceSimulation root = new SpaceSimulation(scenario, runTime, rand, path);
+
+        Tree tree = new Tree(rand, results);
+        tree.follow(root, path, 1, 0, 0);
+        results.finish();
+        return tree.days;
+    }
+
+    /** the paths of a single root run */
+    private class Tree {
+        private final RandomStream rand;
+        private final SplittingResults.WeightedRun results;
+        private long days = 0;
+
+        Tree(RandomStream rand, SplittingResults.WeightedRun results) {
+            this.rand = rand;
+            this.results = results;
+        }
+
+        /**
+         * follows a path until the end of the run, and all paths that are split from it recursively
+         * @param sim           the state of the path
+         * @param path          receives the results of the path from the current day on
+         * @param weight        the weight of the path
+         * @param level         the number of levels the path has crossed without falling back
+         * @param levelsReached the largest number of levels that the path has crossed so far
+         * @return the sum of the weights of the final paths of this path and all paths split from it
+         */
+        double follow(SpaceSimulation sim, Path path, double weight, int level, int levelsReached) {
+            // the parts of this path before each split, with the weight of the paths split from it
+            List<Segment> parts = new ArrayList<>();
+            List<Double> splitWeights = new ArrayList<>();
+
+            while (true) {
+                if (level < levels.length && path.large >= levels[level]) {
+                    level++;
+                    levelsReached = Math.max(levelsReached, level);
+                    weight /= splitFactor;
+
+                    double split = 0;
+                    for (int r = 1; r < splitFactor; r++) {
+                        Path branchPath = new Path(sim.getDay() + 1);
+                        branchPath.large = path.large;
+                        SpaceSimulation branch = sim.branch(rand.split(), branchPath);
+                        split += follow(branch, branchPath, weight, level, levelsReached);
+                    }
+                    parts.add(path.segment);
+                    splitWeights.add(split);
+                    path.segment = new Segment(sim.getDay() + 1);
+                    continue;
+                }
+
+                if (level > 0 && path.large < ROULETTE_FRACTION * levels[level - 1]) {
+                    level--;
+                    if (rand.nextDouble() * splitFactor >= 1) {
+                        weight = 0;
+                        break;
+                    }
+                    weight *= splitFactor;
+                    continue;
+                }
+
+                if (sim.isFinished()) break;
+                days += sim.nextStep();
+            }
+
+            if (weight > 0) results.addLeaf(weight, levelsReached);
+
+            // every part is shared by the final part of this path and all paths split from it at or after that part
+            double total = weight;
+            path.segment.commit(results, total);
+            for (int i = parts.size() - 1; i >= 0; i--) {
+                total += splitWeights.get(i);
+                parts.get(i).commit(results, total);
+            }
+            return total;
+        }
+    }
+
+    /** receives the results of a path, and passes them to its current segment */
+    private class Path implements DailyResults {
+        private Segment segment;
+        /** the large particles of the last stored day */
+        private long large;
+
+        Path(int firstDay) {
+            segment = new Segment(firstDay);
+        }
+
+        @Override
+        public void addResults(long pSmall, long pLarge, int pHugh, int satsInOrbit, int flightsQueued) {
+            large = pLarge;
+            segment.addResults(pSmall, pLarge, pHugh, satsInOrbit, flightsQueued);
+        }
+
+        @Override
+        public void addLostSatellites(int n) {
+            segment.addLostSatellites(n);
+        }
+
+        @Override
+        public void addSaves(int n) {
+            segment.addSaves(n);
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    /** the results of the days of a path between two splits, which are weighted once all paths after it have finished */
+    private class Segment {
+        private final int firstDay;
+        private final long[] small;
+        private final long[] large;
+        private final int[] hugh;
+        private final int[] active;
+        private final int[] queued;
+        private final int[] lost;
+        private int index = 0;
+        private int nOfLostSatellites = 0;
+        private int saves = 0;
+
+        Segment(int firstDay) {
+            this.firstDay = firstDay;
+            int length = runTime - firstDay;
+            small = new long[length];
+            large = new long[length];
+            hugh = new int[length];
+            active = new int[length];
+            queued = new int[length];
+            lost = new int[length];
+        }
+
+        void addResults(long pSmall, long pLarge, int pHugh, int satsInOrbit, int flightsQueued) {
+            small[index] = pSmall;
+            large[index] = pLarge;
+            hugh[index] = pHugh;
+            active[index] = satsInOrbit;
+            queued[index] = flightsQueued;
+            index++;
+        }
+
+        void addLostSatellites(int n) {
+            nOfLostSatellites += n;
+            lost[index] += n;
+        }
+
+        void addSaves(int n) {
+            saves += n;
+        }
+
+        /** adds the stored days of this segment to the results, with the given weight */
+        void commit(SplittingResults.WeightedRun results, double weight) {
+            if (weight == 0) return;
+
+            for (int i = 0; i < index; i++) {
+                results.addDay(firstDay + i, weight, small[i], large[i], hugh[i], active[i], queued[i], lost[i]);
+            }
+            results.addTotals(weight, nOfLostSatellites, saves);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package Simulation;
+
+import Results.Interval;
+import Results.MomentCollector;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * decides when enough runs have been done: runs are scheduled until the confidence intervals of the number of lost
+ * satellites and of the total number of particles at the end of the run are narrow relative to their means, or until
+ * the budget of runs or time is spent. Threadsafe.
+ * <p>
+ * In antithetic mode, runs 2i and 2i + 1 are an antithetic pair, see {@link RunScheduler#runStream(long, int)}. The
+ * intervals are then taken over the mean of each pair, and runs are only stopped after a complete pair.
+ */
+public class StoppingRule {
+    private final double relativeTolerance;
+    private final int minRuns;
+    private final int maxRuns;
+    private final long deadline;
+    private final boolean antithetic;
+    /** the number of runs of which the mean is a single value of the intervals */
+    private final int groupSize;
+
+    private final MomentCollector lostSatellites = new MomentCollector();
+    private final MomentCollector totalParticles = new MomentCollector();
+    /** lost satellites and total particles of every finished run of which the partner has not finished, by pair index */
+    private final Map<Integer, long[]> waiting = new HashMap<>();
+    private int nOfStarted = 0;
+    private int nOfFinished = 0;
+
+    /**
+     * the time budget starts upon construction
+     * @param relativeTolerance the maximum half-width of each confidence interval, as a fraction of its mean
+     * @param minRuns           the minimum number of runs before the intervals are trusted
+     * @param maxRuns           the maximum number of runs
+     * @param maxMillis         the time after which no new runs are started, in milliseconds
+     */
+    public StoppingRule(double relativeTolerance, int minRuns, int maxRuns, long maxMillis) {
+        this(relativeTolerance, minRuns, maxRuns, maxMillis, false);
+    }
+
+    /**
+     * the time budget starts upon construction
+     * @param relativeTolerance the maximum half-width of each confidence interval, as a fraction of its mean
+     * @param minRuns           the minimum number of runs before the intervals are trusted
+     * @param maxRuns           the maximum number of runs, rounded down to complete pairs in antithetic mode
+     * @param maxMillis         the time after which no new runs are started, in milliseconds
+     * @param antithetic        if true, runs 2i and 2i + 1 are treated as an antithetic pair
+     */
+    public StoppingRule(double relativeTolerance, int minRuns, int maxRuns, long maxMillis, boolean antithetic) {
+        this.groupSize = antithetic ? 2 : 1;
+        if (relativeTolerance <= 0 || minRuns < 2 * groupSize || maxRuns < minRuns || maxMillis <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "tolerance = %s, min runs = %d, max runs = %d, max time = %d ms",
+                    relativeTolerance, minRuns, maxRuns, maxMillis
+            ));
+        }
+        this.relativeTolerance = relativeTolerance;
+        this.minRuns = minRuns;
+        this.maxRuns = maxRuns;
+        this.antithetic = antithetic;
+        long now = System.currentTimeMillis();
+        // an unlimited time budget must not overflow into a deadline in the past
+        this.deadline = maxMillis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + maxMillis;
+    }
+
+    /**
+     * claims the next run, if more runs are required. In antithetic mode, the second run of a pair is always claimed
+     * @return the index of the new run, or -1 if no more runs should be started
+     */
+    public synchronized int nextRun() {
+        if (nOfStarted % groupSize == 0 && (nOfStarted + groupSize > maxRuns || isSatisfied() || System.currentTimeMillis() > deadline)) {
+            return -1;
+        }
+        return nOfStarted++;
+    }
+
+    /**
+     * adds the outcome of a finished run. In antithetic mode, the run waits until the other run of its pair is added
+     * @param runIndex the index returned by {@link #nextRun()}
+     */
+    public synchronized void add(int runIndex, int lostSatellites, long totalParticles) {
+        nOfFinished++;
+        if (!antithetic) {
+            this.lostSatellites.add(lostSatellites);
+            this.totalParticles.add(totalParticles);
+            return;
+        }
+
+        long[] partner = waiting.remove(runIndex / 2);
+        if (partner == null) {
+            waiting.put(runIndex / 2, new long[]{lostSatellites, totalParticles});
+            return;
+        }
+        this.lostSatellites.add((lostSatellites + partner[0]) / 2.0);
+        this.totalParticles.add((totalParticles + partner[1]) / 2.0);
+    }
+
+    /** @return whether the confidence intervals of all metrics are narrow enough */
+    public synchronized boolean isSatisfied() {
+        return lostSatellites.count() * groupSize >= minRuns
+                && isNarrow(lostSatellites.getConfidence(), lostSatellites.getMean())
+                && isNarrow(totalParticles.getConfidence(), totalParticles.getMean());
+    }
+
+    private boolean isNarrow(Interval interval, double mean) {
+        double halfWidth = (interval.upper - interval.lower) / 2;
+        return halfWidth <= relativeTolerance * Math.abs(mean);
+    }
+
+    /** the number of finished runs */
+    public synchronized int nOfRuns() {
+        return nOfFinished;
+    }
+
+    public int getMaxRuns() {
+        return maxRuns;
+    }
+
+    public boolean isAntithetic() {
+        return antithetic;
+    }
+}